@@ -0,0 +1,90 @@
+package com.patex.parser;
+
+import fb2Generator.Fb2Creator;
+import org.apache.commons.lang3.RandomStringUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parse speed of {@link Fb2FileParser} on large books with a cover image, one operation parses all books.
+ * Allocation per operation is shown by {@code -prof gc}
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class Fb2ParserBenchmark {
+
+    private static final int BOOKS = 8;
+
+    @Param({"20000"})
+    public int paragraphs;
+
+    @Param({"262144", "2097152"})
+    public int coverSize;
+
+    @Param({"FULL", "METADATA_AND_COVER", "METADATA"})
+    public ParseOptions options;
+
+    private final FileParser parser = new Fb2FileParser();
+    private List<byte[]> books;
+
+    @Setup
+    public void setup() throws IOException {
+        Random random = new Random(1);
+        books = new ArrayList<>();
+        for (int i = 0; i < BOOKS; i++) {
+            byte[] cover = new byte[coverSize];
+            random.nextBytes(cover);
+            Fb2Creator creator = new Fb2Creator("title" + i).addAuthor("first" + i, null, "last" + i).
+                    setCoverpage("#cover.jpg").addBinary("cover.jpg", cover, "image/jpeg");
+            for (int j = 0; j < paragraphs; j++) {
+                creator.addContent(RandomStringUtils.random(200, 0, 0, true, false, null, random));
+            }
+            try (InputStream is = creator.getFbook()) {
+                books.add(is.readAllBytes());
+            }
+        }
+    }
+
+    @Benchmark
+    public void parseFile(Blackhole blackhole) {
+        for (byte[] book : books) {
+            blackhole.consume(parser.parseFile("book.fb2", new ByteArrayInputStream(book), options));
+        }
+    }
+
+    /**
+     * Doesn't depend on options, so it is enough to compare its results of one options value
+     */
+    @Benchmark
+    public void contentIterator(Blackhole blackhole) {
+        for (byte[] book : books) {
+            Iterator<String> iterator = parser.getContentIterator("book.fb2", new ByteArrayInputStream(book));
+            while (iterator.hasNext()) {
+                blackhole.consume(iterator.next());
+            }
+        }
+    }
+}
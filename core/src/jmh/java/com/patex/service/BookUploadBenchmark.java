@@ -0,0 +1,118 @@
+package com.patex.service;
+
+import com.patex.entities.BookRepository;
+import com.patex.entities.ZUser;
+import com.patex.parser.Fb2FileParser;
+import com.patex.parser.ParserService;
+import com.patex.storage.StorageService;
+import com.patex.storage.TempFileStorage;
+import fb2Generator.Fb2Creator;
+import org.apache.commons.lang3.RandomStringUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ApplicationEventPublisher;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+import static org.mockito.Mockito.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
+
+/**
+ * Upload throughput, books have different authors, so only parsing, hashing and storage are measured.
+ * Scaling is measured by thread count, e.g. {@code -t 1} and {@code -t 4}
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BookUploadBenchmark {
+
+    private static final int BOOKS = 64;
+    private static final int PARAGRAPHS = 5000;
+
+    private final AtomicInteger counter = new AtomicInteger();
+    private List<byte[]> books;
+    private Path storageDirectory;
+    private BookService bookService;
+
+    @Setup
+    public void setup() throws IOException {
+        books = createBooks();
+    }
+
+    /**
+     * Uploaded books are removed after every iteration, so disk usage doesn't grow with the run time
+     */
+    @Setup(Level.Iteration)
+    public void createBookService() throws IOException {
+        BookRepository bookRepo = mock(BookRepository.class, withSettings().stubOnly());
+        when(bookRepo.findFirstByTitleAndChecksum(any(), any())).thenReturn(Optional.empty());
+        when(bookRepo.save(any())).thenAnswer(i -> i.getArguments()[0]);
+        AuthorService authorService = mock(AuthorService.class, withSettings().stubOnly());
+        when(authorService.findFirstByNameIgnoreCase(any())).thenReturn(Optional.empty());
+        TempFileStorage tempFileStorage = new TempFileStorage();
+        tempFileStorage.postConstruct();
+        storageDirectory = tempFileStorage.createTempFile().getParent();
+        bookService = new BookService(bookRepo, mock(SequenceService.class, withSettings().stubOnly()),
+                authorService, new ParserService(new Fb2FileParser()), new StorageService(tempFileStorage),
+                new TransactionService(), mock(ApplicationEventPublisher.class, withSettings().stubOnly()));
+    }
+
+    @TearDown(Level.Iteration)
+    public void deleteBooks() throws IOException {
+        try (Stream<Path> files = Files.walk(storageDirectory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    /**
+     * One operation uploads one book of about 1 MiB
+     */
+    @Benchmark
+    public Object upload() {
+        int i = counter.getAndIncrement();
+        return bookService.uploadBook("book" + i + ".fb2", new ByteArrayInputStream(books.get(i % BOOKS)),
+                new ZUser());
+    }
+
+    private static List<byte[]> createBooks() throws IOException {
+        Random random = new Random(1);
+        List<byte[]> books = new ArrayList<>();
+        for (int i = 0; i < BOOKS; i++) {
+            Fb2Creator creator = new Fb2Creator("title" + i).addAuthor("first" + i, null, "last" + i);
+            for (int j = 0; j < PARAGRAPHS; j++) {
+                creator.addContent(RandomStringUtils.random(200, 0, 0, true, false, null, random));
+            }
+            try (InputStream is = creator.getFbook()) {
+                books.add(is.readAllBytes());
+            }
+        }
+        return books;
+    }
+}
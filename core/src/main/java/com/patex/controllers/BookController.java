@@ -5,7 +5,11 @@ import com.patex.LibException;
 import com.patex.entities.Book;
 import com.patex.service.AdminService;
 import com.patex.service.BookService;
+import com.patex.service.BulkImportProgress;
+import com.patex.service.BulkImportService;
+import com.patex.service.DuplicateCheckStats;
 import com.patex.service.DuplicateHandler;
+import com.patex.service.InpxImportService;
 import com.patex.service.ZUserService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -28,6 +32,7 @@ import org.springframework.web.bind.annotation.ResponseBody;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.InputStream;
+import java.nio.file.Paths;
 import java.util.Arrays;
 import java.util.List;
 import java.util.stream.Collectors;
@@ -54,6 +59,12 @@ public class BookController {
     @Autowired
     private ZUserService userService;
 
+    @Autowired
+    private BulkImportService bulkImportService;
+
+    @Autowired
+    private InpxImportService inpxImportService;
+
     @RequestMapping(value = "/{id}", method = RequestMethod.GET)
     public @ResponseBody
     Book getBook(@PathVariable(value = "id") long id) {
@@ -129,6 +140,13 @@ public class BookController {
         return "success";
     }
 
+    @RequestMapping(value = "/duplicateCheckStats", method = RequestMethod.GET)
+    @Secured(ADMIN_AUTHORITY)
+    public @ResponseBody
+    DuplicateCheckStats duplicateCheckStats() {
+        return duplicateHandler.getStats();
+    }
+
     @RequestMapping(value = "/duplicateCheckForExisted", method = RequestMethod.GET)
     @Secured(ADMIN_AUTHORITY)
     public @ResponseBody
@@ -148,6 +166,36 @@ public class BookController {
     }
 
 
+    @RequestMapping(value = "/bulkImport", method = RequestMethod.GET)
+    @Secured(ADMIN_AUTHORITY)
+    public @ResponseBody
+    String bulkImport(@RequestParam("path") String path) {
+        bulkImportService.startImport(Paths.get(path), userService.getCurrentUser());
+        return "success";
+    }
+
+    @RequestMapping(value = "/bulkImportProgress", method = RequestMethod.GET)
+    @Secured(ADMIN_AUTHORITY)
+    public @ResponseBody
+    BulkImportProgress bulkImportProgress() {
+        return bulkImportService.getProgress();
+    }
+
+    @RequestMapping(value = "/inpxImport", method = RequestMethod.GET)
+    @Secured(ADMIN_AUTHORITY)
+    public @ResponseBody
+    String inpxImport(@RequestParam("path") String path) {
+        inpxImportService.startImport(Paths.get(path), userService.getCurrentUser());
+        return "success";
+    }
+
+    @RequestMapping(value = "/inpxImportProgress", method = RequestMethod.GET)
+    @Secured(ADMIN_AUTHORITY)
+    public @ResponseBody
+    BulkImportProgress inpxImportProgress() {
+        return inpxImportService.getProgress();
+    }
+
     @RequestMapping(value = "/updateCovers", method = RequestMethod.GET)
     @Secured(ADMIN_AUTHORITY)
     public @ResponseBody
@@ -9,6 +9,7 @@ import javax.persistence.GeneratedValue;
 import javax.persistence.GenerationType;
 import javax.persistence.Id;
 import javax.persistence.ManyToOne;
+import javax.persistence.SequenceGenerator;
 
 /**
  *
@@ -17,7 +18,8 @@ import javax.persistence.ManyToOne;
 public class AuthorBook {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "AUTHOR_BOOK_SEQ")
+    @SequenceGenerator(name = "AUTHOR_BOOK_SEQ", sequenceName = "AUTHOR_BOOK_SEQ", allocationSize = 50)
     private Long id;
 
     @ManyToOne(fetch = FetchType.EAGER, cascade = {CascadeType.PERSIST}, optional = false)
@@ -7,6 +7,7 @@ import org.springframework.data.repository.CrudRepository;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -19,7 +20,11 @@ public interface AuthorRepository extends CrudRepository<Author, Long> {
 
     List<Author> findByNameStartingWithIgnoreCaseOrderByName(String name);
 
-    Optional<Author> findFirstByNameIgnoreCase(String name);
+    @Query("SELECT a FROM Author a WHERE LOWER(a.name) = LOWER(:name)")
+    Optional<Author> findByLowerName(@Param("name") String name);
+
+    @Query("SELECT a FROM Author a WHERE LOWER(a.name) IN :names")
+    List<Author> findByLowerNames(@Param("names") Collection<String> lowerNames);
 
     @Query(value = "SELECT " +
             "  substring(a.name, 0, :prefixLength) AS id, " +
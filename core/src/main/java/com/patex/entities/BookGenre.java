@@ -9,6 +9,7 @@ import javax.persistence.GeneratedValue;
 import javax.persistence.GenerationType;
 import javax.persistence.Id;
 import javax.persistence.ManyToOne;
+import javax.persistence.SequenceGenerator;
 
 /**
  * Created by Alexey on 11.05.2016.
@@ -17,7 +18,8 @@ import javax.persistence.ManyToOne;
 public class BookGenre {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "BOOK_GENRE_SEQ")
+    @SequenceGenerator(name = "BOOK_GENRE_SEQ", sequenceName = "BOOK_GENRE_SEQ", allocationSize = 50)
     private Long id;
 
     @ManyToOne(fetch = FetchType.EAGER, cascade = {CascadeType.PERSIST}, optional = false)
@@ -5,6 +5,8 @@ import org.springframework.data.domain.Pageable;
 import org.springframework.data.repository.CrudRepository;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 /**
@@ -18,4 +20,6 @@ public interface BookRepository extends CrudRepository<Book, Long> {
 
     Optional<Book> findFirstByTitleAndChecksum(String title, byte[] checksum);
 
+    List<Book> findByChecksumIn(Collection<byte[]> checksums);
+
 }
@@ -22,7 +22,8 @@ import java.util.Map;
 public class BookSequence {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "BOOK_SEQUENCE_SEQ")
+    @SequenceGenerator(name = "BOOK_SEQUENCE_SEQ", sequenceName = "BOOK_SEQUENCE_SEQ", allocationSize = 50)
     private Long id;
 
     @Column(nullable = false)
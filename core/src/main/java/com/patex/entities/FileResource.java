@@ -5,6 +5,7 @@ import javax.persistence.Entity;
 import javax.persistence.GeneratedValue;
 import javax.persistence.GenerationType;
 import javax.persistence.Id;
+import javax.persistence.SequenceGenerator;
 
 /**
  * Created by potekhio on 17-Mar-16.
@@ -13,7 +14,8 @@ import javax.persistence.Id;
 public class FileResource {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "FILE_RESOURCE_SEQ")
+    @SequenceGenerator(name = "FILE_RESOURCE_SEQ", sequenceName = "FILE_RESOURCE_SEQ", allocationSize = 50)
     private long id;
 
     @Column
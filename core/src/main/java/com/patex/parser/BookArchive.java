@@ -0,0 +1,58 @@
+package com.patex.parser;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Archive with many books. Entries are found by the central directory of {@link ZipFile}
+ * and can be read in parallel, each by its own stream
+ */
+public class BookArchive implements Closeable {
+
+    private final ZipFile zipFile;
+    private final List<ZipEntry> entries;
+
+    /**
+     * @param isBook filter of entry file names
+     */
+    public BookArchive(Path file, Predicate<String> isBook) throws IOException {
+        zipFile = new ZipFile(file.toFile());
+        try {
+            entries = zipFile.stream().
+                    filter(entry -> !entry.isDirectory()).
+                    filter(entry -> isBook.test(getFileName(entry))).
+                    collect(Collectors.toList());
+        } catch (RuntimeException e) {
+            zipFile.close();
+            throw e;
+        }
+    }
+
+    public List<ZipEntry> getEntries() {
+        return entries;
+    }
+
+    public InputStream getInputStream(ZipEntry entry) throws IOException {
+        return zipFile.getInputStream(entry);
+    }
+
+    /**
+     * @return name of entry without folders
+     */
+    public static String getFileName(ZipEntry entry) {
+        String name = entry.getName();
+        return name.substring(name.lastIndexOf('/') + 1);
+    }
+
+    @Override
+    public void close() throws IOException {
+        zipFile.close();
+    }
+}
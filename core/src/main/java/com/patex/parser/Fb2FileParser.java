@@ -10,31 +10,56 @@ import com.patex.entities.Sequence;
 import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
-import javax.xml.namespace.QName;
-import javax.xml.stream.XMLEventReader;
 import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
 import javax.xml.stream.XMLStreamException;
-import javax.xml.stream.events.Attribute;
-import javax.xml.stream.events.StartElement;
-import javax.xml.stream.events.XMLEvent;
+import javax.xml.stream.XMLStreamReader;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.Arrays;
 import java.util.Base64;
 import java.util.Iterator;
-import java.util.Spliterators;
-import java.util.stream.StreamSupport;
+import java.util.NoSuchElementException;
 
+/**
+ * Parses fb2 with the StAX cursor api, no event object is created per tag or text chunk.
+ * Tag names come from the parser symbol table, so switches on them are cheap,
+ * text is copied from the parser buffer into one {@link StringBuilder} reused during the parse
+ */
 @Service
 public class Fb2FileParser implements FileParser {
 
     private static final Logger log = LoggerFactory.getLogger(Fb2FileParser.class);
 
+    private static final String XLINK_NS = "http://www.w3.org/1999/xlink";
+    private static final String TITLE_INFO = "title-info";
+    private static final String AUTHOR = "author";
+    private static final String COVERPAGE = "coverpage";
+    private static final String ANNOTATION = "annotation";
+    private static final String BODY = "body";
+    private static final String BINARY = "binary";
+    private static final String P = "p";
+    private static final int BASE64_CHUNK = 8192;
+
     private final XMLInputFactory factory;
+    private final int maxCoverSize;
 
     public Fb2FileParser() {
+        this(0);
+    }
+
+    /**
+     * @param maxCoverSizeMb covers larger than this are skipped, 0 - no limit
+     */
+    @Autowired
+    public Fb2FileParser(@Value("${parser.maxCoverSizeMb:0}") int maxCoverSizeMb) {
         factory = XMLInputFactory.newInstance();
+        maxCoverSize = maxCoverSizeMb > 0 ? maxCoverSizeMb * 1024 * 1024 : Integer.MAX_VALUE;
     }
 
     @Override
@@ -43,14 +68,15 @@ public class Fb2FileParser implements FileParser {
     }
 
     @Override
-    public BookInfo parseFile(String fileName, InputStream is) throws LibException {
+    public BookInfo parseFile(String fileName, InputStream is, ParseOptions options) throws LibException {
         try {
-            XMLEventReader reader = factory.createXMLEventReader(is);
-            while (reader.hasNext()) {
-                XMLEvent event = reader.nextEvent();
-                if (event.isStartElement() && "title-info".equals(event.asStartElement().getName().getLocalPart())) {
-                    return parseTitleInfo(reader);
+            XMLStreamReader reader = factory.createXMLStreamReader(is);
+            try {
+                if (skipTo(reader, TITLE_INFO)) {
+                    return parseTitleInfo(reader, options);
                 }
+            } finally {
+                reader.close();
             }
         } catch (XMLStreamException e) {
             throw new LibException(e.getMessage(), e);
@@ -58,255 +84,348 @@ public class Fb2FileParser implements FileParser {
         throw new LibException("unable to parse fb2 file");
     }
 
-    private BookInfo parseTitleInfo(XMLEventReader reader) {
+    private BookInfo parseTitleInfo(XMLStreamReader reader, ParseOptions options) {
         BookInfo bookInfo = new BookInfo();
         bookInfo.setBook(new Book());
+        StringBuilder text = new StringBuilder();
         try {
-            parseTitleInfo(reader, bookInfo);
-
+            parseTitleInfo(reader, bookInfo, text);
         } catch (XMLStreamException e) {
             log.error(e.getMessage(), e);
         }
+        if (options == ParseOptions.METADATA) {
+            return bookInfo;
+        }
         try {
-            parseBodyAndBinary(reader, bookInfo);
+            if (options == ParseOptions.FULL) {
+                parseBodyAndBinary(reader, bookInfo, text);
+            } else if (bookInfo.getCoverpageImageHref() != null) {
+                parseCover(reader, bookInfo);
+            }
         } catch (Exception e) {
             log.error(e.getMessage(), e);
         }
         return bookInfo;
     }
 
-    private void parseBodyAndBinary(XMLEventReader reader, BookInfo bookInfo) throws XMLStreamException {
-        bookInfo.getBook().setContentSize(0);
-        while (reader.hasNext()) {
-            XMLEvent event = reader.nextEvent();
-            if (event.isStartElement()) {
-                if ("body".equals(event.asStartElement().getName().getLocalPart())) {
-                    Integer contentSize = bookInfo.getBook().getContentSize();
-                    int bodySize = getBodyContentSize(reader);
-                    bookInfo.getBook().setContentSize(contentSize + bodySize);
-                } else if ("binary".equals(event.asStartElement().getName().getLocalPart())) {
-                    String id = event.asStartElement().getAttributeByName(QName.valueOf("id")).getValue();
-                    String type = event.asStartElement().getAttributeByName(QName.valueOf("content-type")).getValue();
-                    if (bookInfo.getCoverpageImageHref().contains(id) && type.contains("image")) {
-                        String binary = getText(reader, "binary").replaceAll("\n", "");
-                        byte[] imageBytes = Base64.getDecoder().decode(binary);
-                        BookImage bookImage = new BookImage();
-                        bookImage.setImage(imageBytes);
-                        bookImage.setType(type);
-                        bookInfo.setBookImage(bookImage);
-                    }
-                }
-            }
-        }
-    }
-
-    private int getBodyContentSize(XMLEventReader reader) {
-        Iterator<String> bodyIterator = createBodyIterator(reader);
-        return StreamSupport.stream(
-                Spliterators.spliteratorUnknownSize(bodyIterator, 0), false).
-                map(String::length).reduce((l, l2) -> l + l2).orElse(0);
-    }
-
-    private void parseTitleInfo(XMLEventReader reader, BookInfo bookInfo) throws XMLStreamException {
+    private void parseTitleInfo(XMLStreamReader reader, BookInfo bookInfo, StringBuilder text)
+            throws XMLStreamException {
         Book book = bookInfo.getBook();
         while (reader.hasNext()) {
-            XMLEvent event = reader.nextEvent();
-            if (event.isEndElement() && "title-info".equals(event.asEndElement().getName().getLocalPart())) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.END_ELEMENT && TITLE_INFO.equals(reader.getLocalName())) {
                 break;
-            } else if (event.isStartElement()) {
-                StartElement element = event.asStartElement();
-                String localPart = element.getName().getLocalPart();
-                if ("author".equals(localPart)) {
-                    Author author = parseAuthor(reader);
-                    book.addAuthor(author);
-                } else if ("coverpage".equals(localPart)) {
-                    bookInfo.setCoverage(getImageCoverage(reader));
-                } else if ("book-title".equals(localPart)) {
-                    book.setTitle(reader.getElementText());
-                } else if ("annotation".equals(localPart)) {
-                    book.setDescr(getText(reader, "annotation"));
-                } else if ("genre".equals(localPart)) {
-                    book.getGenres().add(new BookGenre(book, new Genre(reader.getElementText())));
-                } else if ("sequence".equals(localPart)) {
-                    String sequenceName = element.getAttributeByName(new QName("", "name")).getValue();
-                    Integer order;
-                    try {
-                        Attribute numberAttr = element.getAttributeByName(new QName("", "number"));
-                        order = numberAttr == null ? 0 : Integer.valueOf(numberAttr.getValue());
-                    } catch (NumberFormatException e) {
-                        order = 0;
-                        log.warn("sequence {} without order, book: {}", sequenceName, book.getTitle());
-                    }
-                    book.getSequences().add(new BookSequence(order, new Sequence(sequenceName)));
+            } else if (event == XMLStreamConstants.START_ELEMENT) {
+                switch (reader.getLocalName()) {
+                    case AUTHOR:
+                        book.addAuthor(parseAuthor(reader));
+                        break;
+                    case COVERPAGE:
+                        bookInfo.setCoverage(getImageCoverage(reader));
+                        break;
+                    case "book-title":
+                        book.setTitle(reader.getElementText());
+                        break;
+                    case ANNOTATION:
+                        readText(reader, ANNOTATION, text);
+                        book.setDescr(text.toString());
+                        break;
+                    case "genre":
+                        book.getGenres().add(new BookGenre(book, new Genre(reader.getElementText())));
+                        break;
+                    case "sequence":
+                        book.getSequences().add(parseSequence(reader, book));
+                        break;
+                    default:
                 }
             }
         }
     }
 
-    private String getText(XMLEventReader reader, String tag) throws XMLStreamException {
-        StringBuilder text = new StringBuilder();
-        while (reader.hasNext()) {
-            XMLEvent event = reader.nextEvent();
-            if (event.isCharacters()) {
-                String data = event.asCharacters().getData().trim();
-                if (!data.isEmpty()) {
-                    text.append(data).append("\n");
-                }
-            } else if (event.isEndElement() && tag.equals(event.asEndElement().getName().getLocalPart())) {
-                return text.length() == 0 ? "" : text.deleteCharAt(text.length() - 1).toString();
-            }
+    private BookSequence parseSequence(XMLStreamReader reader, Book book) {
+        String sequenceName = reader.getAttributeValue(null, "name");
+        String number = reader.getAttributeValue(null, "number");
+        Integer order;
+        try {
+            order = number == null ? 0 : Integer.valueOf(number);
+        } catch (NumberFormatException e) {
+            order = 0;
+            log.warn("sequence {} without order, book: {}", sequenceName, book.getTitle());
         }
-        return text.toString();
+        return new BookSequence(order, new Sequence(sequenceName));
     }
 
-    private Author parseAuthor(XMLEventReader reader) throws XMLStreamException {
+    private Author parseAuthor(XMLStreamReader reader) throws XMLStreamException {
         String lastName = null;
         String firstName = null;
         String middleName = null;
-        Author author = new Author();
         while (reader.hasNext()) {
-            XMLEvent event = reader.nextEvent();
-            if (event.isStartElement()) {
-                StartElement element = event.asStartElement();
-                String localPart = element.getName().getLocalPart();
-                if ("first-name".equals(localPart)) {
-                    firstName = reader.getElementText();
-                } else if ("middle-name".equals(localPart)) {
-                    middleName = reader.getElementText();
-                } else if ("last-name".equals(localPart)) {
-                    lastName = reader.getElementText();
+            int event = reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                switch (reader.getLocalName()) {
+                    case "first-name":
+                        firstName = reader.getElementText();
+                        break;
+                    case "middle-name":
+                        middleName = reader.getElementText();
+                        break;
+                    case "last-name":
+                        lastName = reader.getElementText();
+                        break;
+                    default:
                 }
-            }
-            if (event.isEndElement() && "author".equals(event.asEndElement().getName().getLocalPart())) {
-                String name = "";
-                if (StringUtils.isNotEmpty(lastName)) {
-                    name += lastName;
-                }
-                if (StringUtils.isNotEmpty(firstName)) {
-                    if (!name.isEmpty()) {
-                        name += " ";
-                    }
-                    name += firstName;
-                }
-                if (StringUtils.isNotEmpty(middleName)) {
-                    if (!name.isEmpty()) {
-                        name += " ";
-                    }
-                    name += middleName;
-                }
-                author.setName(name);
+            } else if (event == XMLStreamConstants.END_ELEMENT && AUTHOR.equals(reader.getLocalName())) {
+                Author author = new Author();
+                author.setName(joinName(lastName, firstName, middleName));
                 return author;
             }
         }
         return null;
     }
 
-    private String getImageCoverage(XMLEventReader reader) throws XMLStreamException {
-        while (reader.hasNext()) {
-            XMLEvent event = reader.nextEvent();
-            if (event.isStartElement()) {
-                StartElement element = event.asStartElement();
-                String localPart = element.getName().getLocalPart();
-                if ("image".equals(localPart)) {
-                    QName hrefQName = new QName("http://www.w3.org/1999/xlink", "href");
-                    Attribute href = element.getAttributeByName(hrefQName);
-                    return href.getValue();
+    private static String joinName(String... parts) {
+        StringBuilder name = new StringBuilder();
+        for (String part : parts) {
+            if (StringUtils.isNotEmpty(part)) {
+                if (name.length() > 0) {
+                    name.append(' ');
                 }
+                name.append(part);
             }
-            if (event.isEndElement() && "coverage".equals(event.asEndElement().getName().getLocalPart())) {
+        }
+        return name.toString();
+    }
+
+    private String getImageCoverage(XMLStreamReader reader) throws XMLStreamException {
+        while (reader.hasNext()) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT && "image".equals(reader.getLocalName())) {
+                return reader.getAttributeValue(XLINK_NS, "href");
+            } else if (event == XMLStreamConstants.END_ELEMENT && COVERPAGE.equals(reader.getLocalName())) {
                 return null;
             }
         }
         return null;
     }
 
-    @Override
-    public Iterator<String> getContentIterator(String fileName, InputStream is) throws LibException {
-        try {
-            XMLEventReader reader = factory.createXMLEventReader(is);
-            while (reader.hasNext()) {
-                XMLEvent event = reader.nextEvent();
-                if (event.isStartElement() &&
-                        "body".equals(event.asStartElement().getName().getLocalPart())) {
-                    break;
+    private void parseBodyAndBinary(XMLStreamReader reader, BookInfo bookInfo, StringBuilder text)
+            throws XMLStreamException {
+        Book book = bookInfo.getBook();
+        book.setContentSize(0);
+        while (reader.hasNext()) {
+            if (reader.next() == XMLStreamConstants.START_ELEMENT) {
+                switch (reader.getLocalName()) {
+                    case BODY:
+                        int bodySize = 0;
+                        while (nextParagraph(reader, text)) {
+                            bodySize += text.length();
+                        }
+                        book.setContentSize(book.getContentSize() + bodySize);
+                        break;
+                    case BINARY:
+                        parseBinary(reader, bookInfo);
+                        break;
+                    default:
                 }
             }
-            Iterator<String> bodyIterator = createBodyIterator(reader);
-            return new CloseableIterator() {
-                Iterator<String> iterator = bodyIterator;
+        }
+    }
 
-                @Override
-                public void close() {
-                    try {
-                        reader.close();
-                        is.close();
-                    } catch (XMLStreamException | IOException e) {
-                        throw new LibException(e);
-                    }
+    /**
+     * Skips body text without counting it, stops after the cover image
+     */
+    private void parseCover(XMLStreamReader reader, BookInfo bookInfo) throws XMLStreamException {
+        while (bookInfo.getBookImage() == null && skipTo(reader, BINARY)) {
+            parseBinary(reader, bookInfo);
+        }
+    }
+
+    /**
+     * Decodes cover image chunk by chunk straight from the parser buffer, text of other binaries is not copied at all
+     */
+    private void parseBinary(XMLStreamReader reader, BookInfo bookInfo) throws XMLStreamException {
+        String id = reader.getAttributeValue(null, "id");
+        String type = reader.getAttributeValue(null, "content-type");
+        String coverHref = bookInfo.getCoverpageImageHref();
+        if (coverHref != null && id != null && type != null && coverHref.contains(id) && type.contains("image")) {
+            try {
+                byte[] image = decodeBinary(reader);
+                if (image == null) {
+                    log.warn("cover {} is larger than {} bytes, skipped", id, maxCoverSize);
+                    return;
                 }
+                BookImage bookImage = new BookImage();
+                bookImage.setImage(image);
+                bookImage.setType(type);
+                bookInfo.setBookImage(bookImage);
+            } catch (IllegalArgumentException e) {
+                log.warn("unable to decode cover " + id, e);
+            }
+        }
+    }
 
-                @Override
-                public boolean hasNext() {
-                    boolean hasNext = iterator.hasNext();
-                    if (!hasNext) {
-                        try {
-                            while (reader.hasNext()) {
-                                XMLEvent event = reader.nextEvent();
-                                if (event.isStartElement() &&
-                                        "body".equals(event.asStartElement().getName().getLocalPart())) {
-                                    iterator = createBodyIterator(reader);
-                                    return hasNext();
-                                }
+    /**
+     * @return decoded content of the current binary or null if it is larger than max cover size
+     */
+    private byte[] decodeBinary(XMLStreamReader reader) throws XMLStreamException {
+        Base64.Decoder decoder = Base64.getDecoder();
+        ByteArrayOutputStream image = new ByteArrayOutputStream();
+        byte[] encoded = new byte[BASE64_CHUNK];
+        byte[] decoded = new byte[BASE64_CHUNK / 4 * 3];
+        int length = 0;
+        while (reader.hasNext()) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.CHARACTERS || event == XMLStreamConstants.CDATA ||
+                    event == XMLStreamConstants.SPACE) {
+                char[] chars = reader.getTextCharacters();
+                int end = reader.getTextStart() + reader.getTextLength();
+                for (int i = reader.getTextStart(); i < end; i++) {
+                    if (chars[i] > ' ') {
+                        encoded[length++] = (byte) chars[i];
+                        if (length == encoded.length) {
+                            image.write(decoded, 0, decoder.decode(encoded, decoded));
+                            length = 0;
+                            if (image.size() > maxCoverSize) {
+                                return null;
                             }
-                        } catch (XMLStreamException e) {
-                            log.warn(e.getMessage(), e);
                         }
-                        close();
                     }
-                    return hasNext;
                 }
+            } else if (event == XMLStreamConstants.END_ELEMENT && BINARY.equals(reader.getLocalName())) {
+                break;
+            }
+        }
+        image.write(decoded, 0, decoder.decode(Arrays.copyOf(encoded, length), decoded));
+        return image.size() > maxCoverSize ? null : image.toByteArray();
+    }
+
+    /**
+     * Moves reader to the next start of tag
+     *
+     * @return false if there is no such tag till the end of document
+     */
+    private static boolean skipTo(XMLStreamReader reader, String tag) throws XMLStreamException {
+        while (reader.hasNext()) {
+            if (reader.next() == XMLStreamConstants.START_ELEMENT && tag.equals(reader.getLocalName())) {
+                return true;
+            }
+        }
+        return false;
+    }
 
-                @Override
-                public String next() {
-                    return iterator.next();
+    /**
+     * Reads text of the next paragraph of the current body into text
+     *
+     * @return false if the body is over
+     */
+    private static boolean nextParagraph(XMLStreamReader reader, StringBuilder text) throws XMLStreamException {
+        while (reader.hasNext()) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.END_ELEMENT && BODY.equals(reader.getLocalName())) {
+                return false;
+            } else if (event == XMLStreamConstants.START_ELEMENT && P.equals(reader.getLocalName())) {
+                readText(reader, P, text);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Replaces content of text by trimmed not empty text chunks up to the end of tag, joined by new line
+     */
+    private static void readText(XMLStreamReader reader, String tag, StringBuilder text) throws XMLStreamException {
+        text.setLength(0);
+        while (reader.hasNext()) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.CHARACTERS || event == XMLStreamConstants.CDATA ||
+                    event == XMLStreamConstants.SPACE) {
+                char[] chars = reader.getTextCharacters();
+                int start = reader.getTextStart();
+                int end = start + reader.getTextLength();
+                while (start < end && chars[start] <= ' ') {
+                    start++;
+                }
+                while (end > start && chars[end - 1] <= ' ') {
+                    end--;
+                }
+                if (start < end) {
+                    text.append(chars, start, end - start).append('\n');
                 }
-            };
+            } else if (event == XMLStreamConstants.END_ELEMENT && tag.equals(reader.getLocalName())) {
+                break;
+            }
+        }
+        if (text.length() > 0) {
+            text.setLength(text.length() - 1);
+        }
+    }
+
+    @Override
+    public Iterator<String> getContentIterator(String fileName, InputStream is) throws LibException {
+        try {
+            return new ContentIterator(factory.createXMLStreamReader(is), is);
         } catch (XMLStreamException e) {
             throw new LibException(e.getMessage(), e);
         }
     }
 
-    private Iterator<String> createBodyIterator(XMLEventReader reader) {
-        return new Iterator<String>() {
-            private String next = calcNext();
+    /**
+     * Paragraphs of all bodies, closes reader and stream after the last one
+     */
+    private static final class ContentIterator implements CloseableIterator {
 
-            @Override
-            public boolean hasNext() {
-                return next != null;
-            }
+        private final XMLStreamReader reader;
+        private final InputStream is;
+        private final StringBuilder text = new StringBuilder();
+        private boolean inBody;
+        private String next;
 
-            @Override
-            public String next() {
-                String next = this.next;
-                this.next = calcNext();
-                return next;
+        private ContentIterator(XMLStreamReader reader, InputStream is) {
+            this.reader = reader;
+            this.is = is;
+            next = calcNext();
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        @Override
+        public String next() {
+            if (next == null) {
+                throw new NoSuchElementException();
             }
+            String result = next;
+            next = calcNext();
+            return result;
+        }
 
-            private String calcNext() {
-                try {
-                    while (reader.hasNext()) {
-                        XMLEvent event = reader.nextEvent();
-                        if (event.isEndElement() && "body".equals(event.asEndElement().getName().getLocalPart())) {
-                            return null;
-                        } else if (event.isStartElement() && "p".equals(event.asStartElement().getName().getLocalPart())) {
-                            return getText(reader, "p");
-                        }
+        private String calcNext() {
+            try {
+                while (inBody || skipTo(reader, BODY)) {
+                    inBody = nextParagraph(reader, text);
+                    if (inBody) {
+                        return text.toString();
                     }
-                } catch (XMLStreamException e) {
-                    throw new LibException(e.getMessage(), e);
                 }
-                return null;
+            } catch (XMLStreamException e) {
+                close();
+                throw new LibException(e.getMessage(), e);
             }
-        };
+            close();
+            return null;
+        }
+
+        @Override
+        public void close() {
+            try {
+                reader.close();
+                is.close();
+            } catch (XMLStreamException | IOException e) {
+                throw new LibException(e);
+            }
+        }
     }
 }
@@ -12,7 +12,11 @@ public interface FileParser {
 
     String getExtension();
 
-    BookInfo parseFile(String fileName, InputStream is) throws LibException;
+    default BookInfo parseFile(String fileName, InputStream is) throws LibException {
+        return parseFile(fileName, is, ParseOptions.FULL);
+    }
+
+    BookInfo parseFile(String fileName, InputStream is, ParseOptions options) throws LibException;
 
     Iterator<String> getContentIterator(String fileName, InputStream is) throws LibException;
 }
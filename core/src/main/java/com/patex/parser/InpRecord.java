@@ -0,0 +1,53 @@
+package com.patex.parser;
+
+/**
+ * Book of inpx catalog: its place in archive of library dump and metadata
+ */
+public class InpRecord {
+
+    private final String archive;
+    private final String fileName;
+    private final int size;
+    private final boolean deleted;
+    private final BookInfo bookInfo;
+
+    InpRecord(String archive, String fileName, int size, boolean deleted, BookInfo bookInfo) {
+        this.archive = archive;
+        this.fileName = fileName;
+        this.size = size;
+        this.deleted = deleted;
+        this.bookInfo = bookInfo;
+    }
+
+    /**
+     * @return file name of archive with the book, relative to the catalog folder
+     */
+    public String getArchive() {
+        return archive;
+    }
+
+    /**
+     * @return name of the book entry in archive
+     */
+    public String getFileName() {
+        return fileName;
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * @return true if the book is removed from library, but still listed in catalog
+     */
+    public boolean isDeleted() {
+        return deleted;
+    }
+
+    /**
+     * @return book with title, authors, genres and sequence, without content size and cover
+     */
+    public BookInfo getBookInfo() {
+        return bookInfo;
+    }
+}
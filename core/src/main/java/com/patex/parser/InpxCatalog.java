@@ -0,0 +1,184 @@
+package com.patex.parser;
+
+import com.patex.LibException;
+import com.patex.entities.Author;
+import com.patex.entities.Book;
+import com.patex.entities.BookGenre;
+import com.patex.entities.BookSequence;
+import com.patex.entities.Genre;
+import com.patex.entities.Sequence;
+import org.apache.commons.lang3.StringUtils;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.stream.Collectors;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Reads inpx catalog of library dump: zip of inp files, one for each archive of books.
+ * Every line of inp file describes one book, lines are read one by one, so catalog of any size can be read.
+ * Order of fields is taken from structure.info of catalog if it is present
+ */
+public class InpxCatalog implements Iterator<InpRecord>, Closeable {
+
+    private static final String FIELD_SEPARATOR = "\u0004";
+    private static final String STRUCTURE_INFO = "structure.info";
+    private static final List<String> DEFAULT_STRUCTURE = Arrays.asList("AUTHOR", "GENRE", "TITLE", "SERIES",
+            "SERNO", "FILE", "SIZE", "LIBID", "DEL", "EXT", "DATE", "LANG", "LIBRATE", "KEYWORDS");
+
+    private final ZipFile zipFile;
+    private final Map<String, Integer> fieldIndexes = new HashMap<>();
+    private final Iterator<ZipEntry> inpEntries;
+    private BufferedReader reader;
+    private String archive;
+    private InpRecord next;
+
+    public InpxCatalog(Path inpx) throws IOException {
+        zipFile = new ZipFile(inpx.toFile());
+        try {
+            List<String> structure = readStructure();
+            for (int i = 0; i < structure.size(); i++) {
+                fieldIndexes.put(structure.get(i), i);
+            }
+            inpEntries = zipFile.stream().
+                    filter(entry -> entry.getName().toLowerCase(Locale.ROOT).endsWith(".inp")).
+                    collect(Collectors.<ZipEntry>toList()).iterator();
+            next = calcNext();
+        } catch (IOException | RuntimeException e) {
+            close();
+            throw e;
+        }
+    }
+
+    private List<String> readStructure() throws IOException {
+        ZipEntry entry = zipFile.getEntry(STRUCTURE_INFO);
+        if (entry == null) {
+            return DEFAULT_STRUCTURE;
+        }
+        try (BufferedReader structureReader = new BufferedReader(
+                new InputStreamReader(zipFile.getInputStream(entry), StandardCharsets.UTF_8))) {
+            List<String> structure = structureReader.lines().
+                    flatMap(line -> Arrays.stream(line.split(";"))).
+                    map(field -> field.trim().toUpperCase(Locale.ROOT)).
+                    filter(field -> !field.isEmpty()).
+                    collect(Collectors.toList());
+            return structure.isEmpty() ? DEFAULT_STRUCTURE : structure;
+        }
+    }
+
+    @Override
+    public boolean hasNext() {
+        return next != null;
+    }
+
+    @Override
+    public InpRecord next() {
+        if (next == null) {
+            throw new NoSuchElementException();
+        }
+        InpRecord result = next;
+        try {
+            next = calcNext();
+        } catch (IOException e) {
+            throw new LibException(e.getMessage(), e);
+        }
+        return result;
+    }
+
+    private InpRecord calcNext() throws IOException {
+        while (true) {
+            if (reader == null) {
+                if (!inpEntries.hasNext()) {
+                    return null;
+                }
+                ZipEntry entry = inpEntries.next();
+                String name = entry.getName().substring(entry.getName().lastIndexOf('/') + 1);
+                archive = name.substring(0, name.length() - ".inp".length()) + ".zip";
+                reader = new BufferedReader(new InputStreamReader(zipFile.getInputStream(entry), StandardCharsets.UTF_8));
+            }
+            String line = reader.readLine();
+            if (line == null) {
+                reader.close();
+                reader = null;
+            } else if (!line.isEmpty()) {
+                return parseLine(line);
+            }
+        }
+    }
+
+    private InpRecord parseLine(String line) {
+        String[] fields = line.split(FIELD_SEPARATOR, -1);
+        Book book = new Book();
+        book.setTitle(getField(fields, "TITLE"));
+        for (String author : getField(fields, "AUTHOR").split(":")) {
+            String name = parseAuthorName(author);
+            if (!name.isEmpty()) {
+                book.addAuthor(new Author(name));
+            }
+        }
+        for (String genre : getField(fields, "GENRE").split(":")) {
+            if (!genre.isEmpty()) {
+                book.getGenres().add(new BookGenre(book, new Genre(genre)));
+            }
+        }
+        String series = getField(fields, "SERIES");
+        if (!series.isEmpty()) {
+            book.getSequences().add(new BookSequence(parseInt(getField(fields, "SERNO")), new Sequence(series)));
+        }
+        BookInfo bookInfo = new BookInfo();
+        bookInfo.setBook(book);
+
+        String ext = getField(fields, "EXT");
+        String fileName = getField(fields, "FILE") + "." + (ext.isEmpty() ? "fb2" : ext);
+        String folder = getField(fields, "FOLDER");
+        String bookArchive = folder.isEmpty() ? archive : folder;
+        return new InpRecord(bookArchive, fileName, parseInt(getField(fields, "SIZE")),
+                "1".equals(getField(fields, "DEL")), bookInfo);
+    }
+
+    private String getField(String[] fields, String name) {
+        Integer index = fieldIndexes.get(name);
+        return index == null || index >= fields.length ? "" : fields[index].trim();
+    }
+
+    /**
+     * Author is written as "last,first,middle", the name is joined in the same order as fb2 parser does
+     */
+    private static String parseAuthorName(String author) {
+        return Arrays.stream(author.split(",")).
+                map(String::trim).
+                filter(StringUtils::isNotEmpty).
+                collect(Collectors.joining(" "));
+    }
+
+    private static int parseInt(String value) {
+        try {
+            return value.isEmpty() ? 0 : Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            if (reader != null) {
+                reader.close();
+            }
+        } finally {
+            zipFile.close();
+        }
+    }
+}
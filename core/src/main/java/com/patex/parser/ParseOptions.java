@@ -0,0 +1,22 @@
+package com.patex.parser;
+
+/**
+ * How much of a book {@link FileParser#parseFile(String, java.io.InputStream, ParseOptions)} should read
+ */
+public enum ParseOptions {
+
+    /**
+     * Title info only, the rest of file is not read. Content size is left 0, cover image is not set
+     */
+    METADATA,
+
+    /**
+     * Title info and cover image, text is skipped without counting, so content size is left 0
+     */
+    METADATA_AND_COVER,
+
+    /**
+     * Title info, cover image and content size
+     */
+    FULL
+}
@@ -26,12 +26,24 @@ public class ParserService {
     }
 
     public BookInfo getBookInfo(String fileName, InputStream stream) throws LibException {
+        return getBookInfo(fileName, stream, ParseOptions.FULL);
+    }
+
+    public BookInfo getBookInfo(String fileName, InputStream stream, ParseOptions options) throws LibException {
         FileParser parser = getParser(fileName);
-        return parser.parseFile(fileName, stream);
+        return parser.parseFile(fileName, stream, options);
+    }
+
+    public boolean isSupported(String fileName) {
+        return parserMap.containsKey(getExtension(fileName));
+    }
+
+    private static String getExtension(String fileName) {
+        return fileName.substring(fileName.lastIndexOf(".") + 1).toLowerCase();
     }
 
     private FileParser getParser(String fileName) {
-        String extension = fileName.substring(fileName.lastIndexOf(".") + 1).toLowerCase();
+        String extension = getExtension(fileName);
         FileParser parser = parserMap.get(extension);
         if (parser == null) {
             throw new LibException("unsupportd extension: " + extension);
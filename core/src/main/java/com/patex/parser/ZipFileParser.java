@@ -32,8 +32,9 @@ public class ZipFileParser implements FileParser {
     }
 
     @Override
-    public synchronized BookInfo parseFile(String fileName, InputStream is) throws LibException {
-        return goDeep(is, zis -> parserService.getBookInfo(fileName.substring(0, fileName.lastIndexOf('.')), zis));
+    public BookInfo parseFile(String fileName, InputStream is, ParseOptions options) throws LibException {
+        return goDeep(is, zis ->
+                parserService.getBookInfo(fileName.substring(0, fileName.lastIndexOf('.')), zis, options));
     }
 
     private <T> T goDeep(InputStream is, Function<InputStream, T> f) throws LibException {
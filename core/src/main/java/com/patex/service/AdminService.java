@@ -1,5 +1,6 @@
 package com.patex.service;
 
+import com.patex.LibException;
 import com.patex.entities.Author;
 import com.patex.entities.AuthorBook;
 import com.patex.entities.Book;
@@ -7,10 +8,12 @@ import com.patex.entities.FileResource;
 import com.patex.entities.ZUser;
 import com.patex.parser.BookImage;
 import com.patex.parser.BookInfo;
+import com.patex.parser.ParseOptions;
 import com.patex.parser.ParserService;
 import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 
+import java.io.IOException;
 import java.io.InputStream;
 import java.util.List;
 import java.util.stream.Collectors;
@@ -45,15 +48,18 @@ public class AdminService {
     }
 
     private void updateCover(Book book) {
-        InputStream bookIs = bookService.getBookInputStream(book);
         String fileName = book.getFileName();
-        BookInfo bookInfo = parserService.getBookInfo(fileName, bookIs);
-        BookImage bookImage = bookInfo.getBookImage();
-        if (bookImage != null) {
-            String cover = bookService.saveCover(fileName, bookImage);
-            book.setCover(new FileResource(cover, bookImage.getType(), bookImage.getImage().length));
+        try (InputStream bookIs = bookService.getBookInputStream(book)) {
+            BookInfo bookInfo = parserService.getBookInfo(fileName, bookIs, ParseOptions.METADATA_AND_COVER);
+            BookImage bookImage = bookInfo.getBookImage();
+            if (bookImage != null) {
+                String cover = bookService.saveCover(fileName, bookImage);
+                book.setCover(new FileResource(cover, bookImage.getType(), bookImage.getImage().length));
+            }
+            bookService.save(book);
+        } catch (IOException e) {
+            throw new LibException(e);
         }
-        bookService.save(book);
     }
 
     public void publisEventForExistingBooks(ZUser user) {
@@ -3,12 +3,20 @@ package com.patex.service;
 import com.patex.entities.AggrResult;
 import com.patex.entities.Author;
 import com.patex.entities.AuthorRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 import java.util.Optional;
+import java.util.stream.Collectors;
 
 /**
  * Created by potekhio on 15-Mar-16.
@@ -16,10 +24,16 @@ import java.util.Optional;
 @Service
 public class AuthorService {
 
+    private static final Logger log = LoggerFactory.getLogger(AuthorService.class);
+
+    private static final int CREATE_ATTEMPTS = 3;
+
     private final AuthorRepository authorRepository;
+    private final TransactionService transactionService;
 
-    public AuthorService(AuthorRepository authorRepository) {
+    public AuthorService(AuthorRepository authorRepository, TransactionService transactionService) {
         this.authorRepository = authorRepository;
+        this.transactionService = transactionService;
     }
 
     public Author getAuthor(long id) {
@@ -34,8 +48,72 @@ public class AuthorService {
         return authorRepository.findByNameStartingWithIgnoreCaseOrderByName(name);
     }
 
+    /**
+     * Name is compared by the same {@code LOWER} as unique name key of author
+     */
     public Optional<Author> findFirstByNameIgnoreCase(String name) {
-        return authorRepository.findFirstByNameIgnoreCase(name);
+        return authorRepository.findByLowerName(name);
+    }
+
+    /**
+     * Author is saved in its own transaction, if the same author is saved concurrently
+     * case insensitive unique name constraint fails and the author is searched again
+     */
+    public void createIfAbsent(String name) {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                transactionService.newTransaction(() -> {
+                    if (!authorRepository.findByLowerName(name).isPresent()) {
+                        authorRepository.save(new Author(name));
+                    }
+                });
+                return;
+            } catch (DataIntegrityViolationException e) {
+                if (attempt >= CREATE_ATTEMPTS) {
+                    throw e;
+                }
+                log.debug("Author {} is created concurrently, attempt {}", name, attempt);
+            }
+        }
+    }
+
+    /**
+     * Missing authors are saved in one transaction, if it fails because of concurrent creation
+     * authors are created one by one
+     */
+    public void createAllIfAbsent(Collection<String> names) {
+        try {
+            transactionService.newTransaction(() -> {
+                Map<String, Author> existed = findByNames(names);
+                Map<String, String> missing = new HashMap<>();
+                names.forEach(name -> missing.putIfAbsent(toKey(name), name));
+                existed.keySet().forEach(missing::remove);
+                missing.values().stream().map(Author::new).forEach(authorRepository::save);
+            });
+        } catch (DataIntegrityViolationException e) {
+            log.debug("Authors are created concurrently, creating one by one");
+            names.forEach(this::createIfAbsent);
+        }
+    }
+
+    /**
+     * @return authors by {@link #toKey(String)} of name
+     */
+    public Map<String, Author> findByNames(Collection<String> names) {
+        if (names.isEmpty()) {
+            return new HashMap<>();
+        }
+        List<String> keys = names.stream().map(AuthorService::toKey).distinct().collect(Collectors.toList());
+        Map<String, Author> result = new HashMap<>();
+        authorRepository.findByLowerNames(keys).forEach(author -> result.putIfAbsent(toKey(author.getName()), author));
+        return result;
+    }
+
+    /**
+     * @return the same key as {@code LOWER(NAME)} of the unique name constraint, name isn't trimmed
+     */
+    static String toKey(String name) {
+        return name.toLowerCase(Locale.ROOT);
     }
 
     public Page<Author> getAuthor(Pageable pageable, String prefix) {
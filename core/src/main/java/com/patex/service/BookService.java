@@ -1,5 +1,6 @@
 package com.patex.service;
 
+import com.google.common.util.concurrent.Striped;
 import com.patex.LibException;
 import com.patex.entities.Author;
 import com.patex.entities.AuthorBook;
@@ -22,17 +23,28 @@ import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestInputStream;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.time.Instant;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.locks.Lock;
+import java.util.function.Function;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 /**
@@ -43,6 +55,7 @@ import java.util.stream.Collectors;
 public class BookService {
    private static final Logger log = LoggerFactory.getLogger(BookService.class);
 
+    private static final int AUTHOR_LOCK_STRIPES = 64;
 
     private final BookRepository bookRepository;
     private final SequenceService sequenceService;
@@ -52,6 +65,7 @@ public class BookService {
     private final TransactionService transactionService;
 
     private final ApplicationEventPublisher publisher;
+    private final Striped<Lock> authorLocks = Striped.lock(AUTHOR_LOCK_STRIPES);
 
     @Autowired
     public BookService(BookRepository bookRepository, SequenceService sequenceService,
@@ -66,59 +80,200 @@ public class BookService {
         this.publisher = publisher;
     }
 
-    public synchronized Book uploadBook(String fileName, InputStream is, ZUser user) throws LibException {
-        Book result = transactionService.newTransaction(() -> {
-            byte[] byteArray = loadFromStream(is);
-            byte[] checksum = getChecksum(byteArray);
-            BookInfo bookInfo = parserService.getBookInfo(fileName, new ByteArrayInputStream(byteArray));
-            Book book = bookInfo.getBook();
-            Optional<Book> sameBook = bookRepository.findFirstByTitleAndChecksum(book.getTitle(), checksum);
-            if (sameBook.isPresent()) {
-                return sameBook.get();
-            }
-            log.trace("new book:{}",  book.getFileName());
-            List<Author> authors = book.getAuthorBooks().stream().
-                    map(AuthorBook::getAuthor).
-                    map(author -> authorService.findFirstByNameIgnoreCase(author.getName()).orElse(author)).
-                    collect(Collectors.toList());
-            List<AuthorBook> authorsBooks = authors.stream().
-                    map(author -> new AuthorBook(author, book)).collect(Collectors.toList());
-            book.setAuthorBooks(authorsBooks);
-
-            Map<String, List<Sequence>> sequenceMapList = authors.stream().
-                    flatMap(Author::getSequencesStream).
-                    filter(sequence -> sequence.getId() != null). //already saved
-                    filter(StreamU.distinctByKey(Sequence::getId)).
-                    collect(Collectors.groupingBy(Sequence::getName, Collectors.toList()));
-            // some magic if 2 authors wrote the same sequence but different books
-            Map<String, Sequence> sequencesMap = sequenceMapList.entrySet().stream().
-                    collect(Collectors.toMap(Map.Entry::getKey, e -> sequenceService.mergeSequences(e.getValue())));
-
-
-            List<BookSequence> sequences = book.getSequences().stream().
-                    map(bs -> {
-                        Sequence sequence = bs.getSequence();
-                        return new BookSequence(bs.getSeqOrder(),
-                                sequencesMap.getOrDefault(sequence.getName(), sequence), book);
-                    }).collect(Collectors.toList());
-            book.setSequences(sequences);
-
-            String fileId = fileStorage.save(byteArray, fileName);
-            book.setFileResource(new FileResource(fileId, "application/fb2+zip", byteArray.length));//TODO improve me
-            BookImage bookImage = bookInfo.getBookImage();
-            if (bookImage != null) {
-                String cover = saveCover(fileName, bookImage);
-                book.setCover(new FileResource(cover, bookImage.getType(), bookImage.getImage().length));
+    /**
+     * Upload is copied to a temp file in the storage with checksum calculation and parsed from it,
+     * so memory usage doesn't depend on file size. Uploads run concurrently,
+     * only saving of books with the same author is serialized
+     */
+    public Book uploadBook(String fileName, InputStream is, ZUser user) throws LibException {
+        ParsedBook parsed = parseBook(fileName, is);
+        try {
+            Book result = saveBook(parsed);
+            publisher.publishEvent(new BookCreationEvent(result, user));
+            return result;
+        } finally {
+            deleteTempFile(parsed.getTempFile());
+        }
+    }
+
+    /**
+     * Temp file of the result should be deleted by caller, if the book isn't saved
+     */
+    ParsedBook parseBook(String fileName, InputStream is) throws LibException {
+        Path tempFile = fileStorage.createTempFile();
+        try {
+            byte[] checksum = copyToFile(is, tempFile);
+            BookInfo bookInfo;
+            try (InputStream fileIs = Files.newInputStream(tempFile)) {
+                bookInfo = parserService.getBookInfo(fileName, fileIs);
             }
-            book.setFileName(fileName);
-            book.setChecksum(checksum);
-            book.setCreated(Instant.now());
-            Book save = bookRepository.save(book);
-            someMagic(book);
-            return save;
+            return new ParsedBook(fileName, tempFile, checksum, (int) Files.size(tempFile), bookInfo);
+        } catch (IOException e) {
+            deleteTempFile(tempFile);
+            throw new LibException(e);
+        } catch (RuntimeException e) {
+            deleteTempFile(tempFile);
+            throw e;
+        }
+    }
+
+    /**
+     * Authors and sequences are resolved by name, so books are locked by normalized author names,
+     * missing authors are created before the book transaction and are guarded by unique name constraint
+     */
+    private Book saveBook(ParsedBook parsed) {
+        return withAuthorLocks(Collections.singletonList(parsed), () -> {
+            getAuthorNames(Collections.singletonList(parsed)).forEach(authorService::createIfAbsent);
+            return deleteStoredOnFailure(storedFiles -> transactionService.newReadCommittedTransaction(() ->
+                    bookRepository.findFirstByTitleAndChecksum(parsed.getBook().getTitle(), parsed.getChecksum()).
+                            orElseGet(() -> saveNewBook(parsed, authorService::findFirstByNameIgnoreCase,
+                                    storedFiles))));
         });
-        publisher.publishEvent(new BookCreationEvent(result, user));
-        return result;
+    }
+
+    /**
+     * Saves books in one transaction, authors and already saved books are searched for all books at once
+     *
+     * @return saved books, books which are already saved or repeated in the list are skipped
+     */
+    List<Book> saveBooks(List<ParsedBook> parsedBooks) {
+        return withAuthorLocks(parsedBooks, () -> {
+            Set<String> names = getAuthorNames(parsedBooks);
+            authorService.createAllIfAbsent(names);
+            return deleteStoredOnFailure(storedFiles -> transactionService.newReadCommittedTransaction(() -> {
+                Map<String, Author> authors = authorService.findByNames(names);
+                Function<String, Optional<Author>> authorLookup = name -> {
+                    Author author = authors.get(AuthorService.toKey(name));
+                    return author == null ? authorService.findFirstByNameIgnoreCase(name) : Optional.of(author);
+                };
+                List<byte[]> checksums = parsedBooks.stream().map(ParsedBook::getChecksum).
+                        collect(Collectors.toList());
+                Set<String> savedKeys = bookRepository.findByChecksumIn(checksums).stream().
+                        map(book -> getBookKey(book.getTitle(), book.getChecksum())).
+                        collect(Collectors.toCollection(HashSet::new));
+                List<Book> result = new ArrayList<>();
+                for (ParsedBook parsed : parsedBooks) {
+                    if (savedKeys.add(getBookKey(parsed.getBook().getTitle(), parsed.getChecksum()))) {
+                        result.add(saveNewBook(parsed, authorLookup, storedFiles));
+                    }
+                }
+                return result;
+            }));
+        });
+    }
+
+    /**
+     * Book files and covers are moved to the storage inside of the transaction,
+     * so they are deleted if the transaction fails
+     */
+    private <T> T deleteStoredOnFailure(Function<List<String>, T> save) {
+        List<String> storedFiles = new ArrayList<>();
+        try {
+            return save.apply(storedFiles);
+        } catch (RuntimeException e) {
+            for (String fileId : storedFiles) {
+                try {
+                    fileStorage.delete(fileId);
+                } catch (RuntimeException deleteException) {
+                    log.warn("Unable to delete file " + fileId, deleteException);
+                }
+            }
+            throw e;
+        }
+    }
+
+    private <T> T withAuthorLocks(List<ParsedBook> parsedBooks, Supplier<T> supplier) {
+        List<String> keys = parsedBooks.stream().
+                flatMap(parsed -> getLockKeys(parsed.getBook()).stream()).
+                distinct().
+                collect(Collectors.toList());
+        Iterable<Lock> locks = authorLocks.bulkGet(keys);
+        locks.forEach(Lock::lock);
+        try {
+            return supplier.get();
+        } finally {
+            locks.forEach(Lock::unlock);
+        }
+    }
+
+    private static Set<String> getAuthorNames(List<ParsedBook> parsedBooks) {
+        return parsedBooks.stream().
+                flatMap(parsed -> parsed.getBook().getAuthorBooks().stream()).
+                map(AuthorBook::getAuthor).
+                map(Author::getName).
+                filter(Objects::nonNull).
+                collect(Collectors.toCollection(LinkedHashSet::new));
+    }
+
+    private static String getBookKey(String title, byte[] checksum) {
+        return title + "/" + Arrays.toString(checksum);
+    }
+
+    /**
+     * Authors are locked by {@link AuthorService#toKey(String)}, books without authors share the same lock
+     */
+    private static List<String> getLockKeys(Book book) {
+        List<String> keys = book.getAuthorBooks().stream().
+                map(authorBook -> authorBook.getAuthor().getName()).
+                map(name -> name == null ? "" : AuthorService.toKey(name)).
+                distinct().
+                collect(Collectors.toList());
+        return keys.isEmpty() ? Collections.singletonList("") : keys;
+    }
+
+    /**
+     * @param storedFiles ids of files moved or saved to the storage are added to it
+     */
+    private Book saveNewBook(ParsedBook parsed, Function<String, Optional<Author>> authorLookup,
+                             List<String> storedFiles) {
+        String fileName = parsed.getFileName();
+        BookInfo bookInfo = parsed.getBookInfo();
+        Book book = bookInfo.getBook();
+        log.trace("new book:{}",  book.getFileName());
+        List<Author> authors = book.getAuthorBooks().stream().
+                map(AuthorBook::getAuthor).
+                map(author -> authorLookup.apply(author.getName()).orElse(author)).
+                collect(Collectors.toList());
+        List<AuthorBook> authorsBooks = authors.stream().
+                map(author -> new AuthorBook(author, book)).collect(Collectors.toList());
+        book.setAuthorBooks(authorsBooks);
+
+        Map<String, List<Sequence>> sequenceMapList = authors.stream().
+                flatMap(Author::getSequencesStream).
+                filter(sequence -> sequence.getId() != null). //already saved
+                filter(StreamU.distinctByKey(Sequence::getId)).
+                collect(Collectors.groupingBy(Sequence::getName, Collectors.toList()));
+        // some magic if 2 authors wrote the same sequence but different books
+        Map<String, Sequence> sequencesMap = sequenceMapList.entrySet().stream().
+                collect(Collectors.toMap(Map.Entry::getKey, e -> sequenceService.mergeSequences(e.getValue())));
+
+
+        List<BookSequence> sequences = book.getSequences().stream().
+                map(bs -> {
+                    Sequence sequence = bs.getSequence();
+                    return new BookSequence(bs.getSeqOrder(),
+                            sequencesMap.getOrDefault(sequence.getName(), sequence), book);
+                }).collect(Collectors.toList());
+        book.setSequences(sequences);
+
+        String fileId = parsed.getFileId();
+        if (parsed.getTempFile() != null) {
+            fileId = fileStorage.move(parsed.getTempFile(), fileName);
+            storedFiles.add(fileId);
+        }
+        book.setFileResource(new FileResource(fileId, "application/fb2+zip", parsed.getSize()));//TODO improve me
+        BookImage bookImage = bookInfo.getBookImage();
+        if (bookImage != null) {
+            String cover = saveCover(fileName, bookImage);
+            storedFiles.add(cover);
+            book.setCover(new FileResource(cover, bookImage.getType(), bookImage.getImage().length));
+        }
+        book.setFileName(fileName);
+        book.setChecksum(parsed.getChecksum());
+        book.setCreated(Instant.now());
+        Book save = bookRepository.save(book);
+        someMagic(book);
+        return save;
     }
 
     private void someMagic(Book book) {
@@ -132,25 +287,21 @@ public class BookService {
     }
 
 
-    private byte[] loadFromStream(InputStream is) throws LibException {
-        byte[] buffer = new byte[32768];
-        byte[] byteArray;
-        try (ByteArrayOutputStream baos = new ByteArrayOutputStream()) {
-            while (true) {
-                int readBytesCount = is.read(buffer);
-                if (readBytesCount == -1) {
-                    break;
-                }
-                if (readBytesCount > 0) {
-                    baos.write(buffer, 0, readBytesCount);
-                }
-            }
-            baos.flush();
-            byteArray = baos.toByteArray();
+    /**
+     * @return checksum of copied content
+     */
+    private byte[] copyToFile(InputStream is, Path file) throws IOException {
+        DigestInputStream dis = new DigestInputStream(is, createDigest());
+        Files.copy(dis, file, StandardCopyOption.REPLACE_EXISTING);
+        return dis.getMessageDigest().digest();
+    }
+
+    void deleteTempFile(Path tempFile) {
+        try {
+            Files.deleteIfExists(tempFile);
         } catch (IOException e) {
-            throw new LibException(e);
+            log.warn("Unable to delete temp file " + tempFile, e);
         }
-        return byteArray;
     }
 
     public Book getBook(long id) {
@@ -176,15 +327,12 @@ public class BookService {
         throw new LibException("Book not found");
     }
 
-    private byte[] getChecksum(byte[] bookByteArray) throws LibException {
-        MessageDigest digest;
+    MessageDigest createDigest() throws LibException {
         try {
-            digest = MessageDigest.getInstance("SHA");
+            return MessageDigest.getInstance("SHA");
         } catch (NoSuchAlgorithmException e) {
             throw new LibException(e);
         }
-        digest.update(bookByteArray);
-        return digest.digest();
     }
 
 
@@ -0,0 +1,27 @@
+package com.patex.service;
+
+import com.patex.entities.ZUser;
+
+import java.util.List;
+
+/**
+ * Books created by bulk import, duplicate check for them is scheduled at once
+ */
+public class BooksCreationEvent {
+    private final List<Long> bookIds;
+
+    private final ZUser user;
+
+    public BooksCreationEvent(List<Long> bookIds, ZUser user) {
+        this.bookIds = bookIds;
+        this.user = user;
+    }
+
+    public List<Long> getBookIds() {
+        return bookIds;
+    }
+
+    public ZUser getUser() {
+        return user;
+    }
+}
@@ -0,0 +1,61 @@
+package com.patex.service;
+
+/**
+ * Snapshot of bulk import state, skipped files are books which are already in library
+ */
+public class BulkImportProgress {
+
+    private final int total;
+    private final int imported;
+    private final int skipped;
+    private final int failed;
+    private final long elapsedMillis;
+    private final boolean finished;
+
+    BulkImportProgress(int total, int imported, int skipped, int failed, long elapsedMillis, boolean finished) {
+        this.total = total;
+        this.imported = imported;
+        this.skipped = skipped;
+        this.failed = failed;
+        this.elapsedMillis = elapsedMillis;
+        this.finished = finished;
+    }
+
+    public int getTotal() {
+        return total;
+    }
+
+    public int getImported() {
+        return imported;
+    }
+
+    public int getSkipped() {
+        return skipped;
+    }
+
+    public int getFailed() {
+        return failed;
+    }
+
+    public int getProcessed() {
+        return imported + skipped + failed;
+    }
+
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+
+    public double getFilesPerSecond() {
+        return elapsedMillis == 0 ? 0 : getProcessed() * 1000.0 / elapsedMillis;
+    }
+
+    public boolean isFinished() {
+        return finished;
+    }
+
+    @Override
+    public String toString() {
+        return "processed " + getProcessed() + "/" + total + " imported=" + imported + " skipped=" + skipped +
+                " failed=" + failed + " files/s=" + String.format("%.1f", getFilesPerSecond());
+    }
+}
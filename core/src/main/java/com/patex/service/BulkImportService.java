@@ -0,0 +1,223 @@
+package com.patex.service;
+
+import com.patex.LibException;
+import com.patex.entities.Book;
+import com.patex.entities.ZUser;
+import com.patex.parser.BookArchive;
+import com.patex.parser.ParserService;
+import com.patex.utils.ExecutorCreator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Imports many files at once: files are parsed by parallel workers, while the previous batch is saved
+ * in one transaction with one query for authors and one for already saved books.
+ * Every book of a zip archive with many books is imported as a separate file.
+ * Duplicate check is scheduled for all imported books at the end
+ */
+@Service
+public class BulkImportService {
+
+    private static final Logger log = LoggerFactory.getLogger(BulkImportService.class);
+
+    private final BookService bookService;
+    private final ParserService parserService;
+    private final ApplicationEventPublisher publisher;
+    private final ExecutorService parseExecutor;
+    private final ExecutorService importExecutor;
+    private final int batchSize;
+
+    private volatile BulkImportProgress progress;
+
+    @Autowired
+    public BulkImportService(BookService bookService, ParserService parserService,
+                             ApplicationEventPublisher publisher, ExecutorCreator executorCreator,
+                             @Value("${bulkImport.threadCount:0}") int threadCount,
+                             @Value("${bulkImport.batchSize:500}") int batchSize) {
+        this.bookService = bookService;
+        this.parserService = parserService;
+        this.publisher = publisher;
+        this.batchSize = batchSize;
+        int parseThreads = threadCount > 0 ? threadCount : Runtime.getRuntime().availableProcessors();
+        parseExecutor = Executors.newFixedThreadPool(parseThreads,
+                executorCreator.createThreadFactory("bulkImportParse", log));
+        importExecutor = Executors.newSingleThreadExecutor(executorCreator.createThreadFactory("bulkImport", log));
+    }
+
+    /**
+     * Starts import of all files of directory in background, progress is available by {@link #getProgress()}
+     */
+    public void startImport(Path directory, ZUser user) throws LibException {
+        List<Path> files = listFiles(directory);
+        importExecutor.execute(() -> importFiles(files, user));
+    }
+
+    public BulkImportProgress importDirectory(Path directory, ZUser user) throws LibException {
+        return importFiles(listFiles(directory), user);
+    }
+
+    /**
+     * @return progress of the current or the last import, null if there was no import
+     */
+    public BulkImportProgress getProgress() {
+        return progress;
+    }
+
+    private static List<Path> listFiles(Path directory) throws LibException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(Files::isRegularFile).sorted().collect(Collectors.toList());
+        } catch (IOException e) {
+            throw new LibException(e);
+        }
+    }
+
+    public synchronized BulkImportProgress importFiles(List<Path> files, ZUser user) {
+        List<BookArchive> archives = new ArrayList<>();
+        try {
+            return importSources(getSources(files, archives), user);
+        } finally {
+            for (BookArchive archive : archives) {
+                try {
+                    archive.close();
+                } catch (IOException e) {
+                    log.warn(e.getMessage(), e);
+                }
+            }
+        }
+    }
+
+    /**
+     * @param archives opened archives with many books, entries of them are read during import
+     */
+    private List<ImportSource> getSources(List<Path> files, List<BookArchive> archives) {
+        List<ImportSource> sources = new ArrayList<>();
+        for (Path file : files) {
+            String fileName = file.getFileName().toString();
+            BookArchive archive = fileName.toLowerCase(Locale.ROOT).endsWith(".zip") ? openArchive(file) : null;
+            if (archive == null) {
+                sources.add(new ImportSource(fileName, () -> Files.newInputStream(file)));
+            } else {
+                archives.add(archive);
+                archive.getEntries().forEach(entry -> sources.add(
+                        new ImportSource(BookArchive.getFileName(entry), () -> archive.getInputStream(entry))));
+            }
+        }
+        return sources;
+    }
+
+    /**
+     * @return null if the file should be imported as is: it has one book or isn't an archive
+     */
+    private BookArchive openArchive(Path file) {
+        try {
+            BookArchive archive = new BookArchive(file, parserService::isSupported);
+            if (archive.getEntries().size() > 1) {
+                return archive;
+            }
+            archive.close();
+        } catch (IOException e) {
+            log.warn("Unable to open archive " + file, e);
+        }
+        return null;
+    }
+
+    private BulkImportProgress importSources(List<ImportSource> files, ZUser user) {
+        long start = System.currentTimeMillis();
+        int imported = 0;
+        int skipped = 0;
+        int failed = 0;
+        progress = new BulkImportProgress(files.size(), 0, 0, 0, 0, false);
+        List<Long> bookIds = new ArrayList<>();
+        List<Future<ParsedBook>> batch = submitBatch(files, 0);
+        for (int from = 0; from < files.size(); from += batchSize) {
+            List<ParsedBook> parsedBooks = new ArrayList<>(batch.size());
+            for (Future<ParsedBook> future : batch) {
+                ParsedBook parsed = getParsed(future);
+                if (parsed == null) {
+                    failed++;
+                } else {
+                    parsedBooks.add(parsed);
+                }
+            }
+            batch = submitBatch(files, from + batchSize);
+            try {
+                List<Book> saved = bookService.saveBooks(parsedBooks);
+                saved.stream().map(Book::getId).forEach(bookIds::add);
+                imported += saved.size();
+                skipped += parsedBooks.size() - saved.size();
+            } catch (Exception e) {
+                log.error("Unable to save batch of " + parsedBooks.size() + " books", e);
+                failed += parsedBooks.size();
+            } finally {
+                parsedBooks.forEach(parsed -> bookService.deleteTempFile(parsed.getTempFile()));
+            }
+            progress = new BulkImportProgress(files.size(), imported, skipped, failed,
+                    System.currentTimeMillis() - start, false);
+            log.info("Bulk import {}", progress);
+        }
+        progress = new BulkImportProgress(files.size(), imported, skipped, failed,
+                System.currentTimeMillis() - start, true);
+        if (!bookIds.isEmpty()) {
+            publisher.publishEvent(new BooksCreationEvent(bookIds, user));
+        }
+        log.info("Bulk import finished {}", progress);
+        return progress;
+    }
+
+    private List<Future<ParsedBook>> submitBatch(List<ImportSource> files, int from) {
+        return files.subList(Math.min(from, files.size()), Math.min(from + batchSize, files.size())).stream().
+                map(file -> parseExecutor.submit(() -> parse(file))).
+                collect(Collectors.toList());
+    }
+
+    private ParsedBook parse(ImportSource file) throws Exception {
+        try (InputStream is = file.stream.call()) {
+            return bookService.parseBook(file.fileName, is);
+        }
+    }
+
+    private static ParsedBook getParsed(Future<ParsedBook> future) {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            log.warn("Unable to parse file " + e.getCause().getMessage(), e.getCause());
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new LibException(e);
+        }
+    }
+
+    /**
+     * Book file of directory or book entry of archive
+     */
+    private static final class ImportSource {
+
+        private final String fileName;
+        private final Callable<InputStream> stream;
+
+        private ImportSource(String fileName, Callable<InputStream> stream) {
+            this.fileName = fileName;
+            this.stream = stream;
+        }
+    }
+}
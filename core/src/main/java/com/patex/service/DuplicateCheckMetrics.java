@@ -0,0 +1,89 @@
+package com.patex.service;
+
+import com.patex.shingle.ShinglePhase;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.stereotype.Component;
+
+/**
+ * Duplicate check metrics exported to JMX, every attribute reads only its own counter
+ */
+@Component
+@ManagedResource(objectName = "com.patex:type=DuplicateCheck", description = "Duplicate check metrics")
+public class DuplicateCheckMetrics {
+
+    private final DuplicateHandler duplicateHandler;
+
+    public DuplicateCheckMetrics(DuplicateHandler duplicateHandler) {
+        this.duplicateHandler = duplicateHandler;
+    }
+
+    @ManagedAttribute(description = "Books in BOOK_CHECK_QUEUE, counted at most once a second")
+    public long getCheckQueueSize() {
+        return duplicateHandler.getCheckQueueSize();
+    }
+
+    @ManagedAttribute(description = "Checks waiting for a free thread")
+    public int getExecutorQueueSize() {
+        return duplicateHandler.getExecutorQueueSize();
+    }
+
+    @ManagedAttribute
+    public int getActiveChecks() {
+        return duplicateHandler.getActiveChecks();
+    }
+
+    @ManagedAttribute
+    public long getCheckCount() {
+        return duplicateHandler.getCheckCount();
+    }
+
+    @ManagedAttribute
+    public long getDuplicateCount() {
+        return duplicateHandler.getDuplicateCount();
+    }
+
+    @ManagedAttribute
+    public double getCandidatesPerCheck() {
+        return duplicateHandler.getShingleSearch().getCandidatesPerSearch();
+    }
+
+    @ManagedAttribute(description = "Hit ratio of in-memory shingle cache")
+    public double getCacheHitRatio() {
+        return duplicateHandler.getShingleSearch().getCacheStats().getHotHitRate();
+    }
+
+    @ManagedAttribute(description = "Hit ratio of compact in-memory shingle cache")
+    public double getCompactCacheHitRatio() {
+        return duplicateHandler.getShingleSearch().getCacheStats().getCompactHitRate();
+    }
+
+    @ManagedAttribute(description = "Book opening and parsing time")
+    public long getLoadMillis() {
+        return phaseMillis(ShinglePhase.LOAD);
+    }
+
+    @ManagedAttribute(description = "Shingle hashing time")
+    public long getShingleMillis() {
+        return phaseMillis(ShinglePhase.SHINGLE);
+    }
+
+    @ManagedAttribute
+    public long getCacheReadMillis() {
+        return phaseMillis(ShinglePhase.CACHE_READ);
+    }
+
+    @ManagedAttribute
+    public long getCacheWriteMillis() {
+        return phaseMillis(ShinglePhase.CACHE_WRITE);
+    }
+
+    @ManagedAttribute
+    public long getCompareMillis() {
+        return phaseMillis(ShinglePhase.COMPARE);
+    }
+
+    private long phaseMillis(ShinglePhase phase) {
+        return duplicateHandler.getShingleSearch().getPhaseStats(phase).getTotalMillis();
+    }
+}
@@ -0,0 +1,56 @@
+package com.patex.service;
+
+import com.patex.shingle.ShingleSearchStats;
+
+public class DuplicateCheckStats {
+
+    private final long checkQueueSize;
+    private final int executorQueueSize;
+    private final int activeChecks;
+    private final long checkCount;
+    private final long duplicateCount;
+    private final ShingleSearchStats search;
+
+    DuplicateCheckStats(long checkQueueSize, int executorQueueSize, int activeChecks, long checkCount,
+                        long duplicateCount, ShingleSearchStats search) {
+        this.checkQueueSize = checkQueueSize;
+        this.executorQueueSize = executorQueueSize;
+        this.activeChecks = activeChecks;
+        this.checkCount = checkCount;
+        this.duplicateCount = duplicateCount;
+        this.search = search;
+    }
+
+    /**
+     * @return books in BOOK_CHECK_QUEUE table, including ones which are checked right now
+     */
+    public long getCheckQueueSize() {
+        return checkQueueSize;
+    }
+
+    public int getExecutorQueueSize() {
+        return executorQueueSize;
+    }
+
+    public int getActiveChecks() {
+        return activeChecks;
+    }
+
+    public long getCheckCount() {
+        return checkCount;
+    }
+
+    public long getDuplicateCount() {
+        return duplicateCount;
+    }
+
+    public ShingleSearchStats getSearch() {
+        return search;
+    }
+
+    @Override
+    public String toString() {
+        return "checkQueue=" + checkQueueSize + " executorQueue=" + executorQueueSize + " active=" + activeChecks +
+                " checks=" + checkCount + " duplicates=" + duplicateCount + " " + search;
+    }
+}
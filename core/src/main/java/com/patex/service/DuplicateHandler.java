@@ -1,6 +1,8 @@
 package com.patex.service;
 
 
+import com.google.common.base.Supplier;
+import com.google.common.base.Suppliers;
 import com.patex.LibException;
 import com.patex.entities.Author;
 import com.patex.entities.AuthorBook;
@@ -12,8 +14,13 @@ import com.patex.entities.Sequence;
 import com.patex.entities.ZUser;
 import com.patex.messaging.MessengerService;
 import com.patex.parser.ParserService;
+import com.patex.shingle.MinHashIndex;
+import com.patex.shingle.SegmentedShingleCacheStorage;
 import com.patex.shingle.ShingleCacheStorage;
+import com.patex.shingle.ShingleMatch;
 import com.patex.shingle.ShingleSearch;
+import com.patex.shingle.ShingleSearchConfig;
+import com.patex.shingle.ShingleSearchStats;
 import com.patex.shingle.Shingleable;
 import com.patex.storage.StorageService;
 import com.patex.utils.BlockingExecutor;
@@ -21,15 +28,18 @@ import com.patex.utils.ExecutorCreator;
 import com.patex.utils.Res;
 import com.patex.utils.StreamU;
 import org.apache.commons.lang3.StringUtils;
+import org.hibernate.Hibernate;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Component;
 
 import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import java.io.Closeable;
 import java.io.File;
 import java.io.FileInputStream;
@@ -37,14 +47,22 @@ import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.util.Comparator;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Objects;
+import java.util.Optional;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.stream.Collectors;
 
 @Component
@@ -52,6 +70,9 @@ public class DuplicateHandler {
 
     private static final Logger log = LoggerFactory.getLogger(DuplicateHandler.class);
 
+    private static final String MINHASH_MODE = "minhash";
+    private static final String SEGMENTS_FOLDER = "segments";
+
     private final BookCheckQueueRepository bookCheckQueueRepo;
     private final TransactionService transactionService;
     private final BookService bookService;
@@ -60,10 +81,17 @@ public class DuplicateHandler {
     private final ParserService parserService;
     private final ShingleSearch<Book, Long> shingleSearch;
     private final ExecutorService scheduleExecutor;
+    private final ExecutorService candidateExecutor;
 
     private final Semaphore lock = new Semaphore(0);
     private final BlockingExecutor blockingExecutor;
     private final int threadCount;
+    private final boolean minHashMode;
+    private final boolean parallelCheck;
+    private final float minScore;
+    private final LongAdder checkCount = new LongAdder();
+    private final LongAdder duplicateCount = new LongAdder();
+    private final Supplier<Long> checkQueueSize;
 
     @Autowired
     public DuplicateHandler(BookCheckQueueRepository bookCheckQueueRepo, TransactionService transactionService,
@@ -73,13 +101,27 @@ public class DuplicateHandler {
                             @Value("${duplicateCheck.threadCount:0}") int threadCount,
                             @Value("${duplicateCheck.shingleCoeff:1}") int coef,
                             @Value("${duplicateCheck.fastCacheSize:100}") int cacheSize,
-                            @Value("${duplicateCheck.storageCacheFolder:}") String storageFolder) {
+                            @Value("${duplicateCheck.cacheMemoryMb:0}") int cacheMemoryMb,
+                            @Value("${duplicateCheck.compactCacheMemoryMb:0}") int compactCacheMemoryMb,
+                            @Value("${duplicateCheck.storageCacheFolder:}") String storageFolder,
+                            @Value("${duplicateCheck.storageSegmentSizeMb:256}") int segmentSizeMb,
+                            @Value("${duplicateCheck.mode:author}") String mode,
+                            @Value("${duplicateCheck.hasher:md5}") String hasher,
+                            @Value("${duplicateCheck.byteArraySize:8}") int byteArraySize,
+                            @Value("${duplicateCheck.candidateParallelism:1}") int candidateParallelism,
+                            @Value("${duplicateCheck.bloomBitsPerKey:10}") int bloomBitsPerKey,
+                            @Value("${duplicateCheck.simHash:true}") boolean simHash,
+                            @Value("${duplicateCheck.sketchSize:0}") int sketchSize,
+                            @Value("${duplicateCheck.cacheCompression:true}") boolean cacheCompression,
+                            @Value("${duplicateCheck.minScore:0}") float minScore) {
         this.bookCheckQueueRepo = bookCheckQueueRepo;
+        checkQueueSize = Suppliers.memoizeWithExpiration(bookCheckQueueRepo::count, 1, TimeUnit.SECONDS);
         this.transactionService = transactionService;
         this.bookService = bookService;
         this.messenger = messenger;
         this.fileStorage = fileStorage;
         this.parserService = parserService;
+        this.minScore = minScore;
         if (threadCount == 0) {
             int availableProcessors = Runtime.getRuntime().availableProcessors();
             this.threadCount = availableProcessors > 1 ? availableProcessors / 2 : 1;
@@ -91,26 +133,61 @@ public class DuplicateHandler {
         blockingExecutor = new BlockingExecutor(this.threadCount, this.threadCount * 5, 1,
                 TimeUnit.MINUTES, this.threadCount * 5,
                 executorCreator.createThreadFactory("checkForDuplicate-", log));
-        shingleSearch = new ShingleSearch<>(this::getSameAuthorsBook, ShingleableBook::new, Book::getId,
-                coef, cacheSize);
+        minHashMode = MINHASH_MODE.equals(mode);
+        ShingleSearchConfig config = new ShingleSearchConfig().
+                setCoef(coef).setCacheSize(cacheSize).setHasher(hasher).setByteArraySize(byteArraySize).
+                setCacheMemoryMb(cacheMemoryMb).setCompactCacheMemoryMb(compactCacheMemoryMb).
+                setBloomBitsPerKey(bloomBitsPerKey).setSimHashCheck(simHash).setSketchSize(sketchSize).
+                setCacheCompression(cacheCompression);
+        parallelCheck = candidateParallelism > 1;
+        if (parallelCheck) {
+            candidateExecutor = Executors.newFixedThreadPool(candidateParallelism,
+                    executorCreator.createThreadFactory("duplicateCandidate-", log));
+            config.setParallelism(candidateParallelism).setExecutor(candidateExecutor);
+        } else {
+            candidateExecutor = null;
+        }
+        if (minHashMode) {
+            shingleSearch = new ShingleSearch<>(new MinHashIndex<>(this::getIndexedBook), ShingleableBook::new,
+                    Book::getId, config);
+        } else {
+            shingleSearch = new ShingleSearch<>(this::getSameAuthorsBook, ShingleableBook::new, Book::getId,
+                    config);
+        }
         if (StringUtils.isNotEmpty(storageFolder)) {
-            shingleSearch.setStorage(new BookShingleCacheStorage(storageFolder));
+            try {
+                shingleSearch.setStorage(new SegmentedShingleCacheStorage<>(Paths.get(storageFolder, SEGMENTS_FOLDER),
+                        Book::getId, new BookShingleCacheStorage(storageFolder), segmentSizeMb * 1024L * 1024L));
+            } catch (IOException e) {
+                throw new LibException("Unable to open shingle cache " + storageFolder, e);
+            }
         }
     }
 
+    /**
+     * Empty MinHash index is filled in its own thread, so checks start at once,
+     * they just don't find candidates among books which aren't indexed yet
+     */
     @PostConstruct
     public void postConstruct() {
-        Thread scheduler = new Thread(() -> {
+        startDaemon("Duplicate handler scheduler", () -> {
             try {
                 taskScheduler();
             } catch (InterruptedException e) {
                 log.error(e.getMessage(), e);
             }
         });
-        scheduler.setName("Duplicate handler scheduler");
-        scheduler.setDaemon(true);
-        scheduler.setUncaughtExceptionHandler((t, e) -> log.error(e.getMessage(), e));
-        scheduler.start();
+        if (minHashMode && shingleSearch.isIndexEmpty()) {
+            startDaemon("Duplicate index filler", this::fillIndex);
+        }
+    }
+
+    private static void startDaemon(String name, Runnable runnable) {
+        Thread thread = new Thread(runnable);
+        thread.setName(name);
+        thread.setDaemon(true);
+        thread.setUncaughtExceptionHandler((t, e) -> log.error(e.getMessage(), e));
+        thread.start();
     }
 
     private void taskScheduler() throws InterruptedException {
@@ -121,6 +198,10 @@ public class DuplicateHandler {
             List<BookCheckQueue> checkQueue = bookCheckQueueRepo.
                     findAllByIdGreaterThanOrderByIdAsc(PageRequest.of(0, pageSize), lastId).getContent();
             if (checkQueue.isEmpty()) {
+                if (log.isDebugEnabled()) {
+                    log.debug("duplicateCheck {}", shingleSearch.getSearchStats());
+                }
+                saveIndex();
                 lock.acquire();
                 lock.drainPermits();
             } else {
@@ -133,6 +214,40 @@ public class DuplicateHandler {
         }
     }
 
+    private void fillIndex() {
+        log.info("Filling duplicate check index");
+        int pageNumber = 0;
+        Page<Book> page;
+        do {
+            PageRequest pageable = PageRequest.of(pageNumber++, threadCount * 10);
+            page = transactionService.transactionRequired(() -> {
+                Page<Book> books = bookService.getBooks(pageable);
+                books.getContent().stream().
+                        filter(book -> !book.isDuplicate()).
+                        forEach(shingleSearch::addToIndex);
+                return books;
+            });
+        } while (page.hasNext());
+        saveIndex();
+        log.info("Duplicate check index filled");
+    }
+
+    public void saveIndex() {
+        try {
+            shingleSearch.saveIndex();
+        } catch (IOException e) {
+            log.error(e.getMessage(), e);
+        }
+    }
+
+    @PreDestroy
+    public void preDestroy() {
+        saveIndex();
+        if (candidateExecutor != null) {
+            candidateExecutor.shutdownNow();
+        }
+    }
+
     public void waitForFinish() {
         while (true) {
             long count = bookCheckQueueRepo.count();
@@ -148,6 +263,39 @@ public class DuplicateHandler {
         }
     }
 
+    public DuplicateCheckStats getStats() {
+        ShingleSearchStats searchStats = shingleSearch.getSearchStats();
+        return new DuplicateCheckStats(getCheckQueueSize(), getExecutorQueueSize(), getActiveChecks(),
+                getCheckCount(), getDuplicateCount(), searchStats);
+    }
+
+    /**
+     * @return size of database queue, it is counted at most once a second
+     */
+    long getCheckQueueSize() {
+        return checkQueueSize.get();
+    }
+
+    int getExecutorQueueSize() {
+        return blockingExecutor.getQueueSize();
+    }
+
+    int getActiveChecks() {
+        return blockingExecutor.getActiveCount();
+    }
+
+    long getCheckCount() {
+        return checkCount.sum();
+    }
+
+    long getDuplicateCount() {
+        return duplicateCount.sum();
+    }
+
+    ShingleSearch<Book, Long> getShingleSearch() {
+        return shingleSearch;
+    }
+
     @EventListener
     public void onBookCreation(BookCreationEvent event) {
         scheduleExecutor.execute(() ->
@@ -163,12 +311,52 @@ public class DuplicateHandler {
         }
     }
 
+    @EventListener
+    public void onBooksCreation(BooksCreationEvent event) {
+        scheduleExecutor.execute(() ->
+                transactionService.transactionRequired(() ->
+                        scheduleChecks(event)));
+    }
+
+    /**
+     * Books are just created by bulk import, so they aren't loaded, only referenced by id
+     */
+    private synchronized void scheduleChecks(BooksCreationEvent event) {
+        List<BookCheckQueue> checks = event.getBookIds().stream().
+                map(id -> {
+                    Book book = new Book();
+                    book.setId(id);
+                    return new BookCheckQueue(book, event.getUser());
+                }).
+                collect(Collectors.toList());
+        if (!checks.isEmpty()) {
+            bookCheckQueueRepo.saveAll(checks);
+            lock.release();
+        }
+    }
+
+    private Book getIndexedBook(Long id) {
+        Book book = bookService.getBook(id);
+        return book.isDuplicate() ? null : initForParallelCheck(book);
+    }
+
+    /**
+     * Candidates are shingled by other threads, so lazy file resource is loaded in the transaction thread
+     */
+    private Book initForParallelCheck(Book book) {
+        if (parallelCheck) {
+            Hibernate.initialize(book.getFileResource());
+        }
+        return book;
+    }
+
     private List<Book> getSameAuthorsBook(Book primaryBook) {
         return primaryBook.getAuthorBooks().stream().map(AuthorBook::getAuthor).
                 flatMap(a -> a.getBooks().stream().map(AuthorBook::getBook)).
                 filter(book -> !book.getId().equals(primaryBook.getId())).
                 filter(StreamU.distinctByKey(Book::getId)).
                 filter(book -> !book.isDuplicate()).
+                map(this::initForParallelCheck).
                 sorted(Comparator.comparing(
                         book -> StringUtils.getLevenshteinDistance(book.getTitle(), primaryBook.getTitle()))).
                 collect(Collectors.toList());
@@ -177,8 +365,12 @@ public class DuplicateHandler {
     private BookCheckQueue checkForDuplicate(BookCheckQueue bookCheckQueue) {
         Book primary = bookService.getBook(bookCheckQueue.getBook().getId());
         try {
-            shingleSearch.findSimilar(primary).
-                    ifPresent(book -> markDuplications(primary, book, bookCheckQueue.getUser()));
+            Optional<Book> duplicate = findDuplicate(primary);
+            duplicate.ifPresent(book -> markDuplications(primary, book, bookCheckQueue.getUser()));
+            checkCount.increment();
+            if (duplicate.isPresent()) {
+                duplicateCount.increment();
+            }
             bookCheckQueueRepo.deleteById(bookCheckQueue.getId());
             log.trace("duplicate id=" + bookCheckQueue.getId());
             return bookCheckQueue;
@@ -192,6 +384,18 @@ public class DuplicateHandler {
         }
     }
 
+    /**
+     * With positive min score the candidate with the best score is taken instead of the first similar one
+     */
+    private Optional<Book> findDuplicate(Book primary) {
+        if (minScore <= 0) {
+            return shingleSearch.findSimilar(primary);
+        }
+        return shingleSearch.findTopSimilar(primary, 1, minScore).stream().
+                peek(match -> log.trace("duplicateCheck best candidate {}", match)).
+                findFirst().map(ShingleMatch::getCandidate);
+    }
+
     private void markDuplications(Book first, Book second, ZUser user) {
         try {
             Book primary, secondary;
@@ -249,6 +453,7 @@ public class DuplicateHandler {
     }
 
     private static class BookShingleCacheStorage implements ShingleCacheStorage<Book> {
+        private static final String INDEX_FILE_NAME = "minhash.index";
         private final String storageFolder;
 
         public BookShingleCacheStorage(String storageFolder) {
@@ -268,17 +473,84 @@ public class DuplicateHandler {
             return null;
         }
 
+        @Override
+        public ByteBuffer map(Book book) throws IOException {
+            File cache = getCacheFile(book);
+            if (!cache.exists()) {
+                return null;
+            }
+            try (FileChannel channel = FileChannel.open(cache.toPath(), StandardOpenOption.READ)) {
+                return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            }
+        }
+
+        @Override
+        public void remove(Book book) {
+            File cache = getCacheFile(book);
+            if (cache.exists() && !cache.delete()) {
+                log.warn("Unable to delete shingle cache " + cache);
+            }
+        }
+
         private File getCacheFile(Book book) {
             return new File(storageFolder + "/" + book.getId());
         }
 
+        private File getIndexFile() {
+            return new File(storageFolder + "/" + INDEX_FILE_NAME);
+        }
+
+        @Override
+        public InputStream loadSearchIndex() {
+            File index = getIndexFile();
+            if (index.exists()) {
+                try {
+                    return new FileInputStream(index);
+                } catch (FileNotFoundException e) {
+                    log.error("Unable to load search index " + index, e);
+                }
+            }
+            return null;
+        }
+
+        @Override
+        public void saveSearchIndex(byte[] bytes) {
+            File index = getIndexFile();
+            try (FileOutputStream fos = new FileOutputStream(index)) {
+                fos.write(bytes);
+                fos.flush();
+            } catch (IOException e) {
+                log.error("Unable to save search index " + index, e);
+            }
+        }
+
+        @Override
+        public void removeSearchIndex() {
+            File index = getIndexFile();
+            if (index.exists() && !index.delete()) {
+                log.warn("Unable to delete search index " + index);
+            }
+        }
+
+        /**
+         * File is replaced by rename, so cache which is still memory mapped by other thread stays valid
+         */
         @Override
         public void save(byte[] bytes, Book book) {
-            try (FileOutputStream fos = new FileOutputStream(getCacheFile(book))) {
+            File cache = getCacheFile(book);
+            File tmp = new File(cache.getPath() + ".tmp");
+            try (FileOutputStream fos = new FileOutputStream(tmp)) {
                 fos.write(bytes);
                 fos.flush();
             } catch (IOException e) {
-                e.printStackTrace();
+                log.error("Unable to save shingle cache " + tmp, e);
+                return;
+            }
+            try {
+                Files.move(tmp.toPath(), cache.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                        StandardCopyOption.ATOMIC_MOVE);
+            } catch (IOException e) {
+                log.error("Unable to replace shingle cache " + cache, e);
             }
         }
     }
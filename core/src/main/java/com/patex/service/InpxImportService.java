@@ -0,0 +1,182 @@
+package com.patex.service;
+
+import com.google.common.collect.Lists;
+import com.patex.LibException;
+import com.patex.entities.Book;
+import com.patex.entities.FileResource;
+import com.patex.entities.ZUser;
+import com.patex.parser.BookImage;
+import com.patex.parser.BookInfo;
+import com.patex.parser.InpRecord;
+import com.patex.parser.InpxCatalog;
+import com.patex.parser.ParseOptions;
+import com.patex.parser.ParserService;
+import com.patex.storage.StorageService;
+import com.patex.utils.ExecutorCreator;
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Imports library dump by its inpx catalog: books are created in batches from catalog metadata
+ * and are linked to their entries in archives of the dump, nothing is extracted or parsed.
+ * Content size, cover and annotation are read later in background, then duplicate check is scheduled
+ */
+@Service
+public class InpxImportService {
+
+    private static final Logger log = LoggerFactory.getLogger(InpxImportService.class);
+
+    private final BookService bookService;
+    private final ParserService parserService;
+    private final TransactionService transactionService;
+    private final ApplicationEventPublisher publisher;
+    private final ExecutorService importExecutor;
+    private final ExecutorService contentExecutor;
+    private final int batchSize;
+
+    private volatile BulkImportProgress progress;
+
+    @Autowired
+    public InpxImportService(BookService bookService, ParserService parserService,
+                             TransactionService transactionService, ApplicationEventPublisher publisher,
+                             ExecutorCreator executorCreator,
+                             @Value("${bulkImport.batchSize:500}") int batchSize) {
+        this.bookService = bookService;
+        this.parserService = parserService;
+        this.transactionService = transactionService;
+        this.publisher = publisher;
+        this.batchSize = batchSize;
+        importExecutor = Executors.newSingleThreadExecutor(executorCreator.createThreadFactory("inpxImport", log));
+        contentExecutor = Executors.newSingleThreadExecutor(executorCreator.createThreadFactory("inpxContent", log));
+    }
+
+    /**
+     * Starts import in background, progress is available by {@link #getProgress()}
+     */
+    public void startImport(Path inpx, ZUser user) {
+        importExecutor.execute(() -> importCatalog(inpx, user));
+    }
+
+    /**
+     * @return progress of the current or the last import, null if there was no import
+     */
+    public BulkImportProgress getProgress() {
+        return progress;
+    }
+
+    /**
+     * Archives of books are searched in the folder of catalog. Books which are deleted from library are skipped,
+     * as well as books which are already imported from the same place
+     */
+    public synchronized BulkImportProgress importCatalog(Path inpx, ZUser user) throws LibException {
+        long start = System.currentTimeMillis();
+        int imported = 0;
+        int skipped = 0;
+        int failed = 0;
+        progress = new BulkImportProgress(0, 0, 0, 0, 0, false);
+        Path folder = inpx.toAbsolutePath().getParent();
+        List<Long> bookIds = new ArrayList<>();
+        try (InpxCatalog catalog = new InpxCatalog(inpx)) {
+            List<ParsedBook> batch = new ArrayList<>(batchSize);
+            while (catalog.hasNext()) {
+                InpRecord record = catalog.next();
+                if (record.isDeleted()) {
+                    skipped++;
+                } else if (StringUtils.isEmpty(record.getBookInfo().getBook().getTitle())) {
+                    log.warn("Book without title {} in {}", record.getFileName(), record.getArchive());
+                    failed++;
+                } else {
+                    batch.add(toParsedBook(folder, record));
+                }
+                if (batch.size() >= batchSize || !catalog.hasNext() && !batch.isEmpty()) {
+                    try {
+                        List<Book> saved = bookService.saveBooks(batch);
+                        saved.stream().map(Book::getId).forEach(bookIds::add);
+                        imported += saved.size();
+                        skipped += batch.size() - saved.size();
+                    } catch (Exception e) {
+                        log.error("Unable to save batch of " + batch.size() + " books", e);
+                        failed += batch.size();
+                    }
+                    batch.clear();
+                    progress = new BulkImportProgress(imported + skipped + failed, imported, skipped, failed,
+                            System.currentTimeMillis() - start, false);
+                    log.info("Inpx import {}", progress);
+                }
+            }
+        } catch (IOException e) {
+            throw new LibException(e);
+        } finally {
+            progress = new BulkImportProgress(imported + skipped + failed, imported, skipped, failed,
+                    System.currentTimeMillis() - start, true);
+            if (!bookIds.isEmpty()) {
+                contentExecutor.execute(() -> loadContent(bookIds, user));
+            }
+        }
+        log.info("Inpx import finished {}", progress);
+        return progress;
+    }
+
+    /**
+     * Checksum of catalog book is calculated from its place, so the same book isn't imported twice
+     */
+    private ParsedBook toParsedBook(Path folder, InpRecord record) {
+        String fileId = StorageService.getArchiveEntryId(folder.resolve(record.getArchive()), record.getFileName());
+        byte[] checksum = bookService.createDigest().digest(fileId.getBytes(StandardCharsets.UTF_8));
+        return new ParsedBook(record.getFileName(), fileId, checksum, record.getSize(), record.getBookInfo());
+    }
+
+    /**
+     * Duplicate check needs content size, so it is scheduled for every batch after its content is read
+     */
+    private void loadContent(List<Long> bookIds, ZUser user) {
+        for (List<Long> batch : Lists.partition(bookIds, batchSize)) {
+            List<Long> loaded = new ArrayList<>();
+            for (Long bookId : batch) {
+                try {
+                    transactionService.newTransaction(() -> loadBookContent(bookId));
+                    loaded.add(bookId);
+                } catch (Exception e) {
+                    log.warn("Unable to read content of book " + bookId, e);
+                }
+            }
+            if (!loaded.isEmpty()) {
+                publisher.publishEvent(new BooksCreationEvent(loaded, user));
+            }
+        }
+        log.info("Content of {} imported books is read", bookIds.size());
+    }
+
+    private void loadBookContent(long bookId) {
+        Book book = bookService.getBook(bookId);
+        try (InputStream is = bookService.getBookInputStream(book)) {
+            BookInfo bookInfo = parserService.getBookInfo(book.getFileName(), is, ParseOptions.FULL);
+            book.setContentSize(bookInfo.getBook().getContentSize());
+            if (book.getDescr() == null) {
+                book.setDescr(bookInfo.getBook().getDescr());
+            }
+            BookImage bookImage = bookInfo.getBookImage();
+            if (bookImage != null && book.getCover() == null) {
+                String cover = bookService.saveCover(book.getFileName(), bookImage);
+                book.setCover(new FileResource(cover, bookImage.getType(), bookImage.getImage().length));
+            }
+            bookService.save(book);
+        } catch (IOException e) {
+            throw new LibException(e);
+        }
+    }
+}
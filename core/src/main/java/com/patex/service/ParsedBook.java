@@ -0,0 +1,71 @@
+package com.patex.service;
+
+import com.patex.entities.Book;
+import com.patex.parser.BookInfo;
+
+import java.nio.file.Path;
+
+/**
+ * Uploaded file which is parsed and stored in a temp file, but not saved yet,
+ * or book of catalog, which is linked to its file and isn't copied to the storage
+ */
+class ParsedBook {
+
+    private final String fileName;
+    private final Path tempFile;
+    private final String fileId;
+    private final byte[] checksum;
+    private final int size;
+    private final BookInfo bookInfo;
+
+    ParsedBook(String fileName, Path tempFile, byte[] checksum, int size, BookInfo bookInfo) {
+        this(fileName, tempFile, null, checksum, size, bookInfo);
+    }
+
+    /**
+     * @param fileId id of the book file, which is already available from the storage
+     */
+    ParsedBook(String fileName, String fileId, byte[] checksum, int size, BookInfo bookInfo) {
+        this(fileName, null, fileId, checksum, size, bookInfo);
+    }
+
+    private ParsedBook(String fileName, Path tempFile, String fileId, byte[] checksum, int size, BookInfo bookInfo) {
+        this.fileName = fileName;
+        this.tempFile = tempFile;
+        this.fileId = fileId;
+        this.checksum = checksum;
+        this.size = size;
+        this.bookInfo = bookInfo;
+    }
+
+    String getFileName() {
+        return fileName;
+    }
+
+    /**
+     * @return null if the book is linked to its file by {@link #getFileId()}
+     */
+    Path getTempFile() {
+        return tempFile;
+    }
+
+    String getFileId() {
+        return fileId;
+    }
+
+    byte[] getChecksum() {
+        return checksum;
+    }
+
+    int getSize() {
+        return size;
+    }
+
+    BookInfo getBookInfo() {
+        return bookInfo;
+    }
+
+    Book getBook() {
+        return bookInfo.getBook();
+    }
+}
@@ -24,6 +24,14 @@ public class TransactionService {
         return supplier.get();
     }
 
+    /**
+     * For concurrent writers which are synchronized by the caller
+     */
+    @Transactional(propagation = REQUIRES_NEW, isolation = Isolation.READ_COMMITTED)
+    public <T> T newReadCommittedTransaction(Supplier<T> supplier){
+        return supplier.get();
+    }
+
     @Transactional(propagation = REQUIRED, isolation = Isolation.SERIALIZABLE)
     public void transactionRequired(Runnable run){
         run.run();
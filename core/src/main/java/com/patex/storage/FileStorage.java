@@ -3,6 +3,7 @@ package com.patex.storage;
 import com.patex.LibException;
 
 import java.io.InputStream;
+import java.nio.file.Path;
 
 /**
  * Created by Alexey on 8/15/2016.
@@ -14,5 +15,20 @@ public interface FileStorage {
 
     InputStream load(String fileId) throws LibException;
 
+    /**
+     * @return new empty file in the storage area, so it can be moved to its place without copying
+     */
+    Path createTempFile() throws LibException;
+
+    /**
+     * Atomically moves file created by {@link #createTempFile()} to the storage
+     */
+    String move(Path tempFile, String... filePath) throws LibException;
+
+    /**
+     * @param fileId id returned by {@link #save(byte[], String...)} or {@link #move(Path, String...)}
+     */
+    void delete(String fileId) throws LibException;
+
     boolean exists(String... filePath);
 }
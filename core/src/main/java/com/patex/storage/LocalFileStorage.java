@@ -12,14 +12,19 @@ import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
 import java.nio.file.FileSystems;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
 
 @Service
 @PropertySource("/application.properties")
 @Profile("fileStorage")
 public class LocalFileStorage implements FileStorage {
 
+    private static final String TEMP_FOLDER = ".upload";
     private final String storageFolder;
     private final Path storageFolderPath;
 
@@ -55,6 +60,36 @@ public class LocalFileStorage implements FileStorage {
         return storageFolderPath.relativize(file.toPath()).toString();
     }
 
+    @Override
+    public Path createTempFile() throws LibException {
+        try {
+            Path tempFolder = storageFolderPath.resolve(TEMP_FOLDER);
+            Files.createDirectories(tempFolder);
+            return Files.createTempFile(tempFolder, "upload", ".tmp");
+        } catch (IOException e) {
+            throw new LibException(e);
+        }
+    }
+
+    @Override
+    public String move(Path tempFile, String... filePath) throws LibException {
+        File file = new File(getFilePath(filePath));
+        File parentDir = file.getParentFile();
+        if (!parentDir.exists()) {
+            parentDir.mkdirs();
+        }
+        try {
+            try {
+                Files.move(tempFile, file.toPath(), StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tempFile, file.toPath());
+            }
+        } catch (IOException e) {
+            throw new LibException(e);
+        }
+        return storageFolderPath.relativize(file.toPath()).toString();
+    }
+
     private String getFilePath(String... fileName) {
         return storageFolder + File.separator + String.join(File.separator, fileName);
     }
@@ -67,4 +102,13 @@ public class LocalFileStorage implements FileStorage {
             throw new LibException(e);
         }
     }
+
+    @Override
+    public void delete(String fileId) throws LibException {
+        try {
+            Files.deleteIfExists(Paths.get(getFilePath(fileId)));
+        } catch (IOException e) {
+            throw new LibException(e);
+        }
+    }
 }
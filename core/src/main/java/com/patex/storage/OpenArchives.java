@@ -0,0 +1,123 @@
+package com.patex.storage;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.RemovalNotification;
+import com.patex.LibException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Archives of external library stay open between reads of their entries, so books of the same archive
+ * don't read its central directory again. Archive is closed after it isn't used for a while or is evicted
+ * by newer archives, but not before all streams of its entries are closed
+ */
+class OpenArchives {
+
+    private static final Logger log = LoggerFactory.getLogger(OpenArchives.class);
+
+    private final Object lock = new Object();
+    private final Cache<String, SharedArchive> archives;
+
+    OpenArchives(int maxOpen, long idleSeconds) {
+        archives = CacheBuilder.newBuilder().
+                maximumSize(maxOpen).
+                expireAfterAccess(idleSeconds, TimeUnit.SECONDS).
+                removalListener(this::onRemoval).
+                build();
+    }
+
+    /**
+     * @return stream of the entry, archive is released when the stream is closed
+     */
+    InputStream getInputStream(String archive, String entryName) throws LibException {
+        SharedArchive sharedArchive = acquire(archive);
+        try {
+            ZipEntry entry = sharedArchive.zipFile.getEntry(entryName);
+            if (entry == null) {
+                throw new LibException("Entry " + entryName + " is not found in " + archive);
+            }
+            return new FilterInputStream(sharedArchive.zipFile.getInputStream(entry)) {
+
+                private boolean closed;
+
+                @Override
+                public void close() throws IOException {
+                    try {
+                        super.close();
+                    } finally {
+                        if (!closed) {
+                            closed = true;
+                            release(sharedArchive);
+                        }
+                    }
+                }
+            };
+        } catch (IOException | RuntimeException e) {
+            release(sharedArchive);
+            throw e instanceof LibException ? (LibException) e : new LibException(e);
+        }
+    }
+
+    private SharedArchive acquire(String archive) throws LibException {
+        synchronized (lock) {
+            try {
+                SharedArchive sharedArchive = archives.get(archive, () -> new SharedArchive(new ZipFile(archive)));
+                sharedArchive.users++;
+                return sharedArchive;
+            } catch (ExecutionException e) {
+                throw new LibException(e.getCause());
+            }
+        }
+    }
+
+    private void release(SharedArchive sharedArchive) {
+        synchronized (lock) {
+            sharedArchive.users--;
+            if (sharedArchive.users == 0 && sharedArchive.evicted) {
+                sharedArchive.close();
+            }
+        }
+    }
+
+    private void onRemoval(RemovalNotification<String, SharedArchive> notification) {
+        synchronized (lock) {
+            SharedArchive sharedArchive = notification.getValue();
+            sharedArchive.evicted = true;
+            if (sharedArchive.users == 0) {
+                sharedArchive.close();
+            }
+        }
+    }
+
+    void closeAll() {
+        archives.invalidateAll();
+    }
+
+    private static final class SharedArchive {
+
+        private final ZipFile zipFile;
+        private int users;
+        private boolean evicted;
+
+        private SharedArchive(ZipFile zipFile) {
+            this.zipFile = zipFile;
+        }
+
+        private void close() {
+            try {
+                zipFile.close();
+            } catch (IOException e) {
+                log.warn("Unable to close archive " + zipFile.getName(), e);
+            }
+        }
+    }
+}
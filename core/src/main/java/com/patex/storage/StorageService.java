@@ -4,7 +4,9 @@ import com.patex.LibException;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
+import javax.annotation.PreDestroy;
 import java.io.InputStream;
+import java.nio.file.Path;
 import java.util.Arrays;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -15,17 +17,43 @@ import java.util.regex.Pattern;
 @Service
 public class StorageService {
 
+    /**
+     * Separates path of archive and entry name in id of file which is read from archive outside of the storage
+     */
+    private static final String ARCHIVE_ENTRY_SEPARATOR = "!/";
+
     private static final Pattern DUPLICATE_FILENAME_PATTERN = Pattern.compile("([^\\\\.]+?)(?:_(\\d+)_)?\\.(.+)");
 
+    private static final int MAX_OPEN_ARCHIVES = 16;
+    private static final long ARCHIVE_IDLE_SECONDS = 60;
+
     private final FileStorage fileStorage;
+    private final OpenArchives openArchives = new OpenArchives(MAX_OPEN_ARCHIVES, ARCHIVE_IDLE_SECONDS);
 
     @Autowired
     public StorageService(FileStorage fileStorage) {
         this.fileStorage = fileStorage;
     }
 
-    public String save(byte[] file, String... filepath) throws LibException {
+    /**
+     * Synchronized, so concurrent uploads of files with the same name get different names
+     */
+    public synchronized String save(byte[] file, String... filepath) throws LibException {
+        return fileStorage.save(file, getUniquePath(filepath));
+    }
+
+    public Path createTempFile() throws LibException {
+        return fileStorage.createTempFile();
+    }
+
+    /**
+     * Moves file created by {@link #createTempFile()} to the storage, file name is changed if it is already used
+     */
+    public synchronized String move(Path tempFile, String... filepath) throws LibException {
+        return fileStorage.move(tempFile, getUniquePath(filepath));
+    }
 
+    private String[] getUniquePath(String... filepath) throws LibException {
         if (fileStorage.exists(filepath)) {
             Matcher matcher = DUPLICATE_FILENAME_PATTERN.matcher(filepath[filepath.length - 1]);
             if (matcher.matches()) {
@@ -38,17 +66,43 @@ public class StorageService {
                 } else {
                     newFilepath[newFilepath.length - 1] = prefix + "_1_." + extension;
                 }
-                return save(file, newFilepath);
+                return getUniquePath(newFilepath);
             } else {
                 throw new LibException("Can't match file name " + Arrays.toString(filepath)
                         + " pattern " + DUPLICATE_FILENAME_PATTERN.pattern());
             }
         }
-        return fileStorage.save(file, filepath);
+        return filepath;
+    }
+
+    /**
+     * Files of archives outside of the storage are not deleted
+     */
+    public void delete(String fileId) throws LibException {
+        if (!fileId.contains(ARCHIVE_ENTRY_SEPARATOR)) {
+            fileStorage.delete(fileId);
+        }
     }
 
     public InputStream load(String fileId) throws LibException {
-        return fileStorage.load(fileId);
+        int separator = fileId.indexOf(ARCHIVE_ENTRY_SEPARATOR);
+        if (separator < 0) {
+            return fileStorage.load(fileId);
+        }
+        return openArchives.getInputStream(fileId.substring(0, separator),
+                fileId.substring(separator + ARCHIVE_ENTRY_SEPARATOR.length()));
+    }
+
+    /**
+     * @return id of file, which is not copied to the storage, but is read from archive of external library
+     */
+    public static String getArchiveEntryId(Path archive, String entryName) {
+        return archive.toAbsolutePath() + ARCHIVE_ENTRY_SEPARATOR + entryName;
+    }
+
+    @PreDestroy
+    public void closeArchives() {
+        openArchives.closeAll();
     }
 
 }
@@ -9,6 +9,8 @@ import javax.annotation.PreDestroy;
 import java.io.*;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
 
 @Service
 @Profile("tempStorage")
@@ -57,6 +59,39 @@ public class TempFileStorage implements FileStorage {
     }
 
 
+    @Override
+    public Path createTempFile() throws LibException {
+        try {
+            return Files.createTempFile(tempDirectory, "upload", ".tmp");
+        } catch (IOException e) {
+            throw new LibException(e);
+        }
+    }
+
+    @Override
+    public String move(Path tempFile, String... filepath) throws LibException {
+        File file = new File(getFilePath(filepath));
+        File dir = file.getParentFile();
+        if (!dir.exists()) {
+            dir.mkdirs();
+        }
+        try {
+            Files.move(tempFile, file.toPath(), StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new LibException(e);
+        }
+        return file.getAbsolutePath();
+    }
+
+    @Override
+    public void delete(String fileId) throws LibException {
+        try {
+            Files.deleteIfExists(Paths.get(fileId));
+        } catch (IOException e) {
+            throw new LibException(e);
+        }
+    }
+
     private String getFilePath(String... fileName) {
         return tempDirectory.toAbsolutePath() + File.separator + String.join(File.separator,fileName);
     }
@@ -37,4 +37,15 @@ public class BlockingExecutor {
         executor.execute(command);
     }
 
+    /**
+     * @return tasks waiting for a free thread
+     */
+    public int getQueueSize() {
+        return executor.getQueue().size();
+    }
+
+    public int getActiveCount() {
+        return executor.getActiveCount();
+    }
+
 }
@@ -0,0 +1,50 @@
+package com.patex.entities;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.junit4.SpringRunner;
+
+@RunWith(SpringRunner.class)
+@DataJpaTest
+@TestPropertySource(properties = {"spring.jpa.properties.hibernate.generate_statistics=true",
+        "spring.jpa.properties.hibernate.jdbc.batch_size=500",
+        "spring.jpa.properties.hibernate.order_inserts=true"})
+public class BookBatchInsertTest {
+
+    private static final int BOOKS = 100;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Test
+    public void testInsertsAreBatched() {
+        Author author = entityManager.persist(new Author("author"));
+        Genre genre = entityManager.persist(new Genre("genre"));
+        Sequence sequence = entityManager.persist(new Sequence("sequence"));
+        entityManager.flush();
+        Statistics statistics = entityManager.getEntityManager().getEntityManagerFactory().
+                unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+        for (int i = 0; i < BOOKS; i++) {
+            Book book = new Book(author, "book" + i);
+            book.setFileName("book" + i + ".fb2");
+            book.setChecksum(new byte[]{(byte) i});
+            book.setFileResource(new FileResource("book" + i + ".fb2", "application/fb2", 1));
+            book.getGenres().add(new BookGenre(book, genre));
+            book.getSequences().add(new BookSequence(i, sequence, book));
+            entityManager.persist(book);
+        }
+        entityManager.flush();
+        Assert.assertEquals(BOOKS * 5, statistics.getEntityInsertCount());
+        // an insert statement per entity and a few sequence calls for each of them
+        Assert.assertTrue("statements " + statistics.getPrepareStatementCount(),
+                statistics.getPrepareStatementCount() <= 5 * 4);
+    }
+}
@@ -1,11 +1,18 @@
 package com.patex.parser;
 
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.read.ListAppender;
 import com.patex.entities.Book;
 import fb2Generator.Fb2Creator;
 import org.apache.commons.text.RandomStringGenerator;
 import org.junit.Test;
+import org.slf4j.LoggerFactory;
 
+import java.io.ByteArrayInputStream;
 import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
 import java.util.Iterator;
 import java.util.Random;
 import java.util.stream.Stream;
@@ -313,6 +320,110 @@ public class Fb2ParserTest {
 
     }
 
+    @Test
+    public void verifyLargeCoverpageImageSkipped() {
+        String covePageHref = "covePageHref";
+        byte[] content = new byte[1024 * 1024 + 1];
+        new Random(1).nextBytes(content);
+        InputStream fbook = new Fb2Creator(TITLE).
+                setCoverpage(covePageHref).
+                addContent(CONTENT_1).
+                addBinary(covePageHref, content, IMAGE_TYPE).
+                getFbook();
+
+        BookInfo bookInfo = new Fb2FileParser(1).parseFile("fileName", fbook);
+        assertNull(bookInfo.getBookImage());
+        assertEquals(CONTENT_1.length(), bookInfo.getBook().getContentSize().intValue());
+
+        fbook = new Fb2Creator(TITLE).
+                setCoverpage(covePageHref).
+                addBinary(covePageHref, content, IMAGE_TYPE).
+                getFbook();
+        bookInfo = new Fb2FileParser(2).parseFile("fileName", fbook);
+        assertArrayEquals(content, bookInfo.getBookImage().getImage());
+    }
+
+    @Test
+    public void verifyMetadataOnly() {
+        String covePageHref = "covePageHref";
+        InputStream fbook = new Fb2Creator(TITLE).
+                addAuthor("firstName", null, "lastName").
+                setCoverpage(covePageHref).
+                addContent(CONTENT_1).
+                addBinary(covePageHref, new byte[]{1, 2, 3}, IMAGE_TYPE).
+                getFbook();
+
+        Fb2FileParser parser = new Fb2FileParser();
+        BookInfo bookInfo = parser.parseFile("fileName", fbook, ParseOptions.METADATA);
+        Book book = bookInfo.getBook();
+        assertEquals(TITLE, book.getTitle());
+        assertEquals("lastName firstName", book.getAuthorBooks().get(0).getAuthor().getName());
+        assertEquals(covePageHref, bookInfo.getCoverpageImageHref());
+        assertEquals(0, book.getContentSize().intValue());
+        assertNull(bookInfo.getBookImage());
+    }
+
+    @Test
+    public void verifyMetadataAndCover() {
+        String covePageHref = "covePageHref";
+        byte[] content = {1, 2, 3, 4, 5, 6};
+        InputStream fbook = new Fb2Creator(TITLE).
+                setCoverpage(covePageHref).
+                addContent(CONTENT_1).
+                addBinary(covePageHref, content, IMAGE_TYPE).
+                getFbook();
+
+        Fb2FileParser parser = new Fb2FileParser();
+        BookInfo bookInfo = parser.parseFile("fileName", fbook, ParseOptions.METADATA_AND_COVER);
+        assertEquals(0, bookInfo.getBook().getContentSize().intValue());
+        assertArrayEquals(content, bookInfo.getBookImage().getImage());
+        assertEquals(IMAGE_TYPE, bookInfo.getBookImage().getType());
+    }
+
+    /**
+     * Image of the body isn't taken as cover, when coverpage is empty, title info after coverpage is read
+     */
+    @Test
+    public void verifyEmptyCoverpage() {
+        String fb2 = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>" +
+                "<FictionBook xmlns=\"http://www.gribuser.ru/xml/fictionbook/2.0\" " +
+                "xmlns:l=\"http://www.w3.org/1999/xlink\">" +
+                "<description><title-info><book-title>" + TITLE + "</book-title><coverpage></coverpage>" +
+                "<sequence name=\"sequence\" number=\"1\"/></title-info></description>" +
+                "<body><section><p>" + CONTENT_1 + "</p><image l:href=\"#picture.jpg\"/></section></body>" +
+                "<binary id=\"picture.jpg\" content-type=\"" + IMAGE_TYPE + "\">AQID</binary>" +
+                "</FictionBook>";
+
+        BookInfo bookInfo = new Fb2FileParser().parseFile("fileName",
+                new ByteArrayInputStream(fb2.getBytes(StandardCharsets.UTF_8)), ParseOptions.FULL);
+        assertEquals(TITLE, bookInfo.getBook().getTitle());
+        assertNull(bookInfo.getCoverpageImageHref());
+        assertNull(bookInfo.getBookImage());
+        assertEquals(1, bookInfo.getBook().getSequences().size());
+        assertEquals("sequence", bookInfo.getBook().getSequences().get(0).getSequence().getName());
+        assertEquals(CONTENT_1.length(), bookInfo.getBook().getContentSize().intValue());
+    }
+
+    @Test
+    public void verifyBinaryWithoutCoverpage() {
+        InputStream fbook = new Fb2Creator(TITLE).
+                addContent(CONTENT_1).
+                addBinary("picture.jpg", new byte[]{1, 2, 3}, IMAGE_TYPE).
+                getFbook();
+        Logger logger = (Logger) LoggerFactory.getLogger(Fb2FileParser.class);
+        ListAppender<ILoggingEvent> appender = new ListAppender<>();
+        appender.start();
+        logger.addAppender(appender);
+        try {
+            BookInfo bookInfo = new Fb2FileParser().parseFile("fileName", fbook, ParseOptions.FULL);
+            assertNull(bookInfo.getBookImage());
+            assertEquals(CONTENT_1.length(), bookInfo.getBook().getContentSize().intValue());
+        } finally {
+            logger.detachAppender(appender);
+        }
+        assertTrue(appender.list.stream().noneMatch(event -> event.getLevel().isGreaterOrEqual(Level.WARN)));
+    }
+
     @SuppressWarnings("ConstantConditions")
     @Test
     public void testFb2Content() {
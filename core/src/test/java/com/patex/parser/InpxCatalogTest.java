@@ -0,0 +1,105 @@
+package com.patex.parser;
+
+import com.patex.entities.Book;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class InpxCatalogTest {
+
+    private Path inpx;
+
+    @Before
+    public void setUp() throws IOException {
+        inpx = Files.createTempFile("catalog", ".inpx");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(inpx);
+    }
+
+    @Test
+    public void testDefaultStructure() throws IOException {
+        writeCatalog(null,
+                "fb2-000001-000100.inp", line("Last,First,Middle:Second,Author,:", "sf:adv:", "title",
+                        "sequence", "3", "101", "1024", "101", "0", "fb2"),
+                "fb2-000101-000200.inp", line("Author,,:", "prose:", "deleted", "", "", "150", "10", "150", "1", "fb2"));
+
+        List<InpRecord> records = readCatalog();
+
+        assertEquals(2, records.size());
+        InpRecord record = records.get(0);
+        assertEquals("fb2-000001-000100.zip", record.getArchive());
+        assertEquals("101.fb2", record.getFileName());
+        assertEquals(1024, record.getSize());
+        assertFalse(record.isDeleted());
+        Book book = record.getBookInfo().getBook();
+        assertEquals("title", book.getTitle());
+        assertEquals(2, book.getAuthorBooks().size());
+        assertEquals("Last First Middle", book.getAuthorBooks().get(0).getAuthor().getName());
+        assertEquals("Second Author", book.getAuthorBooks().get(1).getAuthor().getName());
+        assertEquals(2, book.getGenres().size());
+        assertEquals("adv", book.getGenres().get(1).getGenre().getName());
+        assertEquals(1, book.getSequences().size());
+        assertEquals("sequence", book.getSequences().get(0).getSequence().getName());
+        assertEquals(3, book.getSequences().get(0).getSeqOrder());
+
+        assertEquals("fb2-000101-000200.zip", records.get(1).getArchive());
+        assertTrue(records.get(1).isDeleted());
+        assertEquals(0, records.get(1).getBookInfo().getBook().getSequences().size());
+    }
+
+    @Test
+    public void testStructureInfo() throws IOException {
+        writeCatalog("TITLE;FILE;EXT;FOLDER;AUTHOR;",
+                "any.inp", line("title", "42", "epub", "archive.zip", "Author,Name,"));
+
+        List<InpRecord> records = readCatalog();
+
+        assertEquals(1, records.size());
+        assertEquals("archive.zip", records.get(0).getArchive());
+        assertEquals("42.epub", records.get(0).getFileName());
+        Book book = records.get(0).getBookInfo().getBook();
+        assertEquals("title", book.getTitle());
+        assertEquals("Author Name", book.getAuthorBooks().get(0).getAuthor().getName());
+    }
+
+    private List<InpRecord> readCatalog() throws IOException {
+        List<InpRecord> records = new ArrayList<>();
+        try (InpxCatalog catalog = new InpxCatalog(inpx)) {
+            catalog.forEachRemaining(records::add);
+        }
+        return records;
+    }
+
+    private static String line(String... fields) {
+        return String.join("\u0004", fields) + "\u0004\r\n";
+    }
+
+    private void writeCatalog(String structure, String... inpFiles) throws IOException {
+        try (ZipOutputStream zos = new ZipOutputStream(Files.newOutputStream(inpx))) {
+            if (structure != null) {
+                zos.putNextEntry(new ZipEntry("structure.info"));
+                zos.write(structure.getBytes(StandardCharsets.UTF_8));
+            }
+            for (int i = 0; i < inpFiles.length; i += 2) {
+                zos.putNextEntry(new ZipEntry(inpFiles[i]));
+                zos.write(inpFiles[i + 1].getBytes(StandardCharsets.UTF_8));
+            }
+        }
+    }
+}
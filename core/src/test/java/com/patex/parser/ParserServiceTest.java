@@ -20,19 +20,31 @@ public class ParserServiceTest {
         when(fileParser.getExtension()).thenReturn(EXT);
         InputStream is = mock(InputStream.class);
         BookInfo bookInfo = new BookInfo();
-        when(fileParser.parseFile(FILE_NAME, is)).thenReturn(bookInfo);
+        when(fileParser.parseFile(FILE_NAME, is, ParseOptions.FULL)).thenReturn(bookInfo);
         ParserService parserService = new ParserService(fileParser);
         BookInfo result = parserService.getBookInfo(FILE_NAME, is);
         Assert.assertEquals(result, bookInfo);
     }
 
+    @Test
+    public void verifyParseOptions() {
+        FileParser fileParser = mock(FileParser.class);
+        when(fileParser.getExtension()).thenReturn(EXT);
+        InputStream is = mock(InputStream.class);
+        BookInfo bookInfo = new BookInfo();
+        when(fileParser.parseFile(FILE_NAME, is, ParseOptions.METADATA)).thenReturn(bookInfo);
+        ParserService parserService = new ParserService(fileParser);
+        BookInfo result = parserService.getBookInfo(FILE_NAME, is, ParseOptions.METADATA);
+        Assert.assertEquals(bookInfo, result);
+    }
+
     @Test
     public void verifyCorrectParser() {
         FileParser fileParser = mock(FileParser.class);
         when(fileParser.getExtension()).thenReturn(EXT);
         InputStream is = mock(InputStream.class);
         BookInfo bookInfo = new BookInfo();
-        when(fileParser.parseFile(FILE_NAME, is)).thenReturn(bookInfo);
+        when(fileParser.parseFile(FILE_NAME, is, ParseOptions.FULL)).thenReturn(bookInfo);
 
         FileParser otherParser = mock(FileParser.class);
         when(otherParser.getExtension()).thenReturn("other");
@@ -25,7 +25,7 @@ public class ZipFileParserTest {
         zos.putNextEntry(new ZipEntry("blah"));
         zos.write(data);
         parser.parseFile(FILENAME + ".zip", new ByteArrayInputStream(data));
-        verify(parserService).getBookInfo(eq(FILENAME), any());
+        verify(parserService).getBookInfo(eq(FILENAME), any(), eq(ParseOptions.FULL));
     }
 
     @Test
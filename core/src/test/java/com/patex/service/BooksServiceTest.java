@@ -13,12 +13,17 @@ import com.patex.parser.ParserService;
 import com.patex.storage.StorageService;
 import org.apache.commons.lang3.RandomUtils;
 import org.apache.commons.text.RandomStringGenerator;
+import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 import org.springframework.context.ApplicationEventPublisher;
 
 import java.io.ByteArrayInputStream;
+import java.io.IOException;
 import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
@@ -54,9 +59,10 @@ public class BooksServiceTest {
     private ZUser user;
     private BookInfo bookInfo;
     private Book book;
+    private Path tempFile;
 
     @Before
-    public void setUp() {
+    public void setUp() throws IOException {
         parserService = mock(ParserService.class);
         bookRepo = mock(BookRepository.class);
         sequenceService = mock(SequenceService.class);
@@ -84,6 +90,8 @@ public class BooksServiceTest {
         when(authorService.findFirstByNameIgnoreCase(any())).thenReturn(Optional.empty());
 
         fileStorage = mock(StorageService.class);
+        tempFile = Files.createTempFile("upload", ".tmp");
+        when(fileStorage.createTempFile()).thenReturn(tempFile);
         transactionService = new TransactionService();
         eventPublisher = mock(ApplicationEventPublisher.class);
         bookService = new BookService(bookRepo, sequenceService, authorService, parserService,
@@ -91,15 +99,35 @@ public class BooksServiceTest {
                 eventPublisher);
     }
 
+    @After
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(tempFile);
+    }
+
     @Test
     public void verifyUploadBook() {
         Book result = bookService.uploadBook(FILE_NAME, bookIS, user);
         verify(bookRepo).save(this.book);
-        verify(fileStorage).save(any(), eq(FILE_NAME));
+        verify(fileStorage).move(tempFile, FILE_NAME);
         assertEquals(FILE_NAME, book.getFileName());
         assertEquals(result, book);
     }
 
+    @Test
+    public void verifyUploadIsParsedFromTempFile() throws Exception {
+        byte[] content = rsg.generate(100_000).getBytes();
+        when(parserService.getBookInfo(eq(FILE_NAME), any())).thenAnswer(i -> {
+            assertArrayEquals(content, ((InputStream) i.getArguments()[1]).readAllBytes());
+            return bookInfo;
+        });
+
+        bookService.uploadBook(FILE_NAME, new ByteArrayInputStream(content), user);
+
+        assertArrayEquals(MessageDigest.getInstance("SHA").digest(content), book.getChecksum());
+        assertEquals(content.length, book.getFileResource().getSize().intValue());
+        assertFalse("temp file should be moved or deleted", Files.exists(tempFile));
+    }
+
     @Test
     public void verifyUploadBookWithSavedAuthor() {
         long authorID = 42;
@@ -0,0 +1,176 @@
+package com.patex.service;
+
+import com.patex.LibException;
+import com.patex.entities.Author;
+import com.patex.entities.Book;
+import com.patex.entities.BookRepository;
+import com.patex.entities.ZUser;
+import com.patex.parser.BookInfo;
+import com.patex.parser.ParserService;
+import com.patex.storage.StorageService;
+import com.patex.storage.TempFileStorage;
+import com.patex.utils.ExecutorCreator;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.context.ApplicationEventPublisher;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.*;
+
+public class BulkImportServiceTest {
+
+    private Path directory;
+    private Path storageDirectory;
+    private BookRepository bookRepo;
+    private AuthorService authorService;
+    private ApplicationEventPublisher publisher;
+    private BulkImportService bulkImportService;
+
+    @Before
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("bulkImport");
+        bookRepo = mock(BookRepository.class);
+        AtomicLong ids = new AtomicLong();
+        List<Book> saved = new ArrayList<>();
+        when(bookRepo.findByChecksumIn(any())).thenAnswer(i -> new ArrayList<>(saved));
+        when(bookRepo.save(any(Book.class))).thenAnswer(i -> {
+            Book book = (Book) i.getArguments()[0];
+            if ("broken".equals(book.getTitle())) {
+                throw new LibException("unable to save");
+            }
+            book.setId(ids.incrementAndGet());
+            saved.add(book);
+            return book;
+        });
+        authorService = mock(AuthorService.class);
+        when(authorService.findByNames(any())).thenReturn(Collections.emptyMap());
+        when(authorService.findFirstByNameIgnoreCase(any())).thenReturn(Optional.empty());
+
+        ParserService parserService = mock(ParserService.class);
+        when(parserService.isSupported(any())).thenAnswer(i -> ((String) i.getArguments()[0]).endsWith(".fb2"));
+        when(parserService.getBookInfo(any(), any())).thenAnswer(i -> {
+            String content = new String(((InputStream) i.getArguments()[1]).readAllBytes(), StandardCharsets.UTF_8);
+            if (content.isEmpty()) {
+                throw new LibException("broken file");
+            }
+            Book book = new Book();
+            book.setTitle(content);
+            book.setAuthors(Collections.singleton(new Author("author " + content)));
+            BookInfo bookInfo = new BookInfo();
+            bookInfo.setBook(book);
+            return bookInfo;
+        });
+        TempFileStorage fileStorage = new TempFileStorage();
+        fileStorage.postConstruct();
+        storageDirectory = fileStorage.createTempFile().getParent();
+        publisher = mock(ApplicationEventPublisher.class);
+        BookService bookService = new BookService(bookRepo, mock(SequenceService.class), authorService,
+                parserService, new StorageService(fileStorage), new TransactionService(), publisher);
+        bulkImportService = new BulkImportService(bookService, parserService, publisher,
+                new ExecutorCreator(), 2, 2);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        for (Path dir : Arrays.asList(directory, storageDirectory)) {
+            try (Stream<Path> files = Files.walk(dir)) {
+                files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+            }
+        }
+    }
+
+    @Test
+    public void testImport() throws IOException {
+        write("1.fb2", "first");
+        write("2.fb2", "second");
+        write("3.fb2", "first");
+        write("4.fb2", "");
+        write("5.fb2", "third");
+
+        BulkImportProgress progress = bulkImportService.importDirectory(directory, new ZUser());
+
+        assertTrue(progress.isFinished());
+        assertEquals(5, progress.getTotal());
+        assertEquals(3, progress.getImported());
+        assertEquals(1, progress.getSkipped());
+        assertEquals(1, progress.getFailed());
+        verify(bookRepo, times(3)).save(any(Book.class));
+        verify(authorService, times(3)).createAllIfAbsent(any());
+        verify(authorService, never()).createIfAbsent(any());
+
+        ArgumentCaptor<Object> events = ArgumentCaptor.forClass(Object.class);
+        verify(publisher).publishEvent(events.capture());
+        BooksCreationEvent event = (BooksCreationEvent) events.getValue();
+        assertEquals(3, event.getBookIds().size());
+    }
+
+    @Test
+    public void testImportArchive() throws IOException {
+        write("1.fb2", "first");
+        try (ZipOutputStream zos = new ZipOutputStream(Files.newOutputStream(directory.resolve("books.zip")))) {
+            writeEntry(zos, "books/2.fb2", "second");
+            writeEntry(zos, "books/3.fb2", "first");
+            writeEntry(zos, "books/readme.txt", "readme");
+            writeEntry(zos, "books/4.fb2", "third");
+        }
+
+        BulkImportProgress progress = bulkImportService.importDirectory(directory, new ZUser());
+
+        assertEquals(4, progress.getTotal());
+        assertEquals(3, progress.getImported());
+        assertEquals(1, progress.getSkipped());
+        assertEquals(0, progress.getFailed());
+        ArgumentCaptor<Book> books = ArgumentCaptor.forClass(Book.class);
+        verify(bookRepo, times(3)).save(books.capture());
+        assertEquals(Arrays.asList("first", "second", "third"),
+                books.getAllValues().stream().map(Book::getTitle).collect(Collectors.toList()));
+        assertEquals(Arrays.asList("1.fb2", "2.fb2", "4.fb2"),
+                books.getAllValues().stream().map(Book::getFileName).collect(Collectors.toList()));
+    }
+
+    @Test
+    public void testFailedBatchFilesAreDeleted() throws IOException {
+        write("1.fb2", "first");
+        write("2.fb2", "broken");
+        write("3.fb2", "third");
+
+        BulkImportProgress progress = bulkImportService.importDirectory(directory, new ZUser());
+
+        assertEquals(1, progress.getImported());
+        assertEquals(2, progress.getFailed());
+        try (Stream<Path> files = Files.list(storageDirectory)) {
+            assertEquals(Collections.singletonList("3.fb2"), files.map(path -> path.getFileName().toString()).
+                    filter(name -> !name.endsWith(".tmp")).collect(Collectors.toList()));
+        }
+    }
+
+    private void writeEntry(ZipOutputStream zos, String name, String content) throws IOException {
+        zos.putNextEntry(new ZipEntry(name));
+        zos.write(content.getBytes(StandardCharsets.UTF_8));
+        zos.closeEntry();
+    }
+
+    private void write(String fileName, String content) throws IOException {
+        Files.write(directory.resolve(fileName), content.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,137 @@
+package com.patex.service;
+
+import com.patex.entities.Book;
+import com.patex.entities.BookRepository;
+import com.patex.entities.ZUser;
+import com.patex.parser.Fb2FileParser;
+import com.patex.parser.ParserService;
+import com.patex.storage.StorageService;
+import com.patex.storage.TempFileStorage;
+import com.patex.utils.ExecutorCreator;
+import fb2Generator.Fb2Creator;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.context.ApplicationEventPublisher;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+public class InpxImportServiceTest {
+
+    private static final String CONTENT = "content";
+
+    private Path directory;
+    private List<Book> saved;
+    private ApplicationEventPublisher publisher;
+    private BookService bookService;
+    private InpxImportService inpxImportService;
+
+    @Before
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("inpxImport");
+        BookRepository bookRepo = mock(BookRepository.class);
+        AtomicLong ids = new AtomicLong();
+        saved = Collections.synchronizedList(new ArrayList<>());
+        when(bookRepo.findByChecksumIn(any())).thenAnswer(i -> new ArrayList<>(saved));
+        when(bookRepo.save(any(Book.class))).thenAnswer(i -> {
+            Book book = (Book) i.getArguments()[0];
+            if (book.getId() == null) {
+                book.setId(ids.incrementAndGet());
+                saved.add(book);
+            }
+            return book;
+        });
+        when(bookRepo.findById(any())).thenAnswer(i -> saved.stream().
+                filter(book -> book.getId().equals(i.getArguments()[0])).findFirst());
+        AuthorService authorService = mock(AuthorService.class);
+        when(authorService.findByNames(any())).thenReturn(Collections.emptyMap());
+        when(authorService.findFirstByNameIgnoreCase(any())).thenReturn(Optional.empty());
+
+        TempFileStorage fileStorage = new TempFileStorage();
+        fileStorage.postConstruct();
+        publisher = mock(ApplicationEventPublisher.class);
+        ParserService parserService = new ParserService(new Fb2FileParser());
+        bookService = new BookService(bookRepo, mock(SequenceService.class), authorService,
+                parserService, new StorageService(fileStorage), new TransactionService(), publisher);
+        inpxImportService = new InpxImportService(bookService, parserService, new TransactionService(), publisher,
+                new ExecutorCreator(), 1);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    @Test
+    public void testImport() throws IOException {
+        byte[] first;
+        try (InputStream is = new Fb2Creator("first").addContent(CONTENT).setCoverpage("#cover.jpg").
+                addBinary("cover.jpg", new byte[]{1, 2, 3}, "image/jpeg").getFbook()) {
+            first = is.readAllBytes();
+        }
+        try (ZipOutputStream zos = new ZipOutputStream(Files.newOutputStream(directory.resolve("fb2-1.zip")))) {
+            zos.putNextEntry(new ZipEntry("1.fb2"));
+            zos.write(first);
+            zos.putNextEntry(new ZipEntry("2.fb2"));
+            try (InputStream is = new Fb2Creator("second").addContent(CONTENT + CONTENT).getFbook()) {
+                zos.write(is.readAllBytes());
+            }
+        }
+        Path inpx = directory.resolve("library.inpx");
+        try (ZipOutputStream zos = new ZipOutputStream(Files.newOutputStream(inpx))) {
+            zos.putNextEntry(new ZipEntry("fb2-1.inp"));
+            zos.write((line("Last,First,:", "sf:", "first", "", "", "1", "100", "1", "0", "fb2") +
+                    line("Last,First,:", "sf:", "second", "", "", "2", "100", "2", "0", "fb2") +
+                    line("Last,First,:", "sf:", "deleted", "", "", "3", "100", "3", "1", "fb2")).
+                    getBytes(StandardCharsets.UTF_8));
+        }
+
+        BulkImportProgress progress = inpxImportService.importCatalog(inpx, new ZUser());
+
+        assertTrue(progress.isFinished());
+        assertEquals(2, progress.getImported());
+        assertEquals(1, progress.getSkipped());
+        assertEquals(0, progress.getFailed());
+        assertEquals(2, saved.size());
+        Book book = saved.get(0);
+        assertEquals("first", book.getTitle());
+        assertEquals("1.fb2", book.getFileName());
+        assertTrue(book.getFileResource().getFilePath().endsWith("fb2-1.zip!/1.fb2"));
+        try (InputStream is = bookService.getBookInputStream(book)) {
+            assertArrayEquals(first, is.readAllBytes());
+        }
+
+        verify(publisher, timeout(10000).times(2)).publishEvent(any(BooksCreationEvent.class));
+        assertEquals(CONTENT.length(), book.getContentSize().intValue());
+        assertNotNull(book.getCover());
+        assertEquals(2 * CONTENT.length(), saved.get(1).getContentSize().intValue());
+        assertNull(saved.get(1).getCover());
+
+        progress = inpxImportService.importCatalog(inpx, new ZUser());
+        assertEquals(0, progress.getImported());
+        assertEquals(3, progress.getSkipped());
+        assertEquals(2, saved.size());
+    }
+
+    private static String line(String... fields) {
+        return String.join("\u0004", fields) + "\u0004\r\n";
+    }
+}
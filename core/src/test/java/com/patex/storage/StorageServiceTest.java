@@ -1,7 +1,18 @@
 package com.patex.storage;
 
+import com.patex.LibException;
 import org.junit.Test;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.Assert.assertEquals;
 import static org.mockito.Mockito.*;
 
 public class StorageServiceTest {
@@ -50,4 +61,80 @@ public class StorageServiceTest {
         verify(fileStorage, times(1)).save(content, exists2);
     }
 
+    @Test
+    public void testMoveExists() {
+        FileStorage fileStorage = mock(FileStorage.class);
+        String exists = "exist.txt";
+        String exists1 = "exist_1_.txt";
+
+        when(fileStorage.exists(exists)).thenReturn(Boolean.TRUE);
+        StorageService storageService = new StorageService(fileStorage);
+
+        Path tempFile = Paths.get("upload.tmp");
+        storageService.move(tempFile, exists);
+        verify(fileStorage, times(1)).move(tempFile, exists1);
+    }
+
+    @Test
+    public void testLoadArchiveEntries() throws IOException {
+        Path archive = createArchive();
+        try {
+            StorageService storageService = new StorageService(mock(FileStorage.class));
+            try (InputStream first = storageService.load(StorageService.getArchiveEntryId(archive, "1.fb2"));
+                 InputStream second = storageService.load(StorageService.getArchiveEntryId(archive, "2.fb2"))) {
+                assertEquals("first", read(first));
+                assertEquals("second", read(second));
+            }
+            try (InputStream second = storageService.load(StorageService.getArchiveEntryId(archive, "2.fb2"))) {
+                assertEquals("second", read(second));
+            }
+        } finally {
+            Files.delete(archive);
+        }
+    }
+
+    /**
+     * Archive is closed only after the last stream of its entries is closed
+     */
+    @Test
+    public void testArchiveIsClosedAfterStreams() throws IOException {
+        Path archive = createArchive();
+        try {
+            StorageService storageService = new StorageService(mock(FileStorage.class));
+            try (InputStream first = storageService.load(StorageService.getArchiveEntryId(archive, "1.fb2"))) {
+                storageService.closeArchives();
+                assertEquals("first", read(first));
+            }
+            try (InputStream second = storageService.load(StorageService.getArchiveEntryId(archive, "2.fb2"))) {
+                assertEquals("second", read(second));
+            }
+        } finally {
+            Files.delete(archive);
+        }
+    }
+
+    @Test(expected = LibException.class)
+    public void testMissingArchiveEntry() throws IOException {
+        Path archive = createArchive();
+        try {
+            new StorageService(mock(FileStorage.class)).load(StorageService.getArchiveEntryId(archive, "3.fb2"));
+        } finally {
+            Files.delete(archive);
+        }
+    }
+
+    private static Path createArchive() throws IOException {
+        Path archive = Files.createTempFile("storage", ".zip");
+        try (ZipOutputStream zos = new ZipOutputStream(Files.newOutputStream(archive))) {
+            zos.putNextEntry(new ZipEntry("1.fb2"));
+            zos.write("first".getBytes(StandardCharsets.UTF_8));
+            zos.putNextEntry(new ZipEntry("2.fb2"));
+            zos.write("second".getBytes(StandardCharsets.UTF_8));
+        }
+        return archive;
+    }
+
+    private static String read(InputStream is) throws IOException {
+        return new String(is.readAllBytes(), StandardCharsets.UTF_8);
+    }
 }
@@ -0,0 +1,68 @@
+package com.patex.shingle;
+
+import com.patex.shingle.byteSet.ByteSet;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Shingling throughput of one factory shared by all benchmark threads, one operation shingles a ~300 KiB book.
+ * Score of allThreads divided by score of oneThread is the speedup on the machine
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ConcurrentShinglingBenchmark {
+
+    private static final int BOOKS = 16;
+    private static final int BOOK_BYTES = 300 * 1024;
+
+    @Param({ShingleHashers.MD5, ShingleHashers.ROLLING})
+    public String hasher;
+
+    private final AtomicInteger next = new AtomicInteger();
+    private List<List<String>> books;
+    private LoadedShinglerFactory factory;
+
+    @Setup
+    public void setup() {
+        TextGenerator generator = new TextGenerator(1, TextGenerator.Language.RU);
+        books = Stream.generate(() -> generator.paragraphs(BOOK_BYTES)).limit(BOOKS).collect(Collectors.toList());
+        factory = new LoadedShinglerFactory(1, 8, ShingleHashers.forName(hasher));
+    }
+
+    @Benchmark
+    @Threads(1)
+    public ByteSet oneThread() {
+        return shingleNextBook();
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public ByteSet allThreads() {
+        return shingleNextBook();
+    }
+
+    private ByteSet shingleNextBook() {
+        List<String> book = books.get(Math.floorMod(next.getAndIncrement(), BOOKS));
+        return factory.createShingles(TextGenerator.toShingleable(book));
+    }
+}
@@ -0,0 +1,81 @@
+package com.patex.shingle;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Serialization and deserialization of a shingler of a ~300 KiB book through the in-memory storage
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ShingleCacheBenchmark {
+
+    private static final int BOOK_BYTES = 300 * 1024;
+
+    @Param({"8", "16"})
+    public int byteArraySize;
+
+    @Param({"0", "10"})
+    public int bloomBitsPerKey;
+
+    private Shingler shingler;
+    private ShingleCache<String> cache;
+    private MemoryStorage storage;
+
+    @Setup
+    public void setup() throws IOException {
+        LoadedShinglerFactory factory = new LoadedShinglerFactory(1, byteArraySize,
+                ShingleHashers.forName(ShingleHashers.MD5));
+        shingler = factory.createShingler(TextGenerator.toShingleable(
+                new TextGenerator(1, TextGenerator.Language.RU).paragraphs(BOOK_BYTES)));
+        storage = new MemoryStorage();
+        cache = new ShingleCache<>(factory.getHasherId(), factory.getByteArraySize(), bloomBitsPerKey);
+        cache.setStorage(storage);
+        cache.saveToCache(shingler, "book");
+    }
+
+    @Benchmark
+    public byte[] serialize() throws IOException {
+        cache.saveToCache(shingler, "book");
+        return storage.bytes;
+    }
+
+    @Benchmark
+    public Optional<Shingler> deserialize() throws IOException {
+        return cache.getFromCache("book");
+    }
+
+    private static class MemoryStorage implements ShingleCacheStorage<String> {
+
+        private byte[] bytes;
+
+        @Override
+        public InputStream load(String s) {
+            return bytes == null ? null : new ByteArrayInputStream(bytes);
+        }
+
+        @Override
+        public void save(byte[] bytes, String s) {
+            this.bytes = bytes;
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package com.patex.shingle;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.nio.charset.StandardCharsets;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Hash of one shingle of 20-40 latin letters by every hasher which hashes separate shingles, time is per shingle.
+ * State is per thread, because hashers may keep state
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ShingleHasherBenchmark {
+
+    private static final int SHINGLES = 10_000;
+
+    @Param({ShingleHashers.MD5, ShingleHashers.XXHASH64, ShingleHashers.MURMUR3_128})
+    public String hasher;
+
+    private byte[][] shingles;
+    private ShingleHasher shingleHasher;
+
+    @Setup
+    public void setup() {
+        SplittableRandom random = new SplittableRandom(1);
+        shingles = new byte[SHINGLES][];
+        for (int i = 0; i < SHINGLES; i++) {
+            StringBuilder shingle = new StringBuilder();
+            int length = 20 + random.nextInt(21);
+            for (int j = 0; j < length; j++) {
+                shingle.append((char) ('a' + random.nextInt(26)));
+            }
+            shingles[i] = shingle.toString().getBytes(StandardCharsets.UTF_8);
+        }
+        shingleHasher = ShingleHashers.forName(hasher).get();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SHINGLES)
+    public void hash(Blackhole blackhole) {
+        for (byte[] shingle : shingles) {
+            blackhole.consume(shingleHasher.hash(shingle));
+        }
+    }
+}
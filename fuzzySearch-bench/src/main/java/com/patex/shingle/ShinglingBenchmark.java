@@ -0,0 +1,62 @@
+package com.patex.shingle;
+
+import com.patex.shingle.byteSet.ByteSet;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Shingle generation throughput, one operation shingles 1 MiB of UTF-8 text, so ops/s is MiB/s
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ShinglingBenchmark {
+
+    private static final int TEXT_BYTES = 1024 * 1024;
+
+    @Param({ShingleHashers.MD5, ShingleHashers.XXHASH64, ShingleHashers.ROLLING})
+    public String hasher;
+
+    @Param({"RU", "EN"})
+    public TextGenerator.Language language;
+
+    @Param({"0", "256"})
+    public int sketchSize;
+
+    private List<String> text;
+    private LoadedShinglerFactory factory;
+
+    @Setup
+    public void setup() {
+        text = new TextGenerator(1, language).paragraphs(TEXT_BYTES);
+        factory = new LoadedShinglerFactory(1, 8, ShingleHashers.forName(hasher), sketchSize);
+    }
+
+    @Benchmark
+    public ByteSet createShingles() {
+        return factory.createShingles(TextGenerator.toShingleable(text));
+    }
+
+    /**
+     * Shingles and SimHash fingerprint of the distinct shingles, which takes one more pass over the set
+     */
+    @Benchmark
+    public long createShinglerWithSimHash() {
+        return factory.createShingler(TextGenerator.toShingleable(text)).getSimHash();
+    }
+}
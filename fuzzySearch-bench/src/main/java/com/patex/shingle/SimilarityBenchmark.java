@@ -0,0 +1,81 @@
+package com.patex.shingle;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link ShingleMatcher#isSimilar} of a book and its lightly edited copy and of two unrelated books.
+ * With simHash the verdict may come from fingerprints alone: distant ones reject pair without comparison,
+ * so score benchmarks measure full comparison of all shingles by {@link ShingleMatcher#getSimilarity}.
+ * Shinglers are created in setup, so only the comparison is measured
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SimilarityBenchmark {
+
+    private static final int BOOK_BYTES = 300 * 1024;
+
+    @Param({"0", "10"})
+    public int bloomBitsPerKey;
+
+    @Param({"false", "true"})
+    public boolean simHash;
+
+    @Param({"0", "256"})
+    public int sketchSize;
+
+    private ShingleMatcher<List<String>, Integer> matcher;
+    private List<String> book;
+    private List<String> editedBook;
+    private List<String> otherBook;
+
+    @Setup
+    public void setup() {
+        TextGenerator generator = new TextGenerator(1, TextGenerator.Language.RU);
+        book = generator.paragraphs(BOOK_BYTES);
+        editedBook = generator.edit(book, 0.02);
+        otherBook = generator.paragraphs(BOOK_BYTES);
+        ShingleSearchConfig config = new ShingleSearchConfig().setBloomBitsPerKey(bloomBitsPerKey).
+                setSimHashCheck(simHash).setSketchSize(sketchSize);
+        matcher = new ShingleMatcher<>(TextGenerator::toShingleable, System::identityHashCode, config);
+        if (!matcher.isSimilar(book, editedBook) || matcher.isSimilar(book, otherBook)) {
+            throw new IllegalStateException("Generated books are not classified as expected");
+        }
+    }
+
+    @Benchmark
+    public boolean similar() {
+        return matcher.isSimilar(book, editedBook);
+    }
+
+    @Benchmark
+    public boolean unrelated() {
+        return matcher.isSimilar(book, otherBook);
+    }
+
+    @Benchmark
+    public ShingleSimilarity similarScore() {
+        return matcher.getSimilarity(book, editedBook);
+    }
+
+    @Benchmark
+    public ShingleSimilarity unrelatedScore() {
+        return matcher.getSimilarity(book, otherBook);
+    }
+}
@@ -0,0 +1,132 @@
+package com.patex.shingle;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * Deterministic synthetic text, the same seed gives the same text on every machine.
+ * Words are built from syllables of the language and chosen with Zipf like frequencies,
+ * sentences have punctuation and stop words, so tokenizer and skip words work as on real books
+ */
+public final class TextGenerator {
+
+    public enum Language {
+        RU(new String[]{"ка", "ро", "ни", "то", "ле", "ва", "ми", "да", "по", "ст", "ор", "ен", "жи", "ще", "лу",
+                "ск", "ть", "ой", "ый", "ая"},
+                new String[]{"и", "в", "не", "на", "что", "он", "она", "как", "так", "но", "за", "до"}),
+        EN(new String[]{"th", "er", "on", "an", "re", "he", "in", "ed", "nd", "ha", "at", "en", "es", "of", "or",
+                "nt", "ea", "ti", "to", "it"},
+                new String[]{"the", "a", "and", "of", "to", "in", "is", "it", "that", "was", "he", "she"});
+
+        private final String[] syllables;
+        private final String[] stopWords;
+
+        Language(String[] syllables, String[] stopWords) {
+            this.syllables = syllables;
+            this.stopWords = stopWords;
+        }
+    }
+
+    private static final int VOCABULARY_SIZE = 20_000;
+    private static final String[] PUNCTUATION = {".", ".", ".", "!", "?", "…"};
+
+    private final SplittableRandom random;
+    private final Language language;
+    private final String[] vocabulary = new String[VOCABULARY_SIZE];
+
+    public TextGenerator(long seed, Language language) {
+        this.random = new SplittableRandom(seed);
+        this.language = language;
+        for (int i = 0; i < VOCABULARY_SIZE; i++) {
+            StringBuilder word = new StringBuilder();
+            int syllables = 1 + random.nextInt(4);
+            for (int j = 0; j < syllables; j++) {
+                word.append(language.syllables[random.nextInt(language.syllables.length)]);
+            }
+            vocabulary[i] = word.toString();
+        }
+    }
+
+    /**
+     * @return paragraphs which have at least {@code bytes} in UTF-8
+     */
+    public List<String> paragraphs(int bytes) {
+        List<String> result = new ArrayList<>();
+        int size = 0;
+        while (size < bytes) {
+            String paragraph = paragraph();
+            result.add(paragraph);
+            size += paragraph.getBytes(StandardCharsets.UTF_8).length;
+        }
+        return result;
+    }
+
+    private String paragraph() {
+        StringBuilder paragraph = new StringBuilder();
+        int sentences = 3 + random.nextInt(6);
+        for (int i = 0; i < sentences; i++) {
+            int words = 5 + random.nextInt(15);
+            for (int j = 0; j < words; j++) {
+                String word = random.nextInt(5) == 0 ?
+                        language.stopWords[random.nextInt(language.stopWords.length)] : nextWord();
+                if (j == 0) {
+                    word = Character.toUpperCase(word.charAt(0)) + word.substring(1);
+                } else {
+                    paragraph.append(random.nextInt(8) == 0 ? ", " : " ");
+                }
+                paragraph.append(word);
+            }
+            paragraph.append(PUNCTUATION[random.nextInt(PUNCTUATION.length)]).append(' ');
+        }
+        return paragraph.toString();
+    }
+
+    /**
+     * Rank is exponential of uniform value, so frequency of a word is roughly inverse of its rank
+     */
+    private String nextWord() {
+        int rank = (int) Math.exp(random.nextDouble() * Math.log(VOCABULARY_SIZE)) - 1;
+        return vocabulary[Math.min(rank, VOCABULARY_SIZE - 1)];
+    }
+
+    /**
+     * @return copy of text with the share {@code rate} of paragraphs replaced by new ones
+     */
+    public List<String> edit(List<String> paragraphs, double rate) {
+        List<String> result = new ArrayList<>(paragraphs);
+        for (int i = 0; i < result.size(); i++) {
+            if (random.nextDouble() < rate) {
+                result.set(i, paragraph());
+            }
+        }
+        return result;
+    }
+
+    public static Shingleable toShingleable(List<String> paragraphs) {
+        Iterator<String> iterator = paragraphs.iterator();
+        int size = paragraphs.stream().mapToInt(String::length).sum();
+        return new Shingleable() {
+            @Override
+            public int size() {
+                return size;
+            }
+
+            @Override
+            public boolean hasNext() {
+                return iterator.hasNext();
+            }
+
+            @Override
+            public String next() {
+                return iterator.next();
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+    }
+}
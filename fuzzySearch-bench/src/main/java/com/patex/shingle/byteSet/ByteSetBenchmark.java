@@ -0,0 +1,102 @@
+package com.patex.shingle.byteSet;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Add and contains of shingle hash sets: {@link ByteHashSet} uses Node8, Node16 and NodeVar for 8, 16 and
+ * other sizes, {@link LongHashSet} is used for 8 and 16 bytes. Time is per key
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ByteSetBenchmark {
+
+    private static final int KEYS = 100_000;
+
+    @Param({"8", "16", "24"})
+    public int byteArraySize;
+
+    @Param({"ByteHashSet", "LongHashSet"})
+    public String implementation;
+
+    private byte[][] keys;
+    private byte[][] missingKeys;
+    private ByteSet filled;
+
+    @Setup
+    public void setup() {
+        if ("LongHashSet".equals(implementation) && !ByteSetFactory.isLongSetSupported(byteArraySize)) {
+            throw new IllegalStateException("LongHashSet supports only 8 and 16 bytes, skip this combination");
+        }
+        SplittableRandom random = new SplittableRandom(1);
+        keys = randomKeys(random);
+        missingKeys = randomKeys(random);
+        filled = createSet();
+        for (byte[] key : keys) {
+            filled.add(key);
+        }
+    }
+
+    private byte[][] randomKeys(SplittableRandom random) {
+        byte[][] result = new byte[KEYS][byteArraySize];
+        for (byte[] key : result) {
+            for (int i = 0; i < key.length; i += 8) {
+                long value = random.nextLong();
+                for (int j = i; j < Math.min(i + 8, key.length); j++) {
+                    key[j] = (byte) (value >>> (j - i) * 8);
+                }
+            }
+        }
+        return result;
+    }
+
+    private ByteSet createSet() {
+        return "LongHashSet".equals(implementation) ?
+                ByteSetFactory.createLongSet(KEYS, byteArraySize) :
+                ByteSetFactory.createByteSet(KEYS, byteArraySize);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(KEYS)
+    public ByteSet add() {
+        ByteSet set = createSet();
+        for (byte[] key : keys) {
+            set.add(key);
+        }
+        return set;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(KEYS)
+    public void containsHit(Blackhole blackhole) {
+        for (byte[] key : keys) {
+            blackhole.consume(filled.contains(key));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(KEYS)
+    public void containsMiss(Blackhole blackhole) {
+        for (byte[] key : missingKeys) {
+            blackhole.consume(filled.contains(key));
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package com.patex.shingle;
+
+import com.patex.shingle.byteSet.DeltaCodec;
+
+import java.nio.LongBuffer;
+
+/**
+ * Delta encoded {@link SortedShingler} for the second cache tier, should be decoded back to compare
+ */
+class CompressedShingler {
+
+    private final byte[] data;
+    private final int size;
+    private final int byteArraySize;
+    private final long simHash;
+
+    private CompressedShingler(byte[] data, int size, int byteArraySize, long simHash) {
+        this.data = data;
+        this.size = size;
+        this.byteArraySize = byteArraySize;
+        this.simHash = simHash;
+    }
+
+    static CompressedShingler of(SortedShingler shingler) {
+        int stride = shingler.getStride();
+        return new CompressedShingler(DeltaCodec.encode(shingler.toLongArray(), stride),
+                shingler.size(), shingler.getByteArraySize(), shingler.getSimHash());
+    }
+
+    SortedShingler decompress() {
+        long[] hashes = DeltaCodec.decode(data, size, byteArraySize / 8);
+        return new SortedShingler(LongBuffer.wrap(hashes), byteArraySize, null, simHash);
+    }
+
+    int getWeight() {
+        return data.length;
+    }
+}
@@ -1,6 +1,8 @@
 package com.patex.shingle;
 
-import com.patex.shingle.byteSet.ByteHashSet;
+import com.patex.shingle.byteSet.BlockedBloomFilter;
+import com.patex.shingle.byteSet.ByteSet;
+import com.patex.shingle.byteSet.LongHashSet;
 
 import java.util.Iterator;
 
@@ -9,11 +11,48 @@ import java.util.Iterator;
  */
 class LoadedShingler implements Shingler {
 
-    private final ByteHashSet shingles;
+    private final ByteSet shingles;
+    private final BlockedBloomFilter filter;
+    private volatile Long simHash;
 
 
-    LoadedShingler(ByteHashSet shingles) {
+    LoadedShingler(ByteSet shingles) {
+        this(shingles, null, null);
+    }
+
+    private LoadedShingler(ByteSet shingles, BlockedBloomFilter filter, Long simHash) {
         this.shingles = shingles;
+        this.filter = filter;
+        this.simHash = simHash;
+    }
+
+    static LoadedShingler of(ByteSet shingles) {
+        if (shingles instanceof LongHashSet) {
+            return new LongShingler((LongHashSet) shingles);
+        }
+        return new LoadedShingler(shingles);
+    }
+
+    /**
+     * @return shingler over the same set with bloom filter, which answers most misses without set lookup,
+     * the same shingler if bitsPerKey isn't positive
+     */
+    LoadedShingler withFilter(int bitsPerKey) {
+        if (filter != null || bitsPerKey <= 0) {
+            return this;
+        }
+        BlockedBloomFilter newFilter = BlockedBloomFilter.create(size(), bitsPerKey);
+        for (byte[] shingle : shingles) {
+            newFilter.add(BlockedBloomFilter.key(shingle));
+        }
+        return new LoadedShingler(shingles, newFilter, simHash);
+    }
+
+    /**
+     * @return null if shingler doesn't have filter
+     */
+    BlockedBloomFilter getFilter() {
+        return filter;
     }
 
     @Override
@@ -32,7 +71,18 @@ class LoadedShingler implements Shingler {
         return shingles.getByteArraySize();
     }
 
+    @Override
+    public long getSimHash() {
+        if (simHash == null) {
+            simHash = SimHash.of(this);
+        }
+        return simHash;
+    }
+
     public boolean contains(byte[] shingleHash) {
+        if (filter != null && !filter.mightContain(BlockedBloomFilter.key(shingleHash))) {
+            return false;
+        }
         return shingles.contains(shingleHash);
     }
 
@@ -2,43 +2,93 @@ package com.patex.shingle;
 
 
 import com.google.common.collect.EvictingQueue;
-import com.patex.shingle.byteSet.ByteHashSet;
+import com.patex.shingle.byteSet.BottomKSketch;
+import com.patex.shingle.byteSet.ByteSet;
 import com.patex.shingle.byteSet.ByteSetFactory;
+import com.patex.shingle.byteSet.LongArrays;
+import com.patex.shingle.byteSet.LongHashSet;
 
-import java.util.ArrayList;
+import java.util.ArrayDeque;
 import java.util.Arrays;
+import java.util.Deque;
 import java.util.Iterator;
-import java.util.List;
 import java.util.Set;
 import java.util.StringTokenizer;
-import java.util.function.Function;
 import java.util.function.Supplier;
 
 /**
- *
+ * Thread safe, every thread uses its own hasher if hasher keeps state
  */
 class LoadedShinglerFactory {
 
     private final int coef;
-    private final Function<byte[], byte[]> hasher;
+    private final ShingleHasher hasher;
+    private final ThreadLocal<ShingleHasher> threadHasher;
     private final ShinglerConfig config = new ShinglerConfig();
     private final int byteArraySize;
+    private final RollingShingleEngine rollingEngine;
+    private final int sketchSize;
+
+    /**
+     * @param byteArraySize stored part of hash, 0 means whole hash but not more than 16 bytes
+     */
+    LoadedShinglerFactory(int coef, int byteArraySize, Supplier<ShingleHasher> hasherCreator) {
+        this(coef, byteArraySize, hasherCreator, 0);
+    }
 
-    LoadedShinglerFactory(int coef, int byteArraySize,
-                          Supplier<Function<byte[], byte[]>> hasherCreator) {
+    /**
+     * @param sketchSize if positive, only this number of the smallest hashes is kept instead of
+     *                   hashes selected by coef, hash should be 8 or 16 bytes
+     */
+    LoadedShinglerFactory(int coef, int byteArraySize, Supplier<ShingleHasher> hasherCreator, int sketchSize) {
         this.coef = coef;
+        this.sketchSize = sketchSize;
         this.hasher = hasherCreator.get();
-        this.byteArraySize = byteArraySize;
+        this.threadHasher = hasher.isThreadSafe() ? null : ThreadLocal.withInitial(hasherCreator);
+        int hashSize = hasher.getHashSize();
+        if (byteArraySize > hashSize) {
+            throw new IllegalArgumentException("Hasher " + hasher.getName() + " produces only " + hashSize +
+                    " bytes, but " + byteArraySize + " is required");
+        }
+        this.byteArraySize = byteArraySize == 0 ? Math.min(hashSize, 16) : byteArraySize;
+        if (sketchSize > 0 && !ByteSetFactory.isLongSetSupported(this.byteArraySize)) {
+            throw new IllegalArgumentException("Sketch requires 8 or 16 byte hashes, but " + this.byteArraySize +
+                    " is used");
+        }
+        this.rollingEngine = hasher instanceof RollingShingleHasher ? new RollingShingleEngine(coef,
+                config.shingleSize(), config.getDelimiters(), ShinglerConfig.SKIP_WORDS) : null;
     }
 
-    public ByteHashSet createShingles(Shingleable shingleable) {
-        ShingleIterator shingleIterator = new ShingleIterator(shingleable);
-        int skip = config.shingleSize();
-        while (shingleIterator.hasNext() && skip-- > 1) {
-            shingleIterator.next();
+    byte getHasherId() {
+        return hasher.getId();
+    }
+
+    int getByteArraySize() {
+        return byteArraySize;
+    }
+
+    int getSketchSize() {
+        return sketchSize;
+    }
+
+    /**
+     * SimHash fingerprint is computed from the set when it is requested, so repeated shingles vote once
+     */
+    LoadedShingler createShingler(Shingleable shingleable) {
+        return LoadedShingler.of(createShingles(shingleable));
+    }
+
+    public ByteSet createShingles(Shingleable shingleable) {
+        if (sketchSize > 0) {
+            return createSketch(shingleable);
         }
-        int size = shingleable.size() / config.averageWordLength() / 2 / coef;
-        ByteHashSet byteSet = ByteSetFactory.createByteSet(size, this.byteArraySize);
+        if (rollingEngine != null) {
+            ByteSet byteSet = ByteSetFactory.createSet(estimateSize(shingleable), this.byteArraySize);
+            rollingEngine.fill(shingleable, byteSet);
+            return byteSet;
+        }
+        ShingleIterator shingleIterator = iterate(shingleable);
+        ByteSet byteSet = ByteSetFactory.createSet(estimateSize(shingleable), this.byteArraySize);
         while (shingleIterator.hasNext()) {
             byte[] bytes = shingleIterator.next();
             byte d = 0;
@@ -52,6 +102,43 @@ class LoadedShinglerFactory {
         return byteSet;
     }
 
+    /**
+     * @return iterator positioned at the first full shingle
+     */
+    private ShingleIterator iterate(Shingleable shingleable) {
+        ShingleIterator shingleIterator = new ShingleIterator(shingleable,
+                threadHasher == null ? hasher : threadHasher.get());
+        int skip = config.shingleSize();
+        while (shingleIterator.hasNext() && skip-- > 1) {
+            shingleIterator.next();
+        }
+        return shingleIterator;
+    }
+
+    private ByteSet createSketch(Shingleable shingleable) {
+        BottomKSketch sketch = new BottomKSketch(sketchSize, byteArraySize);
+        if (rollingEngine != null) {
+            rollingEngine.fill(shingleable, sketch);
+        } else {
+            ShingleIterator shingleIterator = iterate(shingleable);
+            while (shingleIterator.hasNext()) {
+                byte[] bytes = shingleIterator.next();
+                sketch.add(LongArrays.toLong(bytes, 0), byteArraySize == 16 ? LongArrays.toLong(bytes, 8) : 0);
+            }
+        }
+        long[] hashes = sketch.toLongArray();
+        int stride = byteArraySize / 8;
+        LongHashSet set = ByteSetFactory.createLongSet(hashes.length / stride, byteArraySize);
+        for (int i = 0; i < hashes.length; i += stride) {
+            set.add(hashes[i], stride == 2 ? hashes[i + 1] : 0);
+        }
+        return set;
+    }
+
+    private int estimateSize(Shingleable shingleable) {
+        return shingleable.size() / config.averageWordLength() / 2 / coef;
+    }
+
     //TODO make interface and support multi language
     private static class ShinglerConfig {
 
@@ -83,11 +170,13 @@ class LoadedShinglerFactory {
 
     private class ShingleIterator implements Iterator<byte[]> {
         private final Shingleable shingleable;
-        private final List<String> chunk = new ArrayList<>();
+        private final ShingleHasher hasher;
+        private final Deque<String> chunk = new ArrayDeque<>();
         private final EvictingQueue<String> words = EvictingQueue.create(10);
 
-        ShingleIterator(Shingleable shingleable) {
+        ShingleIterator(Shingleable shingleable, ShingleHasher hasher) {
             this.shingleable = shingleable;
+            this.hasher = hasher;
             loadNextChunk();
         }
 
@@ -98,11 +187,11 @@ class LoadedShinglerFactory {
 
         @Override
         public byte[] next() {
-            words.add(chunk.remove(0));
+            words.add(chunk.poll());
             if (chunk.isEmpty()) {
                 loadNextChunk();
             }
-            return hasher.apply(words.toString().getBytes());
+            return hasher.hash(words.toString().getBytes());
         }
 
         private void loadNextChunk() {
@@ -0,0 +1,27 @@
+package com.patex.shingle;
+
+import com.patex.shingle.byteSet.LongHashSet;
+
+/**
+ * Shingler over {@link LongHashSet}, allows to check shingle hash without byte array
+ */
+class LongShingler extends LoadedShingler {
+
+    private final LongHashSet shingles;
+
+    LongShingler(LongHashSet shingles) {
+        super(shingles);
+        this.shingles = shingles;
+    }
+
+    /**
+     * @param second ignored for 8 byte shingles
+     */
+    public boolean contains(long first, long second) {
+        return shingles.contains(first, second);
+    }
+
+    long[] toLongArray() {
+        return shingles.toLongArray();
+    }
+}
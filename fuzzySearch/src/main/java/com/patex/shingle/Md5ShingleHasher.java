@@ -0,0 +1,39 @@
+package com.patex.shingle;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+class Md5ShingleHasher implements ShingleHasher {
+
+    private final MessageDigest digest;
+
+    Md5ShingleHasher() {
+        try {
+            digest = MessageDigest.getInstance("MD5");
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Override
+    public byte getId() {
+        return ShingleHashers.MD5_ID;
+    }
+
+    @Override
+    public String getName() {
+        return ShingleHashers.MD5;
+    }
+
+    @Override
+    public int getHashSize() {
+        return 16;
+    }
+
+    @Override
+    public byte[] hash(byte[] bytes) {
+        byte[] result = digest.digest(bytes);
+        digest.reset();
+        return result;
+    }
+}
@@ -0,0 +1,59 @@
+package com.patex.shingle;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * MinHash signature of shingle set, probability of equal values at the same position
+ * is the Jaccard similarity of two sets
+ */
+class MinHash {
+
+    private static final long SEED = 0x5A4D_4831L;
+
+    private final long[] seeds;
+
+    MinHash(int signatureSize) {
+        Random random = new Random(SEED);
+        seeds = new long[signatureSize];
+        for (int i = 0; i < signatureSize; i++) {
+            seeds[i] = random.nextLong();
+        }
+    }
+
+    int getSignatureSize() {
+        return seeds.length;
+    }
+
+    long[] signature(Shingler shingler) {
+        long[] signature = new long[seeds.length];
+        Arrays.fill(signature, Long.MAX_VALUE);
+        for (byte[] shingle : shingler) {
+            long value = fold(shingle);
+            for (int i = 0; i < seeds.length; i++) {
+                long h = mix(value ^ seeds[i]);
+                if (h < signature[i]) {
+                    signature[i] = h;
+                }
+            }
+        }
+        return signature;
+    }
+
+    private static long fold(byte[] shingle) {
+        long value = 0;
+        for (byte b : shingle) {
+            value = value * 0x100000001B3L ^ b & 0xff;
+        }
+        return value;
+    }
+
+    static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        h *= 0xC4CEB9FE1A85EC53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
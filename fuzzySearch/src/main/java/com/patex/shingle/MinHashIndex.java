@@ -0,0 +1,190 @@
+package com.patex.shingle;
+
+import com.google.common.collect.HashMultimap;
+import com.google.common.collect.SetMultimap;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Banded LSH index over MinHash signatures.
+ * Objects which have the same signature values in at least one band become candidates,
+ * so search cost depends on the number of similar objects, not on the index size.
+ * <p>
+ * With default 32 bands of 4 rows objects with Jaccard similarity 0.6 are found with probability 0.99,
+ * objects with similarity 0.2 are returned with probability 0.05
+ */
+public class MinHashIndex<T, ID> {
+
+    private static final int MAGIC = 0x4C534831;
+    private static final int DEFAULT_BANDS = 32;
+    private static final int DEFAULT_ROWS = 4;
+
+    private final Function<ID, T> loader;
+    private final int bands;
+    private final int rows;
+    private final MinHash minHash;
+    private final SetMultimap<Long, ID> buckets = HashMultimap.create();
+    private final Map<ID, long[]> signatures = new HashMap<>();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private volatile boolean changed = false;
+
+    /**
+     * @param loader loads indexed object by id, may return null if object shouldn't be compared anymore
+     */
+    public MinHashIndex(Function<ID, T> loader) {
+        this(loader, DEFAULT_BANDS, DEFAULT_ROWS);
+    }
+
+    public MinHashIndex(Function<ID, T> loader, int bands, int rows) {
+        if (bands <= 0 || rows <= 0) {
+            throw new IllegalArgumentException("Illegal bands: " + bands + " or rows: " + rows);
+        }
+        this.loader = loader;
+        this.bands = bands;
+        this.rows = rows;
+        this.minHash = new MinHash(bands * rows);
+    }
+
+    long[] signature(Shingler shingler) {
+        return minHash.signature(shingler);
+    }
+
+    Collection<T> findCandidates(ID id, long[] signature) {
+        Set<ID> candidates = new HashSet<>();
+        lock.readLock().lock();
+        try {
+            for (int band = 0; band < bands; band++) {
+                candidates.addAll(buckets.get(bucketKey(band, signature)));
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        candidates.remove(id);
+        return candidates.stream().map(loader).filter(Objects::nonNull).collect(Collectors.toList());
+    }
+
+    void add(ID id, long[] signature) {
+        lock.writeLock().lock();
+        try {
+            removeUnderLock(id);
+            signatures.put(id, signature);
+            for (int band = 0; band < bands; band++) {
+                buckets.put(bucketKey(band, signature), id);
+            }
+            changed = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    void remove(ID id) {
+        lock.writeLock().lock();
+        try {
+            removeUnderLock(id);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void removeUnderLock(ID id) {
+        long[] signature = signatures.remove(id);
+        if (signature != null) {
+            for (int band = 0; band < bands; band++) {
+                buckets.remove(bucketKey(band, signature), id);
+            }
+            changed = true;
+        }
+    }
+
+    private long bucketKey(int band, long[] signature) {
+        long key = band;
+        for (int i = band * rows; i < (band + 1) * rows; i++) {
+            key = MinHash.mix(key ^ signature[i]);
+        }
+        return key;
+    }
+
+    void clear() {
+        lock.writeLock().lock();
+        try {
+            buckets.clear();
+            signatures.clear();
+            changed = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return signatures.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    boolean isChanged() {
+        return changed;
+    }
+
+    byte[] toBytes() throws IOException {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        lock.readLock().lock();
+        try (ObjectOutputStream oos = new ObjectOutputStream(baos)) {
+            oos.writeInt(MAGIC);
+            oos.writeInt(bands);
+            oos.writeInt(rows);
+            oos.writeInt(signatures.size());
+            for (Map.Entry<ID, long[]> entry : signatures.entrySet()) {
+                oos.writeObject(entry.getKey());
+                for (long value : entry.getValue()) {
+                    oos.writeLong(value);
+                }
+            }
+            changed = false;
+        } finally {
+            lock.readLock().unlock();
+        }
+        return baos.toByteArray();
+    }
+
+    /**
+     * Loads signatures saved by {@link #toBytes()}, index saved with other bands or rows is ignored
+     */
+    @SuppressWarnings("unchecked")
+    boolean load(InputStream is) throws IOException {
+        try (ObjectInputStream ois = new ObjectInputStream(is)) {
+            if (ois.readInt() != MAGIC || ois.readInt() != bands || ois.readInt() != rows) {
+                return false;
+            }
+            int size = ois.readInt();
+            for (int i = 0; i < size; i++) {
+                ID id = (ID) ois.readObject();
+                long[] signature = new long[bands * rows];
+                for (int j = 0; j < signature.length; j++) {
+                    signature[j] = ois.readLong();
+                }
+                add(id, signature);
+            }
+            changed = false;
+            return true;
+        } catch (ClassNotFoundException e) {
+            throw new IOException(e.getMessage(), e);
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package com.patex.shingle;
+
+import com.patex.shingle.byteSet.LongArrays;
+
+/**
+ * MurmurHash3 x64 128 bit variant by Austin Appleby, stateless
+ */
+class Murmur3ShingleHasher implements ShingleHasher {
+
+    private static final long C1 = 0x87C37B91114253D5L;
+    private static final long C2 = 0x4CF5AD432745937FL;
+
+    @Override
+    public byte getId() {
+        return ShingleHashers.MURMUR3_128_ID;
+    }
+
+    @Override
+    public String getName() {
+        return ShingleHashers.MURMUR3_128;
+    }
+
+    @Override
+    public boolean isThreadSafe() {
+        return true;
+    }
+
+    @Override
+    public int getHashSize() {
+        return 16;
+    }
+
+    @Override
+    public byte[] hash(byte[] bytes) {
+        long[] hash = hash128(bytes, 0, bytes.length, 0);
+        byte[] result = new byte[16];
+        LongArrays.putLong(hash[0], result, 0);
+        LongArrays.putLong(hash[1], result, 8);
+        return result;
+    }
+
+    static long[] hash128(byte[] data, int offset, int length, long seed) {
+        long h1 = seed;
+        long h2 = seed;
+        int end = offset + length;
+        int position = offset;
+        for (; position + 16 <= end; position += 16) {
+            long k1 = XxHash64ShingleHasher.getLong(data, position);
+            long k2 = XxHash64ShingleHasher.getLong(data, position + 8);
+            h1 ^= mixK1(k1);
+            h1 = Long.rotateLeft(h1, 27);
+            h1 += h2;
+            h1 = h1 * 5 + 0x52DCE729;
+            h2 ^= mixK2(k2);
+            h2 = Long.rotateLeft(h2, 31);
+            h2 += h1;
+            h2 = h2 * 5 + 0x38495AB5;
+        }
+        int tail = end - position;
+        if (tail > 0) {
+            long k1 = 0;
+            long k2 = 0;
+            for (int i = tail - 1; i >= 8; i--) {
+                k2 ^= (data[position + i] & 0xFFL) << ((i - 8) * 8);
+            }
+            for (int i = Math.min(tail, 8) - 1; i >= 0; i--) {
+                k1 ^= (data[position + i] & 0xFFL) << (i * 8);
+            }
+            h2 ^= mixK2(k2);
+            h1 ^= mixK1(k1);
+        }
+        h1 ^= length;
+        h2 ^= length;
+        h1 += h2;
+        h2 += h1;
+        h1 = fmix64(h1);
+        h2 = fmix64(h2);
+        h1 += h2;
+        h2 += h1;
+        return new long[]{h1, h2};
+    }
+
+    private static long mixK1(long k1) {
+        k1 *= C1;
+        k1 = Long.rotateLeft(k1, 31);
+        return k1 * C2;
+    }
+
+    private static long mixK2(long k2) {
+        k2 *= C2;
+        k2 = Long.rotateLeft(k2, 33);
+        return k2 * C1;
+    }
+
+    private static long fmix64(long k) {
+        k ^= k >>> 33;
+        k *= 0xFF51AFD7ED558CCDL;
+        k ^= k >>> 33;
+        k *= 0xC4CEB9FE1A85EC53L;
+        k ^= k >>> 33;
+        return k;
+    }
+}
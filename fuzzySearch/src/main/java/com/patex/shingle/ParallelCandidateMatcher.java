@@ -0,0 +1,100 @@
+package com.patex.shingle;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
+
+/**
+ * Checks candidates on shared executor.
+ * One search takes not more than {@code parallelism} tasks, so search with many candidates
+ * doesn't starve other searches. Tasks take candidates one by one from the common counter,
+ * so they stop taking new candidates as soon as the first similar one is found.
+ */
+class ParallelCandidateMatcher<T> {
+
+    private final ExecutorService executor;
+    private final int parallelism;
+
+    ParallelCandidateMatcher(ExecutorService executor, int parallelism) {
+        this.executor = executor;
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * @return any similar candidate, not necessary the first one in the list
+     */
+    Optional<T> findAny(List<T> candidates, Predicate<T> similar) {
+        int hit = evaluate(candidates, similar, new boolean[candidates.size()], true);
+        return hit < 0 ? Optional.empty() : Optional.of(candidates.get(hit));
+    }
+
+    /**
+     * @return all similar candidates in the list order
+     */
+    List<T> findAll(List<T> candidates, Predicate<T> similar) {
+        boolean[] results = new boolean[candidates.size()];
+        evaluate(candidates, similar, results, false);
+        List<T> found = new ArrayList<>();
+        for (int i = 0; i < results.length; i++) {
+            if (results[i]) {
+                found.add(candidates.get(i));
+            }
+        }
+        return found;
+    }
+
+    private int evaluate(List<T> candidates, Predicate<T> similar, boolean[] results, boolean firstOnly) {
+        int size = candidates.size();
+        AtomicInteger next = new AtomicInteger();
+        AtomicBoolean stop = new AtomicBoolean();
+        CompletionService<Integer> completionService = new ExecutorCompletionService<>(executor);
+        List<Future<Integer>> futures = new ArrayList<>();
+        int workers = Math.min(parallelism, size);
+        try {
+            for (int w = 0; w < workers; w++) {
+                futures.add(completionService.submit(() -> {
+                    int hit = -1;
+                    while (!stop.get()) {
+                        int i = next.getAndIncrement();
+                        if (i >= size) {
+                            break;
+                        }
+                        if (similar.test(candidates.get(i))) {
+                            results[i] = true;
+                            if (hit < 0) {
+                                hit = i;
+                            }
+                            if (firstOnly) {
+                                stop.set(true);
+                            }
+                        }
+                    }
+                    return hit;
+                }));
+            }
+            for (int w = 0; w < workers; w++) {
+                int hit = completionService.take().get();
+                if (firstOnly && hit >= 0) {
+                    return hit;
+                }
+            }
+            return -1;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e.getMessage(), e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException(e.getMessage(), e);
+        } finally {
+            stop.set(true);
+            futures.forEach(future -> future.cancel(false));
+        }
+    }
+}
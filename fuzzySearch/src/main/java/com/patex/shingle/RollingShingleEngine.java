@@ -0,0 +1,133 @@
+package com.patex.shingle;
+
+import com.patex.shingle.byteSet.BottomKSketch;
+import com.patex.shingle.byteSet.ByteSet;
+import com.patex.shingle.byteSet.ByteSetFactory;
+import com.patex.shingle.byteSet.LongArrays;
+import com.patex.shingle.byteSet.LongHashSet;
+
+import java.util.BitSet;
+import java.util.Collection;
+
+/**
+ * Shingle generation without per word allocations.
+ * Text is tokenized in place, hashes of last words are kept in ring buffers and combined by
+ * polynomial rolling hash, so every next shingle hash costs O(1) regardless of shingle size.
+ * Two lanes with independent word hashes and bases give 16 byte shingle hash
+ */
+class RollingShingleEngine {
+
+    private static final long BASE1 = 0x9E3779B97F4A7C15L;
+    private static final long BASE2 = 0xC2B2AE3D27D4EB4FL;
+
+    private final int coef;
+    private final int shingleSize;
+    private final BitSet delimiters = new BitSet();
+    private final LongHashSet skipWords;
+    private final long power1;
+    private final long power2;
+
+    RollingShingleEngine(int coef, int shingleSize, String delimiters, Collection<String> skipWords) {
+        this.coef = coef;
+        this.shingleSize = shingleSize;
+        for (int i = 0; i < delimiters.length(); i++) {
+            this.delimiters.set(delimiters.charAt(i));
+        }
+        this.skipWords = ByteSetFactory.createLongSet(skipWords.size(), 8);
+        for (String word : skipWords) {
+            this.skipWords.add(RollingShingleHasher.wordHash(word, 0, word.length(), RollingShingleHasher.SEED1), 0);
+        }
+        long p1 = 1;
+        long p2 = 1;
+        for (int i = 1; i < shingleSize; i++) {
+            p1 *= BASE1;
+            p2 *= BASE2;
+        }
+        this.power1 = p1;
+        this.power2 = p2;
+    }
+
+    void fill(Shingleable shingleable, ByteSet byteSet) {
+        fill(shingleable, byteSet, null);
+    }
+
+    /**
+     * Every shingle is offered to sketch, coef isn't used
+     */
+    void fill(Shingleable shingleable, BottomKSketch sketch) {
+        fill(shingleable, null, sketch);
+    }
+
+    private void fill(Shingleable shingleable, ByteSet byteSet, BottomKSketch sketch) {
+        LongHashSet longSet = byteSet instanceof LongHashSet ? (LongHashSet) byteSet : null;
+        long[] words1 = new long[shingleSize];
+        long[] words2 = new long[shingleSize];
+        long h1 = 0;
+        long h2 = 0;
+        int slot = 0;
+        int count = 0;
+        while (shingleable.hasNext()) {
+            String text = shingleable.next();
+            int length = text.length();
+            int start = 0;
+            while (start < length) {
+                while (start < length && delimiters.get(text.charAt(start))) {
+                    start++;
+                }
+                int end = start;
+                while (end < length && !delimiters.get(text.charAt(end))) {
+                    end++;
+                }
+                if (start == end) {
+                    break;
+                }
+                long w1 = RollingShingleHasher.wordHash(text, start, end, RollingShingleHasher.SEED1);
+                if (skipWords.contains(w1, 0)) {
+                    start = end;
+                    continue;
+                }
+                long w2 = RollingShingleHasher.wordHash(text, start, end, RollingShingleHasher.SEED2);
+                start = end;
+                if (count == shingleSize) {
+                    h1 -= words1[slot] * power1;
+                    h2 -= words2[slot] * power2;
+                } else {
+                    count++;
+                }
+                h1 = h1 * BASE1 + w1;
+                h2 = h2 * BASE2 + w2;
+                words1[slot] = w1;
+                words2[slot] = w2;
+                slot = slot + 1 == shingleSize ? 0 : slot + 1;
+                if (count == shingleSize) {
+                    long first = MinHash.mix(h1);
+                    long second = MinHash.mix(h2);
+                    if (sketch == null) {
+                        add(byteSet, longSet, first, second);
+                    } else {
+                        sketch.add(first, second);
+                    }
+                }
+            }
+        }
+    }
+
+    private void add(ByteSet byteSet, LongHashSet longSet, long first, long second) {
+        long x = first ^ second;
+        x ^= x >>> 32;
+        x ^= x >>> 16;
+        x ^= x >>> 8;
+        byte d = (byte) x;
+        if (d % coef != 0) {
+            return;
+        }
+        if (longSet != null) {
+            longSet.add(first, second);
+        } else {
+            byte[] bytes = new byte[16];
+            LongArrays.putLong(first, bytes, 0);
+            LongArrays.putLong(second, bytes, 8);
+            byteSet.add(bytes);
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package com.patex.shingle;
+
+import com.patex.shingle.byteSet.LongArrays;
+
+/**
+ * Hasher of {@link RollingShingleEngine}: every word is hashed once into two 64 bit lanes,
+ * shingle hash is combined from word hashes, so {@link #hash(byte[])} is the hash of a single word
+ */
+class RollingShingleHasher implements ShingleHasher {
+
+    static final long SEED1 = 0x52_4F_4C_4C_31L;
+    static final long SEED2 = 0x52_4F_4C_4C_32L;
+    private static final long PRIME1 = 0x100000001B3L;
+    private static final long PRIME2 = 0x9E3779B97F4A7C15L;
+
+    @Override
+    public byte getId() {
+        return ShingleHashers.ROLLING_ID;
+    }
+
+    @Override
+    public String getName() {
+        return ShingleHashers.ROLLING;
+    }
+
+    @Override
+    public boolean isThreadSafe() {
+        return true;
+    }
+
+    @Override
+    public int getHashSize() {
+        return 16;
+    }
+
+    @Override
+    public byte[] hash(byte[] bytes) {
+        long h1 = SEED1;
+        long h2 = SEED2;
+        for (byte b : bytes) {
+            h1 = (h1 ^ b & 0xff) * PRIME1;
+            h2 = (h2 ^ b & 0xff) * PRIME2;
+        }
+        byte[] result = new byte[16];
+        LongArrays.putLong(MinHash.mix(h1), result, 0);
+        LongArrays.putLong(MinHash.mix(h2), result, 8);
+        return result;
+    }
+
+    /**
+     * Hash of lower cased chars from {@code from} inclusive to {@code to} exclusive, lane is selected by seed
+     */
+    static long wordHash(CharSequence text, int from, int to, long seed) {
+        long prime = seed == SEED1 ? PRIME1 : PRIME2;
+        long h = seed;
+        for (int i = from; i < to; i++) {
+            h = (h ^ Character.toLowerCase(text.charAt(i))) * prime;
+        }
+        return MinHash.mix(h);
+    }
+}
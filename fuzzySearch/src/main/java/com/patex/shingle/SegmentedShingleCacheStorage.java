@@ -0,0 +1,599 @@
+package com.patex.shingle;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.ToLongFunction;
+import java.util.zip.CRC32;
+
+/**
+ * Shingle cache in a few big append only segment files instead of a file per object.
+ * <p>
+ * Every record is framed as payload length, object id, CRC32 of id and payload, then payload.
+ * Removal appends a tombstone frame with length -1. Location of the last record of every id
+ * is kept in memory and saved to index file by {@link #flush()}. On start the index file is loaded
+ * and segments are scanned from the indexed end, so records written after the last flush are recovered,
+ * and torn frame at the end of a segment is truncated. Broken index file causes scan of all segments.
+ * <p>
+ * Old segments where removed and overwritten records take more than half of the space are compacted
+ * by {@link #flush()}: live records and tombstones are copied to the current segment, index without
+ * old segment is saved and old segment file is deleted. Segment older than the last indexed one, which
+ * isn't in index, is left by interrupted compaction and is deleted on start. Tombstones are dropped only
+ * with the oldest segment, so scan of all segments doesn't bring removed records back.
+ * <p>
+ * Records are read from memory mapped segments, mapping of a segment is extended when a record
+ * appended after it is read.
+ */
+public class SegmentedShingleCacheStorage<T> implements ShingleCacheStorage<T>, Closeable {
+
+    private static final Logger log = LoggerFactory.getLogger(SegmentedShingleCacheStorage.class);
+
+    private static final int FRAME_HEADER_SIZE = 16;
+    private static final int TOMBSTONE = -1;
+    private static final int INDEX_MAGIC = 0x53474958;
+    private static final long DEFAULT_SEGMENT_SIZE = 256L << 20;
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".dat";
+    private static final String INDEX_FILE_NAME = "segments.index";
+    private static final String SEARCH_INDEX_FILE_NAME = "minhash.index";
+    private static final String SIMHASH_INDEX_FILE_NAME = "simhash.index";
+
+    private final Path folder;
+    private final ToLongFunction<T> idFunc;
+    private final ShingleCacheStorage<T> legacy;
+    private final long segmentSize;
+    private final TreeMap<Integer, Segment> segments = new TreeMap<>();
+    private final Map<Long, Location> locations = new HashMap<>();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private Segment active;
+    private boolean changed = false;
+
+    public SegmentedShingleCacheStorage(Path folder, ToLongFunction<T> idFunc) throws IOException {
+        this(folder, idFunc, null, DEFAULT_SEGMENT_SIZE);
+    }
+
+    /**
+     * @param legacy      storage used before, records missed in segments are moved from it on the first access
+     * @param segmentSize segment is mapped as a whole, so it can't be bigger than 2 GB
+     */
+    public SegmentedShingleCacheStorage(Path folder, ToLongFunction<T> idFunc, ShingleCacheStorage<T> legacy,
+                                        long segmentSize) throws IOException {
+        if (segmentSize > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Shingle segment size " + segmentSize + " is bigger than 2 GB");
+        }
+        this.folder = folder;
+        this.idFunc = idFunc;
+        this.legacy = legacy;
+        this.segmentSize = segmentSize;
+        Files.createDirectories(folder);
+        open();
+    }
+
+    private void open() throws IOException {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(folder, SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                int number = Integer.parseInt(name.substring(SEGMENT_PREFIX.length(),
+                        name.length() - SEGMENT_SUFFIX.length()));
+                segments.put(number, new Segment(number, file));
+            }
+        }
+        Map<Integer, Long> indexedEnds = loadIndex();
+        if (indexedEnds == null) {
+            locations.clear();
+            indexedEnds = new HashMap<>();
+        }
+        int lastIndexed = indexedEnds.keySet().stream().mapToInt(Integer::intValue).max().orElse(-1);
+        Iterator<Segment> iterator = segments.values().iterator();
+        while (iterator.hasNext()) {
+            Segment segment = iterator.next();
+            if (segment.number < lastIndexed && !indexedEnds.containsKey(segment.number)) {
+                log.warn("Deleting compacted shingle segment {}", segment.file);
+                segment.channel.close();
+                Files.delete(segment.file);
+                iterator.remove();
+            } else {
+                scan(segment, indexedEnds.getOrDefault(segment.number, 0L));
+            }
+        }
+        for (Location location : locations.values()) {
+            segments.get(location.segment).liveBytes += FRAME_HEADER_SIZE + location.length;
+        }
+        active = segments.isEmpty() ? createSegment(0) : segments.lastEntry().getValue();
+    }
+
+    /**
+     * @return indexed end of every segment or null if index is missed, broken or doesn't match segments
+     */
+    private Map<Integer, Long> loadIndex() throws IOException {
+        Path indexFile = folder.resolve(INDEX_FILE_NAME);
+        if (!Files.exists(indexFile)) {
+            return null;
+        }
+        byte[] bytes = Files.readAllBytes(indexFile);
+        if (bytes.length < 4) {
+            return null;
+        }
+        CRC32 crc = new CRC32();
+        crc.update(bytes, 0, bytes.length - 4);
+        if ((int) crc.getValue() != ByteBuffer.wrap(bytes).getInt(bytes.length - 4)) {
+            log.warn("Broken shingle segments index {}", indexFile);
+            return null;
+        }
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes))) {
+            if (in.readInt() != INDEX_MAGIC) {
+                return null;
+            }
+            Map<Integer, Long> ends = new HashMap<>();
+            int segmentCount = in.readInt();
+            for (int i = 0; i < segmentCount; i++) {
+                int number = in.readInt();
+                long end = in.readLong();
+                Segment segment = segments.get(number);
+                if (segment == null || segment.end < end) {
+                    log.warn("Shingle segments index {} doesn't match segments", indexFile);
+                    return null;
+                }
+                ends.put(number, end);
+            }
+            int size = in.readInt();
+            for (int i = 0; i < size; i++) {
+                long id = in.readLong();
+                Location location = new Location(in.readInt(), in.readLong(), in.readInt());
+                if (!ends.containsKey(location.segment)) {
+                    return null;
+                }
+                locations.put(id, location);
+            }
+            return ends;
+        }
+    }
+
+    private void scan(Segment segment, long from) throws IOException {
+        long position = from;
+        ByteBuffer header = ByteBuffer.allocate(FRAME_HEADER_SIZE);
+        while (position < segment.end) {
+            header.clear();
+            if (!readFully(segment.channel, header, position)) {
+                break;
+            }
+            int length = header.getInt(0);
+            long id = header.getLong(4);
+            if (length == TOMBSTONE) {
+                locations.remove(id);
+                position += FRAME_HEADER_SIZE;
+                continue;
+            }
+            if (length < 0 || position + FRAME_HEADER_SIZE + length > segment.end) {
+                break;
+            }
+            ByteBuffer payload = ByteBuffer.allocate(length);
+            if (!readFully(segment.channel, payload, position + FRAME_HEADER_SIZE) ||
+                    crc(id, payload.array()) != header.getInt(12)) {
+                break;
+            }
+            locations.put(id, new Location(segment.number, position, length));
+            position += FRAME_HEADER_SIZE + length;
+        }
+        if (position < segment.end) {
+            log.warn("Truncated broken shingle segment {}", segment.file);
+            segment.channel.truncate(position);
+            segment.end = position;
+        }
+    }
+
+    @Override
+    public InputStream load(T t) {
+        try {
+            ByteBuffer buffer = map(t);
+            if (buffer == null) {
+                return null;
+            }
+            byte[] bytes = new byte[buffer.remaining()];
+            buffer.get(bytes);
+            return new ByteArrayInputStream(bytes);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * @return read only slice of the mapped segment, null if segment is cut
+     */
+    @Override
+    public ByteBuffer map(T t) throws IOException {
+        long id = idFunc.applyAsLong(t);
+        lock.readLock().lock();
+        try {
+            Location location = locations.get(id);
+            if (location != null) {
+                Segment segment = segments.get(location.segment);
+                long start = location.offset + FRAME_HEADER_SIZE;
+                MappedByteBuffer mapped = segment.map(start + location.length);
+                if (mapped == null) {
+                    log.warn("Shingle segment {} is shorter than record {}", segment.file, id);
+                    return null;
+                }
+                ByteBuffer buffer = mapped.duplicate();
+                buffer.limit((int) start + location.length).position((int) start);
+                return buffer.slice();
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return importLegacy(t);
+    }
+
+    private ByteBuffer importLegacy(T t) throws IOException {
+        if (legacy == null) {
+            return null;
+        }
+        try (InputStream is = legacy.load(t)) {
+            if (is == null) {
+                return null;
+            }
+            byte[] bytes = is.readAllBytes();
+            save(bytes, t);
+            legacy.remove(t);
+            return ByteBuffer.wrap(bytes).asReadOnlyBuffer();
+        }
+    }
+
+    @Override
+    public void save(byte[] bytes, T t) {
+        long id = idFunc.applyAsLong(t);
+        lock.writeLock().lock();
+        try {
+            append(id, bytes);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void remove(T t) {
+        long id = idFunc.applyAsLong(t);
+        lock.writeLock().lock();
+        try {
+            if (locations.containsKey(id)) {
+                append(id, null);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+        if (legacy != null) {
+            legacy.remove(t);
+        }
+    }
+
+    /**
+     * @param bytes record or null for tombstone
+     */
+    private void append(long id, byte[] bytes) throws IOException {
+        int length = bytes == null ? 0 : bytes.length;
+        if (active.end > 0 && active.end + FRAME_HEADER_SIZE + length > segmentSize) {
+            active = createSegment(active.number + 1);
+        }
+        ByteBuffer frame = ByteBuffer.allocate(FRAME_HEADER_SIZE + length);
+        frame.putInt(bytes == null ? TOMBSTONE : length).putLong(id).putInt(bytes == null ? 0 : crc(id, bytes));
+        if (bytes != null) {
+            frame.put(bytes);
+        }
+        frame.flip();
+        long position = active.end;
+        while (frame.hasRemaining()) {
+            position += active.channel.write(frame, position);
+        }
+        Location old = bytes == null ? locations.remove(id) : locations.put(id,
+                new Location(active.number, active.end, length));
+        if (old != null) {
+            segments.get(old.segment).liveBytes -= FRAME_HEADER_SIZE + old.length;
+        }
+        if (bytes != null) {
+            active.liveBytes += FRAME_HEADER_SIZE + length;
+        }
+        active.end = position;
+        changed = true;
+    }
+
+    private Segment createSegment(int number) throws IOException {
+        Segment segment = new Segment(number, folder.resolve(String.format("%s%05d%s", SEGMENT_PREFIX, number,
+                SEGMENT_SUFFIX)));
+        segments.put(number, segment);
+        return segment;
+    }
+
+    /**
+     * Compacts old segments and saves index
+     */
+    @Override
+    public void flush() throws IOException {
+        lock.writeLock().lock();
+        try {
+            List<Segment> sparse = new ArrayList<>();
+            for (Segment segment : segments.values()) {
+                if (segment != active && segment.liveBytes * 2 < segment.end) {
+                    sparse.add(segment);
+                }
+            }
+            for (Segment segment : sparse) {
+                copyLive(segment, segment.number != segments.firstKey());
+            }
+            if (!changed) {
+                return;
+            }
+            for (Segment segment : sparse) {
+                segments.remove(segment.number);
+            }
+            for (Segment segment : segments.values()) {
+                segment.channel.force(false);
+            }
+            saveIndex();
+            for (Segment segment : sparse) {
+                segment.channel.close();
+                Files.delete(segment.file);
+            }
+            changed = false;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * @param keepTombstones if false, tombstones of the segment are dropped,
+     *                       it is safe only if there are no older segments
+     */
+    private void copyLive(Segment segment, boolean keepTombstones) throws IOException {
+        if (keepTombstones) {
+            for (long id : readTombstones(segment)) {
+                if (!locations.containsKey(id)) {
+                    append(id, null);
+                }
+            }
+        }
+        List<Map.Entry<Long, Location>> live = new ArrayList<>();
+        for (Map.Entry<Long, Location> entry : locations.entrySet()) {
+            if (entry.getValue().segment == segment.number) {
+                live.add(entry);
+            }
+        }
+        for (Map.Entry<Long, Location> entry : live) {
+            Location location = entry.getValue();
+            ByteBuffer payload = ByteBuffer.allocate(location.length);
+            if (!readFully(segment.channel, payload, location.offset + FRAME_HEADER_SIZE)) {
+                throw new IOException("Shingle segment " + segment.file + " is shorter than record " +
+                        entry.getKey());
+            }
+            append(entry.getKey(), payload.array());
+        }
+        changed = true;
+    }
+
+    private Set<Long> readTombstones(Segment segment) throws IOException {
+        Set<Long> tombstones = new HashSet<>();
+        ByteBuffer header = ByteBuffer.allocate(FRAME_HEADER_SIZE);
+        long position = 0;
+        while (position < segment.end) {
+            header.clear();
+            if (!readFully(segment.channel, header, position)) {
+                throw new IOException("Shingle segment " + segment.file + " is shorter than its end " +
+                        segment.end);
+            }
+            int length = header.getInt(0);
+            if (length == TOMBSTONE) {
+                tombstones.add(header.getLong(4));
+                position += FRAME_HEADER_SIZE;
+            } else {
+                position += FRAME_HEADER_SIZE + length;
+            }
+        }
+        return tombstones;
+    }
+
+    private void saveIndex() throws IOException {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(baos)) {
+            out.writeInt(INDEX_MAGIC);
+            out.writeInt(segments.size());
+            for (Segment segment : segments.values()) {
+                out.writeInt(segment.number);
+                out.writeLong(segment.end);
+            }
+            out.writeInt(locations.size());
+            for (Map.Entry<Long, Location> entry : locations.entrySet()) {
+                Location location = entry.getValue();
+                out.writeLong(entry.getKey());
+                out.writeInt(location.segment);
+                out.writeLong(location.offset);
+                out.writeInt(location.length);
+            }
+            CRC32 crc = new CRC32();
+            crc.update(baos.toByteArray());
+            out.writeInt((int) crc.getValue());
+        }
+        writeAtomically(INDEX_FILE_NAME, baos.toByteArray());
+    }
+
+    /**
+     * File is written to temporary one, which is forced to disk and renamed,
+     * so the file is either old or new one whole even after power loss
+     */
+    private void writeAtomically(String name, byte[] bytes) throws IOException {
+        Path tmp = folder.resolve(name + ".tmp");
+        try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buffer = ByteBuffer.wrap(bytes);
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(true);
+        }
+        Files.move(tmp, folder.resolve(name), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Index saved by legacy storage is moved to the folder of segments
+     */
+    @Override
+    public InputStream loadSearchIndex() {
+        InputStream index = loadFile(SEARCH_INDEX_FILE_NAME);
+        if (index != null || legacy == null) {
+            return index;
+        }
+        try (InputStream legacyIndex = legacy.loadSearchIndex()) {
+            if (legacyIndex == null) {
+                return null;
+            }
+            byte[] bytes = legacyIndex.readAllBytes();
+            writeAtomically(SEARCH_INDEX_FILE_NAME, bytes);
+            legacy.removeSearchIndex();
+            return new ByteArrayInputStream(bytes);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void saveSearchIndex(byte[] bytes) {
+        saveFile(SEARCH_INDEX_FILE_NAME, bytes);
+    }
+
+    @Override
+    public InputStream loadSimHashIndex() {
+        return loadFile(SIMHASH_INDEX_FILE_NAME);
+    }
+
+    @Override
+    public void saveSimHashIndex(byte[] bytes) {
+        saveFile(SIMHASH_INDEX_FILE_NAME, bytes);
+    }
+
+    private InputStream loadFile(String name) {
+        Path index = folder.resolve(name);
+        try {
+            return Files.exists(index) ? Files.newInputStream(index) : null;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void saveFile(String name, byte[] bytes) {
+        try {
+            writeAtomically(name, bytes);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return locations.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    int getSegmentCount() {
+        return segments.size();
+    }
+
+    @Override
+    public void close() throws IOException {
+        flush();
+        for (Segment segment : segments.values()) {
+            segment.channel.close();
+        }
+    }
+
+    private static int crc(long id, byte[] payload) {
+        CRC32 crc = new CRC32();
+        crc.update(ByteBuffer.allocate(8).putLong(0, id));
+        crc.update(payload);
+        return (int) crc.getValue();
+    }
+
+    private static boolean readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position);
+            if (read < 0) {
+                return false;
+            }
+            position += read;
+        }
+        return true;
+    }
+
+    private static class Segment {
+        private final int number;
+        private final Path file;
+        private final FileChannel channel;
+        private long end;
+        private long liveBytes = 0;
+        private MappedByteBuffer mapped;
+
+        Segment(int number, Path file) throws IOException {
+            this.number = number;
+            this.file = file;
+            this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE);
+            this.end = channel.size();
+        }
+
+        /**
+         * @return mapping of the segment which contains at least {@code size} bytes, null if file is shorter
+         */
+        synchronized MappedByteBuffer map(long size) throws IOException {
+            if (mapped == null || mapped.capacity() < size) {
+                long fileSize = channel.size();
+                if (fileSize < size) {
+                    return null;
+                }
+                mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, fileSize);
+            }
+            return mapped;
+        }
+    }
+
+    private static class Location {
+        private final int segment;
+        private final long offset;
+        private final int length;
+
+        Location(int segment, long offset, int length) {
+            this.segment = segment;
+            this.offset = offset;
+            this.length = length;
+        }
+    }
+}
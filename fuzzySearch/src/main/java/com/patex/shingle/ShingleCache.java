@@ -1,13 +1,48 @@
 package com.patex.shingle;
 
-import com.patex.shingle.byteSet.ByteHashSet;
+import com.patex.shingle.byteSet.BlockedBloomFilter;
+import com.patex.shingle.byteSet.ByteSet;
 import com.patex.shingle.byteSet.ByteSetFactory;
+import com.patex.shingle.byteSet.DeltaCodec;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
 import java.util.Optional;
+import java.util.OptionalInt;
+import java.util.zip.CRC32;
 
+/**
+ * Cache record: magic, version, shingles count, byte array size, hasher id, bloom filter size in longs,
+ * bloom filter hash count, SimHash fingerprint, sketch size, encoding, coef, CRC32 of payload and payload:
+ * sorted hashes followed by bloom filter longs. Hashes are encoded by {@link DeltaCodec} or kept as sorted longs,
+ * which are compared straight from the mapped record. Filter size is 0 if record doesn't have filter,
+ * sketch size is 0 if record has all shingles, otherwise it has only sketch size of the smallest hashes.
+ * Coef is the sampling coef of shingles, sketches are taken from all shingles, so their coef is 1.
+ * Records of the whole set and bigger sketches are cut when cache is used for smaller sketches,
+ * records sampled with coef above 1 aren't cut, because a prefix of them isn't a sketch.
+ * Records without magic are in old format: shingles count, byte array size and unsorted hashes created by MD5,
+ * old format is still used for byte array size which can't be stored as longs.
+ * Old format records are rewritten in the current format when they are read
+ */
 class ShingleCache<T> {
 
+    private static final Logger log = LoggerFactory.getLogger(ShingleCache.class);
+    private static final int MAGIC = 0xCA5E5A1E; // negative, so can't be shingles count of old format
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 52;
+    private static final int DELTA_ENCODING = 0;
+    private static final int RAW_ENCODING = 1;
+
+    private final byte hasherId;
+    private final int byteArraySize;
+    private final int bloomBitsPerKey;
+    private final int sketchSize;
+    private final boolean compressed;
+    private final int coef;
+
     private ShingleCacheStorage<T> storage= new ShingleCacheStorage<>() {
         @Override
         public InputStream load(T t) {
@@ -21,6 +56,54 @@ class ShingleCache<T> {
     };
 
     public ShingleCache() {
+        this(ShingleHashers.MD5_ID);
+    }
+
+    public ShingleCache(byte hasherId) {
+        this(hasherId, 0);
+    }
+
+    /**
+     * @param byteArraySize size of hashes used for comparison, longer cached hashes are truncated,
+     *                      shorter ones are ignored, 0 means any size
+     */
+    public ShingleCache(byte hasherId, int byteArraySize) {
+        this(hasherId, byteArraySize, 0);
+    }
+
+    /**
+     * @param bloomBitsPerKey if positive, records are saved with bloom filter and records without it are rewritten
+     */
+    public ShingleCache(byte hasherId, int byteArraySize, int bloomBitsPerKey) {
+        this(hasherId, byteArraySize, bloomBitsPerKey, 0);
+    }
+
+    /**
+     * @param sketchSize if positive, shinglers are bottom-k sketches of this size
+     */
+    public ShingleCache(byte hasherId, int byteArraySize, int bloomBitsPerKey, int sketchSize) {
+        this(hasherId, byteArraySize, bloomBitsPerKey, sketchSize, true);
+    }
+
+    /**
+     * @param compressed if false, records are saved with sorted longs instead of delta encoded hashes
+     *                   and records with other encoding are rewritten
+     */
+    public ShingleCache(byte hasherId, int byteArraySize, int bloomBitsPerKey, int sketchSize, boolean compressed) {
+        this(hasherId, byteArraySize, bloomBitsPerKey, sketchSize, compressed, 1);
+    }
+
+    /**
+     * @param coef sampling coef of saved shinglers, records of the whole set with other coef are ignored
+     */
+    public ShingleCache(byte hasherId, int byteArraySize, int bloomBitsPerKey, int sketchSize, boolean compressed,
+                        int coef) {
+        this.hasherId = hasherId;
+        this.byteArraySize = byteArraySize;
+        this.bloomBitsPerKey = bloomBitsPerKey;
+        this.sketchSize = sketchSize;
+        this.compressed = compressed;
+        this.coef = coef;
     }
 
     public ShingleCacheStorage<T> getStorage() {
@@ -32,57 +115,186 @@ class ShingleCache<T> {
     }
 
     public Optional<Shingler> getFromCache(T o) throws IOException {
-        try(InputStream is = storage.load(o)) {
-            if (is == null) {
+        ByteBuffer buffer = storage.map(o);
+        if (buffer == null || buffer.limit() < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+            try (InputStream is = storage.load(o)) {
+                if (is == null) {
+                    return Optional.empty();
+                }
+                buffer = ByteBuffer.wrap(is.readAllBytes());
+            }
+        }
+        Optional<Shingler> shingler;
+        boolean current = false;
+        if (buffer.limit() >= 8 && buffer.getInt(0) == MAGIC) {
+            shingler = readRecord(buffer);
+            current = shingler.isPresent() && (buffer.getInt(40) == DELTA_ENCODING) == compressed;
+        } else if (hasherId == ShingleHashers.MD5_ID) {
+            shingler = readOldFormat(buffer);
+        } else {
+            return Optional.empty();
+        }
+        if (!shingler.isPresent()) {
+            return shingler;
+        }
+        Shingler result = shingler.get();
+        if (byteArraySize != 0 && result.getByteArraySize() != byteArraySize) {
+            SortedShingler sorted = SortedShingler.of(result);
+            if (byteArraySize != 8 || sorted == null || sorted.getByteArraySize() != 16) {
                 return Optional.empty();
             }
-            int size = readInt(is);
-            int byteArrayLength = readInt(is);
-            ByteHashSet set = ByteSetFactory.createByteSet(size, byteArrayLength);
-            byte buffer[] = new byte[128 * 128];
-            int bufferReadOff = 0;
-            while (true) {
-                int readBytesCount = is.read(buffer, bufferReadOff, buffer.length - bufferReadOff);
-                if (readBytesCount == -1) {
-                    if (bufferReadOff != 0) {
-                        System.out.println("warning broken cache");
-                        return Optional.empty();
-                    }
-                    break;
-                }
-                readBytesCount += bufferReadOff;
-                int position = 0;
-                while (readBytesCount - position >= byteArrayLength) {
-                    byte[] shingle = new byte[byteArrayLength];
-                    for (int i = 0; i < byteArrayLength; i++) {
-                        shingle[i] = buffer[position++];
-                    }
-                    set.add(shingle);
-                }
-                if (position < readBytesCount) {
-                    int i = 0;
-                    for (; i < byteArrayLength && position < readBytesCount; i++) {
-                        buffer[i] = buffer[position++];
-                    }
-                    bufferReadOff = i;
-                }
+            result = sorted.truncate();
+            current = false;
+        }
+        if (sketchSize > 0 && result.size() > sketchSize) {
+            SortedShingler sorted = SortedShingler.of(result);
+            if (sorted == null) {
+                return Optional.empty();
             }
-            LoadedShingler shingler = new LoadedShingler(set);
-            return Optional.of(shingler);
+            result = sorted.prefix(sketchSize);
+            current = false;
+        }
+        if (bloomBitsPerKey > 0 && result instanceof SortedShingler && ((SortedShingler) result).getFilter() == null) {
+            result = ((SortedShingler) result).withFilter(bloomBitsPerKey);
+            current = false;
+        }
+        if (!current && ByteSetFactory.isLongSetSupported(result.getByteArraySize())) {
+            saveToCache(result, o);
         }
+        return Optional.of(result);
     }
 
-    private int readInt(InputStream in) throws IOException {
-        int ch1 = in.read();
-        int ch2 = in.read();
-        int ch3 = in.read();
-        int ch4 = in.read();
-        if ((ch1 | ch2 | ch3 | ch4) < 0)
+    /**
+     * @return shingles count from header of the current version record, empty if there is no such record
+     * or it can't be used as is
+     */
+    OptionalInt getSize(T o) throws IOException {
+        ByteBuffer buffer = storage.map(o);
+        if (buffer == null || buffer.limit() < HEADER_SIZE || buffer.getInt(0) != MAGIC ||
+                buffer.getInt(4) != VERSION || (byte) buffer.getInt(16) != hasherId ||
+                byteArraySize != 0 && buffer.getInt(12) != byteArraySize ||
+                buffer.getInt(36) != sketchSize || buffer.getInt(44) != (sketchSize > 0 ? 1 : coef)) {
+            return OptionalInt.empty();
+        }
+        return OptionalInt.of(buffer.getInt(8));
+    }
+
+    private Optional<Shingler> readRecord(ByteBuffer buffer) {
+        int version = buffer.getInt(4);
+        if (version != VERSION || buffer.limit() < HEADER_SIZE) {
+            log.warn("Broken shingle cache record of version {}", version);
+            return Optional.empty();
+        }
+        int size = buffer.getInt(8);
+        int recordByteArraySize = buffer.getInt(12);
+        if ((byte) buffer.getInt(16) != hasherId) {
+            return Optional.empty();
+        }
+        int filterSize = buffer.getInt(20);
+        int filterHashCount = buffer.getInt(24);
+        long simHash = buffer.getLong(28);
+        int recordSketchSize = buffer.getInt(36);
+        boolean recordCompressed = buffer.getInt(40) == DELTA_ENCODING;
+        if (recordSketchSize != 0 && (sketchSize == 0 || recordSketchSize < sketchSize)) {
+            return Optional.empty();
+        }
+        int recordCoef = buffer.getInt(44);
+        if (recordSketchSize == 0 && recordCoef != (sketchSize > 0 ? 1 : coef)) {
+            return Optional.empty();
+        }
+        ByteBuffer payload = buffer.duplicate();
+        payload.position(HEADER_SIZE);
+        CRC32 crc = new CRC32();
+        crc.update(payload.duplicate());
+        if (size < 0 || !ByteSetFactory.isLongSetSupported(recordByteArraySize) ||
+                filterSize < 0 || (long) filterSize * 8 > payload.remaining() ||
+                (int) crc.getValue() != buffer.getInt(HEADER_SIZE - 4)) {
+            log.warn("Broken shingle cache record, checksum or sizes don't match");
+            return Optional.empty();
+        }
+        try {
+            int filterStart = payload.limit() - filterSize * 8;
+            BlockedBloomFilter filter = null;
+            if (filterSize > 0) {
+                long[] bits = new long[filterSize];
+                ByteBuffer filterBuffer = payload.duplicate();
+                filterBuffer.position(filterStart);
+                filterBuffer.asLongBuffer().get(bits);
+                filter = BlockedBloomFilter.of(bits, filterHashCount);
+            }
+            payload.limit(filterStart);
+            LongBuffer hashes;
+            if (recordCompressed) {
+                hashes = LongBuffer.wrap(DeltaCodec.decode(payload, size, recordByteArraySize / 8));
+            } else if (payload.remaining() == (long) size * recordByteArraySize) {
+                hashes = payload.slice().asLongBuffer();
+            } else {
+                log.warn("Broken shingle cache record, {} hashes don't match payload size", size);
+                return Optional.empty();
+            }
+            return Optional.of(new SortedShingler(hashes, recordByteArraySize, filter, simHash));
+        } catch (IllegalArgumentException e) {
+            log.warn("Broken shingle cache record {}", e.getMessage());
+            return Optional.empty();
+        }
+    }
+
+    private Optional<Shingler> readOldFormat(ByteBuffer buffer) throws IOException {
+        if (buffer.limit() < 8) {
             throw new EOFException();
-        return (ch1 << 24) + (ch2 << 16) + (ch3 << 8) + ch4;
+        }
+        int size = buffer.getInt();
+        int byteArrayLength = buffer.getInt();
+        if (buffer.remaining() != (long) size * byteArrayLength) {
+            log.warn("Broken shingle cache record, {} hashes don't match payload size", size);
+            return Optional.empty();
+        }
+        ByteSet set = ByteSetFactory.createSet(size, byteArrayLength);
+        for (int i = 0; i < size; i++) {
+            byte[] shingle = new byte[byteArrayLength];
+            buffer.get(shingle);
+            set.add(shingle);
+        }
+        LoadedShingler shingler = LoadedShingler.of(set);
+        return Optional.of(shingler);
+    }
+
+    public void remove(T t) {
+        storage.remove(t);
     }
 
     public void saveToCache(Shingler shingler, T t) throws IOException {
+        int recordByteArraySize = shingler.getByteArraySize();
+        if (!ByteSetFactory.isLongSetSupported(recordByteArraySize)) {
+            if (hasherId == ShingleHashers.MD5_ID) { // old format doesn't have hasher id
+                saveOldFormat(shingler, t);
+            }
+            return;
+        }
+        SortedShingler sorted = SortedShingler.of(shingler).withFilter(bloomBitsPerKey);
+        byte[] hashes = compressed ? DeltaCodec.encode(sorted.toLongArray(), sorted.getStride()) :
+                toBytes(sorted.toLongArray());
+        BlockedBloomFilter filter = sorted.getFilter();
+        long[] filterBits = filter == null ? new long[0] : filter.getBits();
+        ByteBuffer payload = ByteBuffer.allocate(hashes.length + filterBits.length * 8);
+        payload.put(hashes).asLongBuffer().put(filterBits);
+        CRC32 crc = new CRC32();
+        crc.update(payload.array());
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + payload.capacity());
+        buffer.putInt(MAGIC).putInt(VERSION).putInt(shingler.size()).putInt(recordByteArraySize).
+                putInt(hasherId).putInt(filterBits.length).putInt(filter == null ? 0 : filter.getHashCount()).
+                putLong(sorted.getSimHash()).putInt(sketchSize).putInt(compressed ? DELTA_ENCODING : RAW_ENCODING).
+                putInt(sketchSize > 0 ? 1 : coef).putInt((int) crc.getValue()).put(payload.array());
+        storage.save(buffer.array(), t);
+    }
+
+    private static byte[] toBytes(long[] longs) {
+        ByteBuffer buffer = ByteBuffer.allocate(longs.length * 8);
+        buffer.asLongBuffer().put(longs);
+        return buffer.array();
+    }
+
+    private void saveOldFormat(Shingler shingler, T t) throws IOException {
         ByteArrayOutputStream baos = new ByteArrayOutputStream();
         writeInt(baos, shingler.size());
         writeInt(baos, shingler.getByteArraySize());
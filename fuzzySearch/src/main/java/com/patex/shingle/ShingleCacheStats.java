@@ -0,0 +1,73 @@
+package com.patex.shingle;
+
+import com.google.common.cache.CacheStats;
+
+/**
+ * Counters of in-memory shingle cache tiers: hot tier keeps sorted arrays ready for comparison,
+ * compact tier keeps delta encoded shinglers evicted from the hot tier
+ */
+public class ShingleCacheStats {
+
+    private final CacheStats hot;
+    private final CacheStats compact;
+    private final long hotWeight;
+    private final long compactWeight;
+
+    ShingleCacheStats(CacheStats hot, CacheStats compact, long hotWeight, long compactWeight) {
+        this.hot = hot;
+        this.compact = compact;
+        this.hotWeight = hotWeight;
+        this.compactWeight = compactWeight;
+    }
+
+    public long getHotHitCount() {
+        return hot.hitCount();
+    }
+
+    public long getHotMissCount() {
+        return hot.missCount();
+    }
+
+    public double getHotHitRate() {
+        return hot.hitRate();
+    }
+
+    public long getHotEvictionCount() {
+        return hot.evictionCount();
+    }
+
+    /**
+     * @return approximate bytes used by hot tier
+     */
+    public long getHotWeight() {
+        return hotWeight;
+    }
+
+    public long getCompactHitCount() {
+        return compact.hitCount();
+    }
+
+    public long getCompactMissCount() {
+        return compact.missCount();
+    }
+
+    public double getCompactHitRate() {
+        return compact.hitRate();
+    }
+
+    public long getCompactEvictionCount() {
+        return compact.evictionCount();
+    }
+
+    public long getCompactWeight() {
+        return compactWeight;
+    }
+
+    @Override
+    public String toString() {
+        return "hot: hits=" + getHotHitCount() + " misses=" + getHotMissCount() +
+                " evictions=" + getHotEvictionCount() + " bytes=" + hotWeight +
+                ", compact: hits=" + getCompactHitCount() + " misses=" + getCompactMissCount() +
+                " evictions=" + getCompactEvictionCount() + " bytes=" + compactWeight;
+    }
+}
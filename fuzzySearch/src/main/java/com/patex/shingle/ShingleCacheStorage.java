@@ -1,13 +1,60 @@
 package com.patex.shingle;
 
 
+import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
 
 public interface ShingleCacheStorage<T> {
 
     InputStream load(T t);
 
+    /**
+     * @return read only buffer with the same content as {@link #load(Object)}, usually memory mapped file,
+     * or null if storage can't provide it
+     */
+    default ByteBuffer map(T t) throws IOException {
+        return null;
+    }
+
     void save(byte[] bytes, T t);
 
+    /**
+     * Called when object shouldn't be compared anymore, storage may free its space
+     */
+    default void remove(T t) {
+    }
+
+    /**
+     * Called when search is idle or stopped, storage may persist its state
+     */
+    default void flush() throws IOException {
+    }
+
+    /**
+     * @return stream with search index saved by {@link #saveSearchIndex(byte[])} or null
+     */
+    default InputStream loadSearchIndex() {
+        return null;
+    }
+
+    default void saveSearchIndex(byte[] bytes) {
+    }
+
+    /**
+     * Called when search index is moved to other storage
+     */
+    default void removeSearchIndex() {
+    }
+
+    /**
+     * @return stream with SimHash fingerprints saved by {@link #saveSimHashIndex(byte[])} or null
+     */
+    default InputStream loadSimHashIndex() {
+        return null;
+    }
+
+    default void saveSimHashIndex(byte[] bytes) {
+    }
 
 }
@@ -0,0 +1,26 @@
+package com.patex.shingle;
+
+/**
+ * Hash function applied to every shingle.
+ * Implementation may keep state, then every thread creates its own instance
+ */
+public interface ShingleHasher {
+
+    /**
+     * Stored in shingle cache, so cache created by other hasher is not used
+     */
+    byte getId();
+
+    String getName();
+
+    int getHashSize();
+
+    byte[] hash(byte[] bytes);
+
+    /**
+     * @return true if one instance could be used by several threads
+     */
+    default boolean isThreadSafe() {
+        return false;
+    }
+}
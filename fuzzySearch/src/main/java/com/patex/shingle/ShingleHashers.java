@@ -0,0 +1,37 @@
+package com.patex.shingle;
+
+import java.util.function.Supplier;
+
+public final class ShingleHashers {
+
+    public static final String MD5 = "md5";
+    public static final String XXHASH64 = "xxhash64";
+    public static final String MURMUR3_128 = "murmur3_128";
+    /**
+     * Word hashes combined by rolling hash, much faster than hashing of every shingle text
+     */
+    public static final String ROLLING = "rolling";
+
+    static final byte MD5_ID = 0;
+    static final byte XXHASH64_ID = 1;
+    static final byte MURMUR3_128_ID = 2;
+    static final byte ROLLING_ID = 3;
+
+    private ShingleHashers() {
+    }
+
+    public static Supplier<ShingleHasher> forName(String name) {
+        switch (name.toLowerCase()) {
+            case MD5:
+                return Md5ShingleHasher::new;
+            case XXHASH64:
+                return XxHash64ShingleHasher::new;
+            case MURMUR3_128:
+                return Murmur3ShingleHasher::new;
+            case ROLLING:
+                return RollingShingleHasher::new;
+            default:
+                throw new IllegalArgumentException("Unknown shingle hasher: " + name);
+        }
+    }
+}
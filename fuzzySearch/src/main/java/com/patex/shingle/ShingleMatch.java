@@ -0,0 +1,45 @@
+package com.patex.shingle;
+
+/**
+ * Candidate found by {@link ShingleSearch#findTopSimilar(Object, int, float)} with its similarity,
+ * score is Jaccard similarity
+ */
+public final class ShingleMatch<T> {
+
+    private final T candidate;
+    private final ShingleSimilarity similarity;
+
+    ShingleMatch(T candidate, ShingleSimilarity similarity) {
+        this.candidate = candidate;
+        this.similarity = similarity;
+    }
+
+    public T getCandidate() {
+        return candidate;
+    }
+
+    public float getContainment() {
+        return similarity.getContainment();
+    }
+
+    public float getJaccard() {
+        return similarity.getJaccard();
+    }
+
+    public float getScore() {
+        return similarity.getJaccard();
+    }
+
+    /**
+     * @return true if candidate passes size ratio and containment rule of {@link ShingleSearch#findSimilar(Object)}
+     */
+    public boolean isSimilar() {
+        return similarity.isSimilar();
+    }
+
+    @Override
+    public String toString() {
+        return "ShingleMatch{candidate=" + candidate + ", containment=" + getContainment() +
+                ", jaccard=" + getJaccard() + '}';
+    }
+}
@@ -2,11 +2,16 @@ package com.patex.shingle;
 
 import com.google.common.cache.Cache;
 import com.google.common.cache.CacheBuilder;
-import com.patex.shingle.byteSet.ByteHashSet;
+import com.google.common.cache.CacheStats;
+import com.google.common.cache.RemovalNotification;
+import com.patex.shingle.byteSet.BlockedBloomFilter;
 
 import java.io.IOException;
-import java.security.MessageDigest;
-import java.security.NoSuchAlgorithmException;
+import java.io.UncheckedIOException;
+import java.util.Collections;
+import java.util.Optional;
+import java.util.OptionalInt;
+import java.util.Set;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
 import java.util.function.Function;
@@ -16,46 +21,160 @@ import java.util.function.Function;
  */
 class ShingleMatcher<T, ID> {
 
+    private static final long MB = 1024 * 1024;
+    private static final int SHINGLER_OVERHEAD = 64;
+
     private final Cache<ID, Shingler> cache;
+    private final Cache<ID, CompressedShingler> compactCache;
     private final Function<T, Shingleable> mapFunc;
     private final Function<T, ID> idFunc;
     private final ShingleCache<T> shingleCache;
     private final LoadedShinglerFactory shinglerCreator;
+    private final int bloomBitsPerKey;
+    private final SimHashIndex<ID> simHashIndex;
+    private final int sketchSize;
+    private final ShingleSearchCounters counters = new ShingleSearchCounters();
 
-    public ShingleMatcher(Function<T, Shingleable> mapFunc, Function<T, ID> idFunc, int coef, int cacheSize,
-                          int byteArraySize) {
+    public ShingleMatcher(Function<T, Shingleable> mapFunc, Function<T, ID> idFunc, ShingleSearchConfig config) {
         this.mapFunc = mapFunc;
         this.idFunc = idFunc;
-        shingleCache = new ShingleCache<>();
-        cache = CacheBuilder.newBuilder().
-                maximumSize(cacheSize).
-                expireAfterAccess(10, TimeUnit.MINUTES).build();
-        shinglerCreator = new LoadedShinglerFactory(coef, byteArraySize,
-                () -> {
-                    try {
-                        MessageDigest digest = MessageDigest.getInstance("MD5");
-                        return bytes -> {
-                            byte[] result = digest.digest(bytes);
-                            digest.reset();
-                            return result;
-                        };
-                    } catch (NoSuchAlgorithmException e) {
-                        throw new RuntimeException(e);
-                    }
-                });
-    }
-
-    public ShingleMatcher(Function<T, Shingleable> mapFunc, Function<T, ID> idFunc, int coef, int cacheSize) {
-        this(mapFunc, idFunc, coef, cacheSize, 16);
+        this.bloomBitsPerKey = config.getBloomBitsPerKey();
+        this.sketchSize = config.getSketchSize();
+        if (config.getCompactCacheMemoryMb() > 0) {
+            compactCache = CacheBuilder.newBuilder().
+                    maximumWeight(config.getCompactCacheMemoryMb() * MB).
+                    weigher((ID id, CompressedShingler shingler) -> shingler.getWeight()).
+                    recordStats().build();
+        } else {
+            compactCache = null;
+        }
+        boolean weighBytes = config.getCacheMemoryMb() > 0;
+        CacheBuilder<ID, Shingler> builder = CacheBuilder.newBuilder().
+                maximumWeight(weighBytes ? config.getCacheMemoryMb() * MB : config.getCacheSize()).
+                weigher((ID id, Shingler shingler) -> weighBytes ? weight(shingler) : 1).
+                expireAfterAccess(10, TimeUnit.MINUTES).
+                recordStats();
+        if (compactCache != null) {
+            builder = builder.removalListener(this::demote);
+        }
+        cache = builder.build();
+        shinglerCreator = new LoadedShinglerFactory(config.getCoef(), config.getByteArraySize(),
+                ShingleHashers.forName(config.getHasher()), sketchSize);
+        shingleCache = new ShingleCache<>(shinglerCreator.getHasherId(), shinglerCreator.getByteArraySize(),
+                bloomBitsPerKey, sketchSize, config.isCacheCompression(), config.getCoef());
+        simHashIndex = config.isSimHashCheck() ? new SimHashIndex<>(shinglerCreator.getHasherId(), config.getCoef(),
+                shinglerCreator.getByteArraySize(), sketchSize) : null;
+    }
+
+    public ShingleMatcher(Function<T, Shingleable> mapFunc, Function<T, ID> idFunc, int coef, int cacheSize,
+                          int byteArraySize) {
+        this(mapFunc, idFunc, new ShingleSearchConfig().
+                setCoef(coef).setCacheSize(cacheSize).setByteArraySize(byteArraySize));
     }
 
+    /**
+     * Distant SimHash fingerprints reject pair without comparison of shingles,
+     * but close ones are always confirmed by it
+     */
     public boolean isSimilar(T first, T second) {
+        if (simHashIndex != null) {
+            long firstHash = getSimHash(first);
+            long secondHash = getSimHash(second);
+            long start = System.nanoTime();
+            int distance = SimHash.distance(firstHash, secondHash);
+            counters.addSince(ShinglePhase.COMPARE, start);
+            if (distance >= SimHash.REJECT_DISTANCE) {
+                return false;
+            }
+        }
         Shingler firstS = getShingler(first);
         Shingler secondS = getShingler(second);
-        return isSimilar(firstS, secondS);
+        long start = System.nanoTime();
+        boolean similar = isSimilar(firstS, secondS);
+        counters.addSince(ShinglePhase.COMPARE, start);
+        return similar;
+    }
+
+    /**
+     * Full comparison without early exit, both objects should have 8 or 16 byte hashes
+     */
+    public ShingleSimilarity getSimilarity(T first, T second) {
+        SortedShingler firstS = getSorted(first);
+        SortedShingler secondS = getSorted(second);
+        long start = System.nanoTime();
+        ShingleSimilarity similarity = sketchSize > 0 ?
+                ShingleSimilarity.ofSketches(firstS, secondS, sketchSize) : ShingleSimilarity.of(firstS, secondS);
+        counters.addSince(ShinglePhase.COMPARE, start);
+        return similarity;
+    }
+
+    /**
+     * Comparison stops as soon as Jaccard can't reach minJaccard
+     *
+     * @return empty if Jaccard is less than minJaccard
+     */
+    Optional<ShingleSimilarity> getSimilarity(T first, T second, float minJaccard) {
+        if (sketchSize > 0) {
+            ShingleSimilarity similarity = getSimilarity(first, second);
+            return similarity.getJaccard() >= minJaccard ? Optional.of(similarity) : Optional.empty();
+        }
+        SortedShingler firstS = getSorted(first);
+        SortedShingler secondS = getSorted(second);
+        long start = System.nanoTime();
+        ShingleSimilarity similarity = ShingleSimilarity.of(firstS, secondS, minJaccard);
+        counters.addSince(ShinglePhase.COMPARE, start);
+        return Optional.ofNullable(similarity);
+    }
+
+    /**
+     * @return upper bound of Jaccard of two objects known without comparison
+     */
+    float getMaxJaccard(T first, T second) {
+        if (sketchSize > 0) {
+            return 1f;
+        }
+        return ShingleSimilarity.maxJaccard(getSize(first), getSize(second));
+    }
+
+    /**
+     * @return size of shingler in memory or from header of its cache record,
+     * shingler is loaded only if neither of them is available
+     */
+    private int getSize(T t) {
+        Shingler shingler = cache.asMap().get(idFunc.apply(t)); // probe isn't counted in cache stats
+        if (shingler != null) {
+            return shingler.size();
+        }
+        long start = System.nanoTime();
+        try {
+            OptionalInt size = shingleCache.getSize(t);
+            if (size.isPresent()) {
+                return size.getAsInt();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            counters.addSince(ShinglePhase.CACHE_READ, start);
+        }
+        return getShingler(t).size();
+    }
+
+    private SortedShingler getSorted(T t) {
+        SortedShingler sorted = SortedShingler.of(getShingler(t));
+        if (sorted == null) {
+            throw new IllegalStateException("Similarity score requires 8 or 16 byte hashes");
+        }
+        return sorted;
     }
 
     private boolean isSimilar(Shingler first, Shingler second) {
+        if (first instanceof SortedShingler && second instanceof SortedShingler) {
+            if (sketchSize > 0) {
+                return ShingleSimilarity.ofSketches((SortedShingler) first, (SortedShingler) second, sketchSize).
+                        isSimilar();
+            }
+            return ShingleSimilarity.isSimilar((SortedShingler) first, (SortedShingler) second);
+        }
         Shingler bigger, smaller;
         if (first.size() > second.size()) {
             bigger = first;
@@ -79,30 +198,138 @@ class ShingleMatcher<T, ID> {
         return true;
     }
 
-    private Shingler getShingler(T t) {
+    /**
+     * @return fingerprint from index, shingler is loaded only if object isn't indexed yet
+     */
+    long getSimHash(T t) {
+        Long simHash = simHashIndex == null ? null : simHashIndex.get(idFunc.apply(t));
+        return simHash == null ? getShingler(t).getSimHash() : simHash;
+    }
+
+    /**
+     * @return ids of indexed objects with almost the same fingerprint, empty set if SimHash check is disabled
+     */
+    Set<ID> findNearDuplicates(T t) {
+        if (simHashIndex == null) {
+            return Collections.emptySet();
+        }
+        return simHashIndex.findNear(idFunc.apply(t), getSimHash(t));
+    }
+
+    SimHashIndex<ID> getSimHashIndex() {
+        return simHashIndex;
+    }
+
+    Shingler getShingler(T t) {
         ID id = idFunc.apply(t);
         try {
-            return cache.get(id, () ->
-                    shingleCache.getFromCache(t).orElseGet(() ->
-                            createShingler(t)));
+            return cache.get(id, () -> loadShingler(id, t));
         } catch (ExecutionException e) {
             throw new RuntimeException(e.getMessage(), e);
         }
     }
 
+    private Shingler loadShingler(ID id, T t) throws IOException {
+        Shingler shingler = null;
+        if (compactCache != null) {
+            CompressedShingler compressed = compactCache.getIfPresent(id);
+            if (compressed != null) {
+                compactCache.invalidate(id);
+                shingler = compressed.decompress().withFilter(bloomBitsPerKey);
+            }
+        }
+        if (shingler == null) {
+            long start = System.nanoTime();
+            Optional<Shingler> cached = shingleCache.getFromCache(t);
+            counters.addSince(ShinglePhase.CACHE_READ, start);
+            shingler = cached.map(this::toSorted).orElseGet(() -> createShingler(t));
+        }
+        if (simHashIndex != null) {
+            simHashIndex.add(id, shingler.getSimHash());
+        }
+        return shingler;
+    }
+
+    private static int weight(Shingler shingler) {
+        BlockedBloomFilter filter = null;
+        if (shingler instanceof SortedShingler) {
+            filter = ((SortedShingler) shingler).getFilter();
+        } else if (shingler instanceof LoadedShingler) {
+            filter = ((LoadedShingler) shingler).getFilter();
+        }
+        int filterWeight = filter == null ? 0 : filter.getBits().length * 8;
+        return SHINGLER_OVERHEAD + shingler.size() * shingler.getByteArraySize() + filterWeight;
+    }
+
+    /**
+     * Shinglers evicted by size or expiration are moved to compact tier, invalidated ones are dropped
+     */
+    private void demote(RemovalNotification<ID, Shingler> notification) {
+        Shingler shingler = notification.getValue();
+        if (notification.wasEvicted() && shingler instanceof SortedShingler) {
+            compactCache.put(notification.getKey(), CompressedShingler.of((SortedShingler) shingler));
+        }
+    }
+
+    ShingleCacheStats getCacheStats() {
+        long hotWeight = cache.asMap().values().stream().mapToLong(ShingleMatcher::weight).sum();
+        if (compactCache == null) {
+            return new ShingleCacheStats(cache.stats(), new CacheStats(0, 0, 0, 0, 0, 0), hotWeight, 0);
+        }
+        long compactWeight = compactCache.asMap().values().stream().mapToLong(CompressedShingler::getWeight).sum();
+        return new ShingleCacheStats(cache.stats(), compactCache.stats(), hotWeight, compactWeight);
+    }
+
+    ShingleSearchCounters getCounters() {
+        return counters;
+    }
+
+    /**
+     * Text reading is measured separately, because text of the object is usually parsed lazily
+     */
     private Shingler createShingler(T t) {
         try {
-            ByteHashSet shingleSet = shinglerCreator.createShingles(mapFunc.apply(t));
-            LoadedShingler shingler = new LoadedShingler(shingleSet);
+            long start = System.nanoTime();
+            TimedShingleable shingleable = new TimedShingleable(mapFunc.apply(t));
+            long loadNanos = System.nanoTime() - start;
+            Shingler shingler = toSorted(shinglerCreator.createShingler(shingleable));
+            long shingleNanos = System.nanoTime() - start - loadNanos - shingleable.getNanos();
+            counters.add(ShinglePhase.LOAD, loadNanos + shingleable.getNanos());
+            counters.add(ShinglePhase.SHINGLE, shingleNanos);
+            start = System.nanoTime();
             shingleCache.saveToCache(shingler, t);
+            counters.addSince(ShinglePhase.CACHE_WRITE, start);
             return shingler;
         } catch (IOException e) {
             throw new RuntimeException(e.getMessage(), e);
         }
     }
 
+    /**
+     * Sorted array is smaller than hash set and allows merge comparison,
+     * bloom filter is added if it is enabled in config
+     */
+    private Shingler toSorted(Shingler shingler) {
+        SortedShingler sorted = SortedShingler.of(shingler);
+        if (sorted != null) {
+            return sorted.withFilter(bloomBitsPerKey);
+        }
+        if (shingler instanceof LoadedShingler) {
+            return ((LoadedShingler) shingler).withFilter(bloomBitsPerKey);
+        }
+        return shingler;
+    }
+
     public void invalidate(T obj) {
-        cache.invalidate(idFunc.apply(obj));
+        ID id = idFunc.apply(obj);
+        cache.invalidate(id);
+        if (compactCache != null) {
+            compactCache.invalidate(id);
+        }
+        if (simHashIndex != null) {
+            simHashIndex.remove(id);
+        }
+        shingleCache.remove(obj);
     }
 
     public void setStorage(ShingleCacheStorage<T> storage) {
@@ -0,0 +1,21 @@
+package com.patex.shingle;
+
+/**
+ * Phases of similarity check which time is collected in {@link ShingleSearchStats}
+ */
+public enum ShinglePhase {
+    /**
+     * Opening of the object and reading of its text, includes parsing done lazily while text is iterated
+     */
+    LOAD,
+    /**
+     * Hashing of shingles, without text reading
+     */
+    SHINGLE,
+    CACHE_READ,
+    CACHE_WRITE,
+    /**
+     * Comparison of already loaded shinglers or fingerprints
+     */
+    COMPARE
+}
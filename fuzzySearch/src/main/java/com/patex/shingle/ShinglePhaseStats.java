@@ -0,0 +1,29 @@
+package com.patex.shingle;
+
+public class ShinglePhaseStats {
+
+    private final long count;
+    private final long nanos;
+
+    ShinglePhaseStats(long count, long nanos) {
+        this.count = count;
+        this.nanos = nanos;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public long getTotalMillis() {
+        return nanos / 1_000_000;
+    }
+
+    public long getAverageMicros() {
+        return count == 0 ? 0 : nanos / count / 1_000;
+    }
+
+    @Override
+    public String toString() {
+        return "count=" + count + " totalMs=" + getTotalMillis() + " avgUs=" + getAverageMicros();
+    }
+}
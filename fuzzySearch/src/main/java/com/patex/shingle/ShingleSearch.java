@@ -1,37 +1,261 @@
 package com.patex.shingle;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.PriorityQueue;
+import java.util.Set;
 import java.util.function.Function;
 import java.util.stream.Stream;
 
 public class ShingleSearch<T,ID> {
 
+    private static final Logger log = LoggerFactory.getLogger(ShingleSearch.class);
+
     private final Function<T, Collection<T>> preSearch;
     private final ShingleMatcher<T,ID> shingleMatcher;
+    private final Function<T, ID> idFunc;
+    private final MinHashIndex<T, ID> index;
+    private final ParallelCandidateMatcher<T> parallelMatcher;
+    private ShingleCacheStorage<T> storage;
 
     public ShingleSearch(Function<T, Collection<T>> preSearch,
                          Function<T, Shingleable> mapFunc,
                          Function<T, ID> idFunc, int coef, int cacheSize
+    ) {
+        this(preSearch, mapFunc, idFunc, new ShingleSearchConfig().setCoef(coef).setCacheSize(cacheSize));
+    }
+
+    public ShingleSearch(Function<T, Collection<T>> preSearch,
+                         Function<T, Shingleable> mapFunc,
+                         Function<T, ID> idFunc, ShingleSearchConfig config
     ) {
         this.preSearch = preSearch;
-        shingleMatcher=new ShingleMatcher<>(mapFunc, idFunc, coef, cacheSize);
+        this.idFunc = idFunc;
+        this.index = null;
+        shingleMatcher = new ShingleMatcher<>(mapFunc, idFunc, config);
+        parallelMatcher = createParallelMatcher(config);
+    }
+
+    public ShingleSearch(MinHashIndex<T, ID> index,
+                         Function<T, Shingleable> mapFunc,
+                         Function<T, ID> idFunc, int coef, int cacheSize
+    ) {
+        this(index, mapFunc, idFunc, new ShingleSearchConfig().setCoef(coef).setCacheSize(cacheSize));
+    }
+
+    /**
+     * Candidates are taken from MinHash index instead of pre search,
+     * every searched object is added to index
+     */
+    public ShingleSearch(MinHashIndex<T, ID> index,
+                         Function<T, Shingleable> mapFunc,
+                         Function<T, ID> idFunc, ShingleSearchConfig config
+    ) {
+        this.preSearch = this::searchIndex;
+        this.idFunc = idFunc;
+        this.index = index;
+        shingleMatcher = new ShingleMatcher<>(mapFunc, idFunc, config);
+        parallelMatcher = createParallelMatcher(config);
+    }
+
+    private static <T> ParallelCandidateMatcher<T> createParallelMatcher(ShingleSearchConfig config) {
+        if (config.getExecutor() == null || config.getParallelism() <= 1) {
+            return null;
+        }
+        return new ParallelCandidateMatcher<>(config.getExecutor(), config.getParallelism());
     }
 
+    /**
+     * In parallel mode returns any of similar objects and cancels the rest of checks
+     */
     public Optional<T> findSimilar(T t) {
-        return findSimilarStream(t).findFirst();
+        if (parallelMatcher == null) {
+            return findSimilarStream(t).findFirst();
+        }
+        List<T> candidates = getCandidates(t);
+        if (candidates.size() <= 1) {
+            return candidates.stream().filter(obj -> shingleMatcher.isSimilar(obj, t)).findFirst();
+        }
+        return parallelMatcher.findAny(candidates, obj -> shingleMatcher.isSimilar(obj, t));
     }
 
     public Stream<T> findSimilarStream(T t) {
-        return preSearch.apply(t).stream().filter(obj -> shingleMatcher.isSimilar(obj, t));
+        if (parallelMatcher == null) {
+            return getCandidates(t).stream().filter(obj -> shingleMatcher.isSimilar(obj, t));
+        }
+        return parallelMatcher.findAll(getCandidates(t), obj -> shingleMatcher.isSimilar(obj, t)).stream();
+    }
+
+    /**
+     * Shingles searched object in the search thread, so parallel checks don't wait for it.
+     * Candidates with almost the same SimHash fingerprint go first, they are the most likely duplicates
+     */
+    private List<T> getCandidates(T t) {
+        Collection<T> candidates = preSearch.apply(t);
+        shingleMatcher.getCounters().addSearch(candidates.size());
+        if (candidates.isEmpty()) {
+            return Collections.emptyList();
+        }
+        shingleMatcher.getShingler(t);
+        Set<ID> near = shingleMatcher.findNearDuplicates(t);
+        if (near.isEmpty()) {
+            return candidates instanceof List ? (List<T>) candidates : new ArrayList<>(candidates);
+        }
+        List<T> result = new ArrayList<>(candidates.size());
+        candidates.stream().filter(obj -> near.contains(idFunc.apply(obj))).forEach(result::add);
+        candidates.stream().filter(obj -> !near.contains(idFunc.apply(obj))).forEach(result::add);
+        return result;
     }
 
+    /**
+     * Candidates are compared in order of the upper bound of their score, which is known from sizes,
+     * and comparison stops as soon as the next bound can't beat the k-th score.
+     * Candidates are compared in the search thread, shingles should be 8 or 16 bytes
+     *
+     * @param minScore minimal Jaccard similarity
+     * @return up to k candidates with the best Jaccard similarity, best first
+     */
+    public List<ShingleMatch<T>> findTopSimilar(T t, int k, float minScore) {
+        if (k <= 0) {
+            return Collections.emptyList();
+        }
+        List<T> candidates = new ArrayList<>(getCandidates(t));
+        Map<T, Float> bounds = new IdentityHashMap<>();
+        for (T candidate : candidates) {
+            bounds.put(candidate, shingleMatcher.getMaxJaccard(candidate, t));
+        }
+        candidates.sort(Comparator.comparing(bounds::get, Comparator.reverseOrder()));
+        Comparator<ShingleMatch<T>> byScore = Comparator.comparing(ShingleMatch::getScore);
+        PriorityQueue<ShingleMatch<T>> top = new PriorityQueue<>(k, byScore);
+        for (T candidate : candidates) {
+            boolean full = top.size() == k;
+            float threshold = full ? Math.max(minScore, top.peek().getScore()) : minScore;
+            float bound = bounds.get(candidate);
+            if (bound < threshold || full && bound == threshold) {
+                break;
+            }
+            Optional<ShingleSimilarity> similarity = shingleMatcher.getSimilarity(candidate, t, threshold);
+            if (!similarity.isPresent()) {
+                continue;
+            }
+            ShingleMatch<T> match = new ShingleMatch<>(candidate, similarity.get());
+            if (!full) {
+                top.add(match);
+            } else if (match.getScore() > top.peek().getScore()) {
+                top.poll();
+                top.add(match);
+            }
+        }
+        List<ShingleMatch<T>> result = new ArrayList<>(top);
+        result.sort(byScore.reversed());
+        return result;
+    }
+
+    /**
+     * @return similarity score of two objects, shingles should be 8 or 16 bytes
+     */
+    public ShingleSimilarity getSimilarity(T first, T second) {
+        return shingleMatcher.getSimilarity(first, second);
+    }
+
+    public ShingleCacheStats getCacheStats() {
+        return shingleMatcher.getCacheStats();
+    }
+
+    public ShingleSearchStats getSearchStats() {
+        return shingleMatcher.getCounters().snapshot(shingleMatcher.getCacheStats());
+    }
+
+    /**
+     * @return counters of one phase, without snapshot of the other counters and cache stats
+     */
+    public ShinglePhaseStats getPhaseStats(ShinglePhase phase) {
+        return shingleMatcher.getCounters().getPhase(phase);
+    }
+
+    public double getCandidatesPerSearch() {
+        return shingleMatcher.getCounters().getCandidatesPerSearch();
+    }
+
+    private Collection<T> searchIndex(T t) {
+        ID id = idFunc.apply(t);
+        long[] signature = index.signature(shingleMatcher.getShingler(t));
+        Collection<T> candidates = index.findCandidates(id, signature);
+        index.add(id, signature);
+        return candidates;
+    }
+
+    /**
+     * Adds object to MinHash index without search
+     */
+    public void addToIndex(T t) {
+        if (index != null) {
+            index.add(idFunc.apply(t), index.signature(shingleMatcher.getShingler(t)));
+        }
+    }
+
+    public boolean isIndexEmpty() {
+        return index == null || index.size() == 0;
+    }
+
+    /**
+     * Saves search indexes and lets storage persist its state, index may be saved by several threads
+     */
+    public synchronized void saveIndex() throws IOException {
+        if (storage == null) {
+            return;
+        }
+        if (index != null && index.isChanged()) {
+            storage.saveSearchIndex(index.toBytes());
+        }
+        SimHashIndex<ID> simHashIndex = shingleMatcher.getSimHashIndex();
+        if (simHashIndex != null && simHashIndex.isChanged()) {
+            storage.saveSimHashIndex(simHashIndex.toBytes());
+        }
+        storage.flush();
+    }
 
     public void invalidate(T secondary) {
         shingleMatcher.invalidate(secondary);
+        if (index != null) {
+            index.remove(idFunc.apply(secondary));
+        }
     }
 
     public void setStorage(ShingleCacheStorage<T> storage) {
+        this.storage = storage;
         shingleMatcher.setStorage(storage);
+        if (index != null) {
+            try (InputStream is = storage.loadSearchIndex()) {
+                if (is != null && !index.load(is)) {
+                    index.clear();
+                }
+            } catch (IOException e) {
+                log.warn("Broken search index {}", e.getMessage());
+                index.clear();
+            }
+        }
+        SimHashIndex<ID> simHashIndex = shingleMatcher.getSimHashIndex();
+        if (simHashIndex != null) {
+            try (InputStream is = storage.loadSimHashIndex()) {
+                if (is != null && !simHashIndex.load(is)) {
+                    simHashIndex.clear();
+                }
+            } catch (IOException e) {
+                log.warn("Broken simhash index {}", e.getMessage());
+                simHashIndex.clear();
+            }
+        }
     }
 }
@@ -0,0 +1,180 @@
+package com.patex.shingle;
+
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Settings of {@link ShingleSearch}, not set values are defaults
+ */
+public class ShingleSearchConfig {
+
+    private int coef = 1;
+    private int cacheSize = 100;
+    private int cacheMemoryMb = 0;
+    private int compactCacheMemoryMb = 0;
+    private int byteArraySize = 0;
+    private String hasher = ShingleHashers.MD5;
+    private ExecutorService executor;
+    private int parallelism = 1;
+    private int bloomBitsPerKey = 0;
+    private boolean simHashCheck = false;
+    private int sketchSize = 0;
+    private boolean cacheCompression = true;
+
+    public int getCoef() {
+        return coef;
+    }
+
+    /**
+     * Only shingles which hash bytes xor is divisible by coef are kept
+     */
+    public ShingleSearchConfig setCoef(int coef) {
+        this.coef = coef;
+        return this;
+    }
+
+    public int getCacheSize() {
+        return cacheSize;
+    }
+
+    /**
+     * Max number of shinglers in memory, used only if {@link #setCacheMemoryMb(int)} isn't set
+     */
+    public ShingleSearchConfig setCacheSize(int cacheSize) {
+        this.cacheSize = cacheSize;
+        return this;
+    }
+
+    public int getCacheMemoryMb() {
+        return cacheMemoryMb;
+    }
+
+    /**
+     * Memory budget of shinglers ready for comparison, shingler weight is number of shingles * hash size.
+     * Budget is split between cache segments, so shingler bigger than a quarter of it isn't kept
+     */
+    public ShingleSearchConfig setCacheMemoryMb(int cacheMemoryMb) {
+        this.cacheMemoryMb = cacheMemoryMb;
+        return this;
+    }
+
+    public int getCompactCacheMemoryMb() {
+        return compactCacheMemoryMb;
+    }
+
+    /**
+     * Memory budget of the second cache tier, shinglers evicted from the first tier are delta encoded
+     * and kept here until they are requested again, 0 disables the second tier
+     */
+    public ShingleSearchConfig setCompactCacheMemoryMb(int compactCacheMemoryMb) {
+        this.compactCacheMemoryMb = compactCacheMemoryMb;
+        return this;
+    }
+
+    /**
+     * @return stored size of shingle hash, 0 means hash size of hasher but not more than 16
+     */
+    public int getByteArraySize() {
+        return byteArraySize;
+    }
+
+    /**
+     * 8 byte hashes take half of memory and cache of 16 byte ones, chance that two of n distinct shingles
+     * share 64 bit hash is about n^2 / 2^65, which is negligible for sets of millions of shingles
+     */
+    public ShingleSearchConfig setByteArraySize(int byteArraySize) {
+        this.byteArraySize = byteArraySize;
+        return this;
+    }
+
+    public String getHasher() {
+        return hasher;
+    }
+
+    /**
+     * @param hasher one of {@link ShingleHashers} names
+     */
+    public ShingleSearchConfig setHasher(String hasher) {
+        this.hasher = hasher;
+        return this;
+    }
+
+    public ExecutorService getExecutor() {
+        return executor;
+    }
+
+    /**
+     * Executor for parallel candidates check, shouldn't be the executor which calls search
+     */
+    public ShingleSearchConfig setExecutor(ExecutorService executor) {
+        this.executor = executor;
+        return this;
+    }
+
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    /**
+     * @param parallelism max number of candidates checked at the same time by one search,
+     *                    candidates are checked sequentially in the search thread if it is 1 or executor isn't set
+     */
+    public ShingleSearchConfig setParallelism(int parallelism) {
+        this.parallelism = parallelism;
+        return this;
+    }
+
+    public int getBloomBitsPerKey() {
+        return bloomBitsPerKey;
+    }
+
+    /**
+     * @param bloomBitsPerKey size of bloom filter kept with each shingler and in cache records,
+     *                        10 bits give about 1% of false positives, 0 disables filter
+     */
+    public ShingleSearchConfig setBloomBitsPerKey(int bloomBitsPerKey) {
+        this.bloomBitsPerKey = bloomBitsPerKey;
+        return this;
+    }
+
+    public boolean isSimHashCheck() {
+        return simHashCheck;
+    }
+
+    /**
+     * @param simHashCheck if true, pairs with distant SimHash fingerprints aren't similar without comparison
+     *                     of shingles and candidates with close fingerprints are compared first,
+     *                     see {@link SimHash} for error rates
+     */
+    public ShingleSearchConfig setSimHashCheck(boolean simHashCheck) {
+        this.simHashCheck = simHashCheck;
+        return this;
+    }
+
+    public int getSketchSize() {
+        return sketchSize;
+    }
+
+    /**
+     * @param sketchSize if positive, every object keeps only this number of the smallest shingle hashes
+     *                   (bottom-k sketch) instead of hashes selected by coef, so memory per object doesn't
+     *                   depend on its length and similarity is estimated. Hash size should be 8 or 16 bytes
+     */
+    public ShingleSearchConfig setSketchSize(int sketchSize) {
+        this.sketchSize = sketchSize;
+        return this;
+    }
+
+    public boolean isCacheCompression() {
+        return cacheCompression;
+    }
+
+    /**
+     * @param cacheCompression if true, hashes in cache records are delta encoded, which takes about a quarter
+     *                         less space for 8 byte hashes. Otherwise they are kept as sorted longs, which are
+     *                         compared straight from memory mapped records without decoding
+     */
+    public ShingleSearchConfig setCacheCompression(boolean cacheCompression) {
+        this.cacheCompression = cacheCompression;
+        return this;
+    }
+}
@@ -0,0 +1,59 @@
+package com.patex.shingle;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Thread safe counters of {@link ShingleSearch}, updated by search and candidate check threads
+ */
+class ShingleSearchCounters {
+
+    private static final ShinglePhase[] PHASES = ShinglePhase.values();
+
+    private final LongAdder[] counts = new LongAdder[PHASES.length];
+    private final LongAdder[] nanos = new LongAdder[PHASES.length];
+    private final LongAdder searches = new LongAdder();
+    private final LongAdder candidates = new LongAdder();
+
+    ShingleSearchCounters() {
+        for (int i = 0; i < PHASES.length; i++) {
+            counts[i] = new LongAdder();
+            nanos[i] = new LongAdder();
+        }
+    }
+
+    void add(ShinglePhase phase, long phaseNanos) {
+        counts[phase.ordinal()].increment();
+        nanos[phase.ordinal()].add(phaseNanos);
+    }
+
+    /**
+     * @param startNanos {@link System#nanoTime()} at the phase start
+     */
+    void addSince(ShinglePhase phase, long startNanos) {
+        add(phase, System.nanoTime() - startNanos);
+    }
+
+    void addSearch(int candidateCount) {
+        searches.increment();
+        candidates.add(candidateCount);
+    }
+
+    ShinglePhaseStats getPhase(ShinglePhase phase) {
+        return new ShinglePhaseStats(counts[phase.ordinal()].sum(), nanos[phase.ordinal()].sum());
+    }
+
+    double getCandidatesPerSearch() {
+        long searchCount = searches.sum();
+        return searchCount == 0 ? 0 : (double) candidates.sum() / searchCount;
+    }
+
+    ShingleSearchStats snapshot(ShingleCacheStats cacheStats) {
+        Map<ShinglePhase, ShinglePhaseStats> phases = new EnumMap<>(ShinglePhase.class);
+        for (ShinglePhase phase : PHASES) {
+            phases.put(phase, getPhase(phase));
+        }
+        return new ShingleSearchStats(phases, searches.sum(), candidates.sum(), cacheStats);
+    }
+}
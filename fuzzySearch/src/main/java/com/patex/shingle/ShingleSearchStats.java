@@ -0,0 +1,53 @@
+package com.patex.shingle;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * Snapshot of search counters since start: time per phase, candidates per search and in-memory cache stats
+ */
+public class ShingleSearchStats {
+
+    private final Map<ShinglePhase, ShinglePhaseStats> phases;
+    private final long searchCount;
+    private final long candidateCount;
+    private final ShingleCacheStats cacheStats;
+
+    ShingleSearchStats(Map<ShinglePhase, ShinglePhaseStats> phases, long searchCount, long candidateCount,
+                       ShingleCacheStats cacheStats) {
+        this.phases = Collections.unmodifiableMap(phases);
+        this.searchCount = searchCount;
+        this.candidateCount = candidateCount;
+        this.cacheStats = cacheStats;
+    }
+
+    public Map<ShinglePhase, ShinglePhaseStats> getPhases() {
+        return phases;
+    }
+
+    public ShinglePhaseStats getPhase(ShinglePhase phase) {
+        return phases.get(phase);
+    }
+
+    public long getSearchCount() {
+        return searchCount;
+    }
+
+    public long getCandidateCount() {
+        return candidateCount;
+    }
+
+    public double getCandidatesPerSearch() {
+        return searchCount == 0 ? 0 : (double) candidateCount / searchCount;
+    }
+
+    public ShingleCacheStats getCacheStats() {
+        return cacheStats;
+    }
+
+    @Override
+    public String toString() {
+        return "searches=" + searchCount + " candidates=" + candidateCount + " phases=" + phases +
+                " cache: " + cacheStats;
+    }
+}
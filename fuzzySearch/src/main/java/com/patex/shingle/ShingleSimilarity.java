@@ -0,0 +1,260 @@
+package com.patex.shingle;
+
+import com.patex.shingle.byteSet.BlockedBloomFilter;
+import com.patex.shingle.byteSet.LongArrays;
+
+/**
+ * Similarity of two shingle sets.
+ * Sets are similar if smaller one has at least 70% of size of the bigger one
+ * and not more than 20% of its shingles are missed in the bigger one
+ */
+public final class ShingleSimilarity {
+
+    private static final float MIN_SIZE_RATIO = 0.7f;
+    private static final int MISMATCH_DIVIDER = 5;
+    private static final int FILTER_SAMPLE_SIZE = 64;
+    private static final int FILTER_MIN_SAMPLE_HITS = FILTER_SAMPLE_SIZE / 2;
+
+    private final int smallerSize;
+    private final int biggerSize;
+    private final int matched;
+
+    ShingleSimilarity(int smallerSize, int biggerSize, int matched) {
+        this.smallerSize = smallerSize;
+        this.biggerSize = biggerSize;
+        this.matched = matched;
+    }
+
+    public int getMatched() {
+        return matched;
+    }
+
+    /**
+     * @return part of the smaller set found in the bigger one
+     */
+    public float getContainment() {
+        return smallerSize == 0 ? 0f : (float) matched / smallerSize;
+    }
+
+    public float getJaccard() {
+        int union = smallerSize + biggerSize - matched;
+        return union == 0 ? 0f : (float) matched / union;
+    }
+
+    public boolean isSimilar() {
+        return isSizeSimilar(smallerSize, biggerSize) && smallerSize - matched <= mismatchBudget(smallerSize);
+    }
+
+    static boolean isSizeSimilar(int smallerSize, int biggerSize) {
+        return biggerSize == 0 || (float) smallerSize / (float) biggerSize >= MIN_SIZE_RATIO;
+    }
+
+    static int mismatchBudget(int smallerSize) {
+        return smallerSize / MISMATCH_DIVIDER;
+    }
+
+    /**
+     * Counts common hashes by merge of two sorted arrays
+     */
+    static ShingleSimilarity of(SortedShingler first, SortedShingler second) {
+        SortedShingler smaller = first.size() > second.size() ? second : first;
+        SortedShingler bigger = smaller == first ? second : first;
+        int matched = intersect(smaller, bigger, Integer.MAX_VALUE, Integer.MAX_VALUE);
+        return new ShingleSimilarity(smaller.size(), bigger.size(), Math.max(matched, 0));
+    }
+
+    /**
+     * @return upper bound of Jaccard of sets with these sizes
+     */
+    static float maxJaccard(int firstSize, int secondSize) {
+        int bigger = Math.max(firstSize, secondSize);
+        return bigger == 0 ? 0f : (float) Math.min(firstSize, secondSize) / bigger;
+    }
+
+    /**
+     * Counts common hashes, but merge stops as soon as Jaccard can't reach {@code minJaccard}
+     *
+     * @return null if Jaccard is less than minJaccard
+     */
+    static ShingleSimilarity of(SortedShingler first, SortedShingler second, float minJaccard) {
+        SortedShingler smaller = first.size() > second.size() ? second : first;
+        SortedShingler bigger = smaller == first ? second : first;
+        // jaccard = m / (n1 + n2 - m) >= minJaccard, when m >= minJaccard * (n1 + n2) / (1 + minJaccard)
+        int required = (int) Math.ceil(minJaccard * (smaller.size() + bigger.size()) / (1 + minJaccard));
+        int budget = smaller.size() - required;
+        if (budget < 0) {
+            return null;
+        }
+        int matched = intersect(smaller, bigger, Integer.MAX_VALUE, budget);
+        if (matched < 0) {
+            return null;
+        }
+        ShingleSimilarity similarity = new ShingleSimilarity(smaller.size(), bigger.size(), matched);
+        return similarity.getJaccard() >= minJaccard ? similarity : null;
+    }
+
+    /**
+     * Estimates similarity of two bottom-k sketches of the same k.
+     * Jaccard is the part of common hashes among k smallest hashes of the union, it is unbiased.
+     * Sketch with less than k hashes has the whole set, size of bigger set is estimated by the k-th hash as
+     * (k - 1) / u, where u is the k-th hash mapped to [0, 1). Sizes and matched count are estimates too
+     */
+    static ShingleSimilarity ofSketches(SortedShingler first, SortedShingler second, int k) {
+        int stride = first.getStride();
+        if (stride != second.getStride()) {
+            throw new IllegalArgumentException("Different hash sizes: " + first.getByteArraySize() +
+                    " and " + second.getByteArraySize());
+        }
+        int n = Math.min(first.size(), k);
+        int m = Math.min(second.size(), k);
+        int i = 0;
+        int j = 0;
+        int union = 0;
+        int common = 0;
+        while (union < k && (i < n || j < m)) {
+            int cmp;
+            if (i == n) {
+                cmp = 1;
+            } else if (j == m) {
+                cmp = -1;
+            } else {
+                cmp = LongArrays.compare(first.get(i * stride), first.get(i * stride + stride - 1),
+                        second.get(j * stride), second.get(j * stride + stride - 1));
+            }
+            if (cmp == 0) {
+                common++;
+                i++;
+                j++;
+            } else if (cmp < 0) {
+                i++;
+            } else {
+                j++;
+            }
+            union++;
+        }
+        double jaccard = union == 0 ? 0 : (double) common / union;
+        double firstSize = estimateSize(first, k);
+        double secondSize = estimateSize(second, k);
+        double matched = Math.min(jaccard * (firstSize + secondSize) / (1 + jaccard),
+                Math.min(firstSize, secondSize));
+        return new ShingleSimilarity((int) Math.round(Math.min(firstSize, secondSize)),
+                (int) Math.round(Math.max(firstSize, secondSize)), (int) Math.round(matched));
+    }
+
+    private static double estimateSize(SortedShingler sketch, int k) {
+        if (sketch.size() < k) {
+            return sketch.size();
+        }
+        double u = sketch.get((k - 1) * sketch.getStride()) * 0x1p-64 + 0.5;
+        return (k - 1) / Math.max(u, Double.MIN_NORMAL);
+    }
+
+    /**
+     * Same result as {@code of(first, second).isSimilar()}, but merge stops as soon as result is known.
+     * If bigger set has filter, a sample of hashes is checked against it first, so a similar pair
+     * is rejected with probability below 2e-8, dissimilar pairs are never accepted
+     */
+    static boolean isSimilar(SortedShingler first, SortedShingler second) {
+        SortedShingler smaller = first.size() > second.size() ? second : first;
+        SortedShingler bigger = smaller == first ? second : first;
+        if (!isSizeSimilar(smaller.size(), bigger.size())) {
+            return false;
+        }
+        if (isFilteredOut(smaller, bigger)) {
+            return false;
+        }
+        int budget = mismatchBudget(smaller.size());
+        return intersect(smaller, bigger, smaller.size() - budget, budget) >= 0;
+    }
+
+    /**
+     * Checks evenly spaced sample of the smaller set against filter of the bigger one.
+     * Filter doesn't have false negatives, so a similar pair has at least 80% of sample hits,
+     * probability that it has less than half of 64 hits is about 2e-8
+     */
+    private static boolean isFilteredOut(SortedShingler smaller, SortedShingler bigger) {
+        BlockedBloomFilter filter = bigger.getFilter();
+        int n = smaller.size();
+        if (filter == null || n < FILTER_SAMPLE_SIZE * 2 || smaller.getStride() != bigger.getStride()) {
+            return false;
+        }
+        int hits = 0;
+        for (int s = 0; s < FILTER_SAMPLE_SIZE; s++) {
+            if (filter.mightContain(smaller.filterKey((int) ((long) s * n / FILTER_SAMPLE_SIZE)))) {
+                hits++;
+            }
+        }
+        return hits < FILTER_MIN_SAMPLE_HITS;
+    }
+
+    /**
+     * @return number of common hashes, or exactly {@code enough} if it is reached,
+     * or -1 if more than {@code budget} hashes of smaller are missed in bigger
+     */
+    private static int intersect(SortedShingler smaller, SortedShingler bigger, int enough, int budget) {
+        if (smaller.getStride() != bigger.getStride()) {
+            throw new IllegalArgumentException("Different hash sizes: " + smaller.getByteArraySize() +
+                    " and " + bigger.getByteArraySize());
+        }
+        return smaller.getStride() == 1 ?
+                intersectLongs(smaller, bigger, enough, budget) :
+                intersectPairs(smaller, bigger, enough, budget);
+    }
+
+    private static int intersectLongs(SortedShingler smaller, SortedShingler bigger, int enough, int budget) {
+        int n = smaller.size();
+        int m = bigger.size();
+        int i = 0;
+        int j = 0;
+        int matched = 0;
+        int missed = 0;
+        while (i < n && j < m) {
+            long a = smaller.get(i);
+            long b = bigger.get(j);
+            int equal = a == b ? 1 : 0;
+            int less = a < b ? 1 : 0;
+            matched += equal;
+            missed += less;
+            i += equal | less;
+            j += a >= b ? 1 : 0;
+            if (matched >= enough) {
+                return enough;
+            }
+            if (missed > budget) {
+                return -1;
+            }
+        }
+        return missed + n - i > budget ? -1 : matched;
+    }
+
+    private static int intersectPairs(SortedShingler smaller, SortedShingler bigger, int enough, int budget) {
+        int n = smaller.size();
+        int m = bigger.size();
+        int i = 0;
+        int j = 0;
+        int matched = 0;
+        int missed = 0;
+        while (i < n && j < m) {
+            int cmp = Long.compare(smaller.get(i * 2), bigger.get(j * 2));
+            if (cmp == 0) {
+                cmp = Long.compare(smaller.get(i * 2 + 1), bigger.get(j * 2 + 1));
+            }
+            if (cmp == 0) {
+                matched++;
+                i++;
+                j++;
+                if (matched >= enough) {
+                    return enough;
+                }
+            } else if (cmp < 0) {
+                i++;
+                if (++missed > budget) {
+                    return -1;
+                }
+            } else {
+                j++;
+            }
+        }
+        return missed + n - i > budget ? -1 : matched;
+    }
+}
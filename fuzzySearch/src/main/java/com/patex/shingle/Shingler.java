@@ -7,4 +7,9 @@ public interface Shingler extends Iterable<byte[]>{
     boolean contains(byte[] shingleHash);
 
     int getByteArraySize();
+
+    /**
+     * @return SimHash fingerprint of shingles, see {@link SimHash}
+     */
+    long getSimHash();
 }
@@ -0,0 +1,89 @@
+package com.patex.shingle;
+
+import com.patex.shingle.byteSet.LongArrays;
+
+/**
+ * 64 bit SimHash fingerprint of shingles, every distinct shingle votes for bits of the first 8 bytes of its hash.
+ * Hamming distance of fingerprints estimates angle between shingle sets: distance / 64 ~ angle / pi.
+ * <p>
+ * Similar sets (see {@link ShingleSimilarity}) have cosine at least 0.8 * sqrt(0.7), so distance of their
+ * fingerprints is at least {@link #REJECT_DISTANCE} with probability below 1e-6, such pairs are rejected.
+ * Sets with cosine below 0.7 have distance up to {@link #ACCEPT_DISTANCE} with probability below 2e-5,
+ * which is still too much for a verdict, so close fingerprints only put candidate first
+ */
+final class SimHash {
+
+    static final int ACCEPT_DISTANCE = 3;
+    static final int REJECT_DISTANCE = 36;
+
+    /**
+     * Bit sliced counters of ones for every bit position, plane j keeps bit j of all 64 counters,
+     * so adding hash is a carry propagation which stops after 2 planes on average
+     */
+    private final long[] planes = new long[32];
+    private long count = 0;
+
+    void add(long hash) {
+        long carry = hash;
+        for (int j = 0; carry != 0; j++) {
+            long next = planes[j] & carry;
+            planes[j] ^= carry;
+            carry = next;
+        }
+        count++;
+    }
+
+    void add(byte[] hash) {
+        add(key(hash));
+    }
+
+    /**
+     * @return fingerprint with bits which are set in more than half of hashes
+     */
+    long get() {
+        long result = 0;
+        for (int i = 0; i < 64; i++) {
+            long ones = 0;
+            for (int j = 0; j < planes.length; j++) {
+                ones |= (planes[j] >>> i & 1) << j;
+            }
+            if (ones * 2 > count) {
+                result |= 1L << i;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Fingerprint of distinct shingles, the same for any shingler of the same set
+     */
+    static long of(Shingler shingler) {
+        SimHash simHash = new SimHash();
+        if (shingler instanceof SortedShingler) {
+            SortedShingler sorted = (SortedShingler) shingler;
+            for (int i = 0; i < sorted.size(); i++) {
+                simHash.add(sorted.get(i * sorted.getStride()));
+            }
+        } else {
+            for (byte[] hash : shingler) {
+                simHash.add(hash);
+            }
+        }
+        return simHash.get();
+    }
+
+    static int distance(long first, long second) {
+        return Long.bitCount(first ^ second);
+    }
+
+    private static long key(byte[] hash) {
+        if (hash.length >= 8) {
+            return LongArrays.toLong(hash, 0);
+        }
+        long key = 0;
+        for (byte b : hash) {
+            key = key << 8 | b & 0xff;
+        }
+        return MinHash.mix(key);
+    }
+}
@@ -0,0 +1,189 @@
+package com.patex.shingle;
+
+import com.google.common.collect.HashMultimap;
+import com.google.common.collect.SetMultimap;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Index of SimHash fingerprints, finds fingerprints within {@link SimHash#ACCEPT_DISTANCE} bits.
+ * Fingerprint is split to {@link SimHash#ACCEPT_DISTANCE} + 1 blocks, every table is keyed by one block,
+ * as if fingerprint was permuted to put this block first. Fingerprints within the distance
+ * have at least one equal block, so lookup checks only fingerprints from one bucket of every table.
+ * <p>
+ * Saved index has shingling settings in its header, index saved with other settings isn't loaded
+ */
+class SimHashIndex<ID> {
+
+    private static final int MAGIC = 0x53484932;
+    private static final int TABLES = SimHash.ACCEPT_DISTANCE + 1;
+    private static final int BLOCK_BITS = 64 / TABLES;
+
+    private final byte hasherId;
+    private final int coef;
+    private final int byteArraySize;
+    private final int sketchSize;
+    private final SetMultimap<Integer, ID> buckets = HashMultimap.create();
+    private final Map<ID, Long> fingerprints = new HashMap<>();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private volatile boolean changed = false;
+
+    SimHashIndex(byte hasherId, int coef, int byteArraySize, int sketchSize) {
+        this.hasherId = hasherId;
+        this.coef = coef;
+        this.byteArraySize = byteArraySize;
+        this.sketchSize = sketchSize;
+    }
+
+    /**
+     * @return ids of fingerprints within {@link SimHash#ACCEPT_DISTANCE} bits, without id itself
+     */
+    Set<ID> findNear(ID id, long fingerprint) {
+        Set<ID> result = new HashSet<>();
+        lock.readLock().lock();
+        try {
+            for (int table = 0; table < TABLES; table++) {
+                for (ID candidate : buckets.get(bucketKey(table, fingerprint))) {
+                    if (SimHash.distance(fingerprints.get(candidate), fingerprint) <= SimHash.ACCEPT_DISTANCE) {
+                        result.add(candidate);
+                    }
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        result.remove(id);
+        return result;
+    }
+
+    /**
+     * @return fingerprint or null if id isn't indexed
+     */
+    Long get(ID id) {
+        lock.readLock().lock();
+        try {
+            return fingerprints.get(id);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    void add(ID id, long fingerprint) {
+        lock.writeLock().lock();
+        try {
+            Long old = fingerprints.get(id);
+            if (old != null && old == fingerprint) {
+                return;
+            }
+            removeUnderLock(id);
+            fingerprints.put(id, fingerprint);
+            for (int table = 0; table < TABLES; table++) {
+                buckets.put(bucketKey(table, fingerprint), id);
+            }
+            changed = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    void remove(ID id) {
+        lock.writeLock().lock();
+        try {
+            removeUnderLock(id);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void removeUnderLock(ID id) {
+        Long fingerprint = fingerprints.remove(id);
+        if (fingerprint != null) {
+            for (int table = 0; table < TABLES; table++) {
+                buckets.remove(bucketKey(table, fingerprint), id);
+            }
+            changed = true;
+        }
+    }
+
+    private static int bucketKey(int table, long fingerprint) {
+        int block = (int) (fingerprint >>> table * BLOCK_BITS) & (1 << BLOCK_BITS) - 1;
+        return table << BLOCK_BITS | block;
+    }
+
+    void clear() {
+        lock.writeLock().lock();
+        try {
+            buckets.clear();
+            fingerprints.clear();
+            changed = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    int size() {
+        lock.readLock().lock();
+        try {
+            return fingerprints.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    boolean isChanged() {
+        return changed;
+    }
+
+    byte[] toBytes() throws IOException {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        lock.readLock().lock();
+        try (ObjectOutputStream oos = new ObjectOutputStream(baos)) {
+            oos.writeInt(MAGIC);
+            oos.writeByte(hasherId);
+            oos.writeInt(coef);
+            oos.writeInt(byteArraySize);
+            oos.writeInt(sketchSize);
+            oos.writeInt(fingerprints.size());
+            for (Map.Entry<ID, Long> entry : fingerprints.entrySet()) {
+                oos.writeObject(entry.getKey());
+                oos.writeLong(entry.getValue());
+            }
+            changed = false;
+        } finally {
+            lock.readLock().unlock();
+        }
+        return baos.toByteArray();
+    }
+
+    /**
+     * @return false if index was saved by other version or with other shingling settings
+     */
+    @SuppressWarnings("unchecked")
+    boolean load(InputStream is) throws IOException {
+        try (ObjectInputStream ois = new ObjectInputStream(is)) {
+            if (ois.readInt() != MAGIC || ois.readByte() != hasherId || ois.readInt() != coef ||
+                    ois.readInt() != byteArraySize || ois.readInt() != sketchSize) {
+                return false;
+            }
+            int size = ois.readInt();
+            for (int i = 0; i < size; i++) {
+                ID id = (ID) ois.readObject();
+                add(id, ois.readLong());
+            }
+            changed = false;
+            return true;
+        } catch (ClassNotFoundException e) {
+            throw new IOException(e.getMessage(), e);
+        }
+    }
+}
@@ -0,0 +1,231 @@
+package com.patex.shingle;
+
+import com.patex.shingle.byteSet.BlockedBloomFilter;
+import com.patex.shingle.byteSet.ByteSetFactory;
+import com.patex.shingle.byteSet.LongArrays;
+
+import java.nio.LongBuffer;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Read only shingler over sorted 8 or 16 byte hashes, buffer could be memory mapped cache file
+ */
+class SortedShingler implements Shingler {
+
+    private final LongBuffer shingles;
+    private final int byteArraySize;
+    private final int stride;
+    private final int size;
+    private final BlockedBloomFilter filter;
+    private volatile Long simHash;
+
+    SortedShingler(LongBuffer shingles, int byteArraySize) {
+        this(shingles, byteArraySize, null, null);
+    }
+
+    /**
+     * @param filter  optional filter of all hashes, it is checked before binary search
+     * @param simHash fingerprint, null if it should be computed from hashes
+     */
+    SortedShingler(LongBuffer shingles, int byteArraySize, BlockedBloomFilter filter, Long simHash) {
+        this.shingles = shingles;
+        this.byteArraySize = byteArraySize;
+        this.stride = byteArraySize / 8;
+        this.size = shingles.limit() / stride;
+        this.filter = filter;
+        this.simHash = simHash;
+    }
+
+    /**
+     * @return the same shingler if it is already sorted, null if hash size is not 8 or 16 bytes
+     */
+    static SortedShingler of(Shingler shingler) {
+        if (shingler instanceof SortedShingler) {
+            return (SortedShingler) shingler;
+        }
+        int byteArraySize = shingler.getByteArraySize();
+        if (!ByteSetFactory.isLongSetSupported(byteArraySize)) {
+            return null;
+        }
+        int stride = byteArraySize / 8;
+        long[] hashes;
+        if (shingler instanceof LongShingler) {
+            hashes = ((LongShingler) shingler).toLongArray();
+        } else {
+            hashes = new long[shingler.size() * stride];
+            int position = 0;
+            for (byte[] bytes : shingler) {
+                for (int i = 0; i < stride; i++) {
+                    hashes[position++] = LongArrays.toLong(bytes, i * 8);
+                }
+            }
+        }
+        LongArrays.sort(hashes, stride);
+        return new SortedShingler(LongBuffer.wrap(hashes), byteArraySize, null, null);
+    }
+
+    /**
+     * @return shingler over the same hashes with bloom filter, the same shingler if it already has filter
+     * or bitsPerKey isn't positive
+     */
+    SortedShingler withFilter(int bitsPerKey) {
+        if (filter != null || bitsPerKey <= 0) {
+            return this;
+        }
+        BlockedBloomFilter newFilter = BlockedBloomFilter.create(size, bitsPerKey);
+        for (int i = 0; i < size; i++) {
+            newFilter.add(filterKey(i));
+        }
+        return new SortedShingler(shingles, byteArraySize, newFilter, simHash);
+    }
+
+    /**
+     * @return bloom filter key of hash with index {@code index}
+     */
+    long filterKey(int index) {
+        return stride == 1 ?
+                BlockedBloomFilter.key(shingles.get(index), 0) :
+                BlockedBloomFilter.key(shingles.get(index * 2), shingles.get(index * 2 + 1));
+    }
+
+    /**
+     * @return null if shingler doesn't have filter
+     */
+    BlockedBloomFilter getFilter() {
+        return filter;
+    }
+
+    int getStride() {
+        return stride;
+    }
+
+    /**
+     * @return long at {@code position}, hash with index i occupies positions from i * stride
+     */
+    long get(int position) {
+        return shingles.get(position);
+    }
+
+    /**
+     * @return 8 byte shingler of the first halves of 16 byte hashes
+     */
+    SortedShingler truncate() {
+        if (stride == 1) {
+            return this;
+        }
+        long[] firsts = new long[size];
+        int count = 0;
+        for (int i = 0; i < size; i++) {
+            long first = shingles.get(i * 2);
+            if (count == 0 || firsts[count - 1] != first) {
+                firsts[count++] = first;
+            }
+        }
+        // fingerprint uses only the first 8 bytes of hashes, so it is the same if all of them are distinct
+        return new SortedShingler(LongBuffer.wrap(firsts, 0, count).slice(), 8, null,
+                count == size ? getSimHash() : null);
+    }
+
+    /**
+     * @return shingler of {@code count} smallest hashes, it is bottom-k sketch if this shingler is
+     * the whole set or a bigger sketch
+     */
+    SortedShingler prefix(int count) {
+        if (count >= size) {
+            return this;
+        }
+        LongBuffer buffer = shingles.duplicate();
+        buffer.position(0).limit(count * stride);
+        return new SortedShingler(buffer.slice(), byteArraySize, null, null);
+    }
+
+    /**
+     * @return copy of all sorted hashes
+     */
+    long[] toLongArray() {
+        long[] result = new long[size * stride];
+        LongBuffer buffer = shingles.duplicate();
+        buffer.rewind();
+        buffer.get(result);
+        return result;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public int getByteArraySize() {
+        return byteArraySize;
+    }
+
+    @Override
+    public long getSimHash() {
+        if (simHash == null) {
+            simHash = SimHash.of(this);
+        }
+        return simHash;
+    }
+
+    @Override
+    public boolean contains(byte[] shingleHash) {
+        return contains(LongArrays.toLong(shingleHash, 0), stride == 2 ? LongArrays.toLong(shingleHash, 8) : 0);
+    }
+
+    /**
+     * @param second ignored for 8 byte shingles
+     */
+    public boolean contains(long first, long second) {
+        if (filter != null && !filter.mightContain(BlockedBloomFilter.key(first, stride == 2 ? second : 0))) {
+            return false;
+        }
+        int low = 0;
+        int high = size - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int cmp = compareAt(middle, first, second);
+            if (cmp < 0) {
+                low = middle + 1;
+            } else if (cmp > 0) {
+                high = middle - 1;
+            } else {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private int compareAt(int index, long first, long second) {
+        if (stride == 1) {
+            return Long.compare(shingles.get(index), first);
+        }
+        return LongArrays.compare(shingles.get(index * 2), shingles.get(index * 2 + 1), first, second);
+    }
+
+    @Override
+    public Iterator<byte[]> iterator() {
+        return new Iterator<byte[]>() {
+            private int index = 0;
+
+            @Override
+            public boolean hasNext() {
+                return index < size;
+            }
+
+            @Override
+            public byte[] next() {
+                if (index >= size) {
+                    throw new NoSuchElementException();
+                }
+                byte[] bytes = new byte[byteArraySize];
+                for (int i = 0; i < stride; i++) {
+                    LongArrays.putLong(shingles.get(index * stride + i), bytes, i * 8);
+                }
+                index++;
+                return bytes;
+            }
+        };
+    }
+}
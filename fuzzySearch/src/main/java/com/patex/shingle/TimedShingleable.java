@@ -0,0 +1,46 @@
+package com.patex.shingle;
+
+import java.io.IOException;
+
+/**
+ * Measures time spent in the wrapped object, so lazy text parsing is separated from hashing
+ */
+class TimedShingleable implements Shingleable {
+
+    private final Shingleable shingleable;
+    private long nanos;
+
+    TimedShingleable(Shingleable shingleable) {
+        this.shingleable = shingleable;
+    }
+
+    @Override
+    public int size() {
+        return shingleable.size();
+    }
+
+    @Override
+    public boolean hasNext() {
+        long start = System.nanoTime();
+        boolean hasNext = shingleable.hasNext();
+        nanos += System.nanoTime() - start;
+        return hasNext;
+    }
+
+    @Override
+    public String next() {
+        long start = System.nanoTime();
+        String next = shingleable.next();
+        nanos += System.nanoTime() - start;
+        return next;
+    }
+
+    @Override
+    public void close() throws IOException {
+        shingleable.close();
+    }
+
+    long getNanos() {
+        return nanos;
+    }
+}
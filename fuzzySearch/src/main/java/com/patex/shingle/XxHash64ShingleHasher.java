@@ -0,0 +1,121 @@
+package com.patex.shingle;
+
+import com.patex.shingle.byteSet.LongArrays;
+
+/**
+ * XXH64 by Yann Collet, stateless
+ */
+class XxHash64ShingleHasher implements ShingleHasher {
+
+    private static final long PRIME1 = 0x9E3779B185EBCA87L;
+    private static final long PRIME2 = 0xC2B2AE3D27D4EB4FL;
+    private static final long PRIME3 = 0x165667B19E3779F9L;
+    private static final long PRIME4 = 0x85EBCA77C2B2AE63L;
+    private static final long PRIME5 = 0x27D4EB2F165667C5L;
+
+    @Override
+    public byte getId() {
+        return ShingleHashers.XXHASH64_ID;
+    }
+
+    @Override
+    public String getName() {
+        return ShingleHashers.XXHASH64;
+    }
+
+    @Override
+    public boolean isThreadSafe() {
+        return true;
+    }
+
+    @Override
+    public int getHashSize() {
+        return 8;
+    }
+
+    @Override
+    public byte[] hash(byte[] bytes) {
+        byte[] result = new byte[8];
+        LongArrays.putLong(hash64(bytes, 0, bytes.length, 0), result, 0);
+        return result;
+    }
+
+    static long hash64(byte[] data, int offset, int length, long seed) {
+        int end = offset + length;
+        int position = offset;
+        long h;
+        if (length >= 32) {
+            long v1 = seed + PRIME1 + PRIME2;
+            long v2 = seed + PRIME2;
+            long v3 = seed;
+            long v4 = seed - PRIME1;
+            int limit = end - 32;
+            do {
+                v1 = round(v1, getLong(data, position));
+                v2 = round(v2, getLong(data, position + 8));
+                v3 = round(v3, getLong(data, position + 16));
+                v4 = round(v4, getLong(data, position + 24));
+                position += 32;
+            } while (position <= limit);
+            h = Long.rotateLeft(v1, 1) + Long.rotateLeft(v2, 7) + Long.rotateLeft(v3, 12) +
+                    Long.rotateLeft(v4, 18);
+            h = mergeRound(h, v1);
+            h = mergeRound(h, v2);
+            h = mergeRound(h, v3);
+            h = mergeRound(h, v4);
+        } else {
+            h = seed + PRIME5;
+        }
+        h += length;
+        while (position + 8 <= end) {
+            h ^= round(0, getLong(data, position));
+            h = Long.rotateLeft(h, 27) * PRIME1 + PRIME4;
+            position += 8;
+        }
+        if (position + 4 <= end) {
+            h ^= (getInt(data, position) & 0xFFFFFFFFL) * PRIME1;
+            h = Long.rotateLeft(h, 23) * PRIME2 + PRIME3;
+            position += 4;
+        }
+        while (position < end) {
+            h ^= (data[position] & 0xFF) * PRIME5;
+            h = Long.rotateLeft(h, 11) * PRIME1;
+            position++;
+        }
+        h ^= h >>> 33;
+        h *= PRIME2;
+        h ^= h >>> 29;
+        h *= PRIME3;
+        h ^= h >>> 32;
+        return h;
+    }
+
+    private static long round(long acc, long input) {
+        acc += input * PRIME2;
+        acc = Long.rotateLeft(acc, 31);
+        return acc * PRIME1;
+    }
+
+    private static long mergeRound(long acc, long value) {
+        acc ^= round(0, value);
+        return acc * PRIME1 + PRIME4;
+    }
+
+    static long getLong(byte[] data, int position) {
+        return (data[position] & 0xFFL) |
+                (data[position + 1] & 0xFFL) << 8 |
+                (data[position + 2] & 0xFFL) << 16 |
+                (data[position + 3] & 0xFFL) << 24 |
+                (data[position + 4] & 0xFFL) << 32 |
+                (data[position + 5] & 0xFFL) << 40 |
+                (data[position + 6] & 0xFFL) << 48 |
+                (data[position + 7] & 0xFFL) << 56;
+    }
+
+    private static int getInt(byte[] data, int position) {
+        return data[position] & 0xFF |
+                (data[position + 1] & 0xFF) << 8 |
+                (data[position + 2] & 0xFF) << 16 |
+                (data[position + 3] & 0xFF) << 24;
+    }
+}
@@ -0,0 +1,108 @@
+package com.patex.shingle.byteSet;
+
+/**
+ * Bloom filter where all bits of a key are in one 512 bit block, so a check touches one cache line.
+ * Keys are expected to be well mixed 64 bit values: upper half selects a block, lower half bits in the block
+ */
+public final class BlockedBloomFilter {
+
+    private static final int BLOCK_WORDS = 8;
+    private static final int BLOCK_BITS = BLOCK_WORDS * 64;
+    private static final int MAX_HASH_COUNT = 8;
+
+    private final long[] bits;
+    private final int blocks;
+    private final int hashCount;
+
+    private BlockedBloomFilter(long[] bits, int hashCount) {
+        this.bits = bits;
+        this.blocks = bits.length / BLOCK_WORDS;
+        this.hashCount = hashCount;
+    }
+
+    /**
+     * @param bitsPerKey 10 bits give about 1% of false positives
+     */
+    public static BlockedBloomFilter create(int expectedKeys, int bitsPerKey) {
+        if (expectedKeys < 0 || bitsPerKey <= 0) {
+            throw new IllegalArgumentException("Illegal expected keys: " + expectedKeys +
+                    " or bits per key: " + bitsPerKey);
+        }
+        int blocks = (int) Math.max(1, ((long) expectedKeys * bitsPerKey + BLOCK_BITS - 1) / BLOCK_BITS);
+        int hashCount = (int) Math.max(1, Math.min(MAX_HASH_COUNT, Math.round(bitsPerKey * Math.log(2))));
+        return new BlockedBloomFilter(new long[blocks * BLOCK_WORDS], hashCount);
+    }
+
+    /**
+     * @param bits array returned by {@link #getBits()}, it isn't copied
+     */
+    public static BlockedBloomFilter of(long[] bits, int hashCount) {
+        if (bits.length == 0 || bits.length % BLOCK_WORDS != 0 || hashCount <= 0 || hashCount > MAX_HASH_COUNT) {
+            throw new IllegalArgumentException("Illegal bloom filter size: " + bits.length +
+                    " or hash count: " + hashCount);
+        }
+        return new BlockedBloomFilter(bits, hashCount);
+    }
+
+    public void add(long key) {
+        int offset = blockOffset(key);
+        int h = (int) key;
+        int step = h >>> 16 | 1;
+        for (int i = 0; i < hashCount; i++) {
+            int bit = h & BLOCK_BITS - 1;
+            bits[offset + (bit >>> 6)] |= 1L << bit;
+            h += step;
+        }
+    }
+
+    public boolean mightContain(long key) {
+        int offset = blockOffset(key);
+        int h = (int) key;
+        int step = h >>> 16 | 1;
+        for (int i = 0; i < hashCount; i++) {
+            int bit = h & BLOCK_BITS - 1;
+            if ((bits[offset + (bit >>> 6)] & 1L << bit) == 0) {
+                return false;
+            }
+            h += step;
+        }
+        return true;
+    }
+
+    private int blockOffset(long key) {
+        return (int) ((key >>> 32) * blocks >>> 32) * BLOCK_WORDS;
+    }
+
+    public long[] getBits() {
+        return bits;
+    }
+
+    public int getHashCount() {
+        return hashCount;
+    }
+
+    /**
+     * Key of 8 or 16 byte shingle hash stored as longs, second is 0 for 8 byte hash
+     */
+    public static long key(long first, long second) {
+        long h = first ^ Long.rotateLeft(second * 0x9E3779B97F4A7C15L, 31);
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    /**
+     * Same key as {@link #key(long, long)} for 8 and 16 byte hashes
+     */
+    public static long key(byte[] hash) {
+        if (hash.length == 8 || hash.length == 16) {
+            return key(LongArrays.toLong(hash, 0), hash.length == 16 ? LongArrays.toLong(hash, 8) : 0);
+        }
+        long first = 0;
+        for (byte b : hash) {
+            first = first * 0x100000001B3L ^ b & 0xff;
+        }
+        return key(first, hash.length);
+    }
+}
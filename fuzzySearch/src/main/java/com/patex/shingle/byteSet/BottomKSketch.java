@@ -0,0 +1,86 @@
+package com.patex.shingle.byteSet;
+
+import java.util.Arrays;
+
+/**
+ * Collects k smallest distinct 8 or 16 byte hashes, order is the same as {@link LongArrays#sort(long[], int)}.
+ * Memory is bounded by 2 * k hashes regardless of the number of added hashes:
+ * hashes are appended to buffer, full buffer is sorted and cut to k, and the biggest kept hash
+ * becomes the threshold for next hashes
+ */
+public final class BottomKSketch {
+
+    private final int k;
+    private final int stride;
+    private final int byteArraySize;
+    private final long[] buffer;
+    private int count = 0;
+    private boolean full = false;
+    private long thresholdFirst;
+    private long thresholdSecond;
+
+    public BottomKSketch(int k, int byteArraySize) {
+        if (k <= 0 || !ByteSetFactory.isLongSetSupported(byteArraySize)) {
+            throw new IllegalArgumentException("Illegal sketch size: " + k + " or byte array size: " + byteArraySize);
+        }
+        this.k = k;
+        this.byteArraySize = byteArraySize;
+        this.stride = byteArraySize / 8;
+        this.buffer = new long[2 * k * stride];
+    }
+
+    /**
+     * @param second ignored for 8 byte hashes
+     */
+    public void add(long first, long second) {
+        if (stride == 1) {
+            second = 0;
+        }
+        if (full && LongArrays.compare(first, second, thresholdFirst, thresholdSecond) >= 0) {
+            return;
+        }
+        buffer[count * stride] = first;
+        if (stride == 2) {
+            buffer[count * 2 + 1] = second;
+        }
+        if (++count == 2 * k) {
+            compact();
+        }
+    }
+
+    private void compact() {
+        long[] sorted = Arrays.copyOf(buffer, count * stride);
+        LongArrays.sort(sorted, stride);
+        int unique = 0;
+        for (int i = 0; i < count && unique < k; i++) {
+            if (unique > 0 && LongArrays.compare(sorted[i * stride], sorted[i * stride + stride - 1],
+                    buffer[(unique - 1) * stride], buffer[(unique - 1) * stride + stride - 1]) == 0) {
+                continue;
+            }
+            System.arraycopy(sorted, i * stride, buffer, unique * stride, stride);
+            unique++;
+        }
+        count = unique;
+        if (count == k) {
+            full = true;
+            thresholdFirst = buffer[(k - 1) * stride];
+            thresholdSecond = stride == 2 ? buffer[k * 2 - 1] : 0;
+        }
+    }
+
+    /**
+     * @return up to k smallest distinct hashes, sorted
+     */
+    public long[] toLongArray() {
+        compact();
+        return Arrays.copyOf(buffer, count * stride);
+    }
+
+    public int getK() {
+        return k;
+    }
+
+    public int getByteArraySize() {
+        return byteArraySize;
+    }
+}
@@ -5,7 +5,7 @@ import java.util.function.BiFunction;
 import java.util.function.Function;
 
 
-public class ByteHashSet implements Iterable<byte[]> {
+public class ByteHashSet implements ByteSet {
 
     private static final int MAXIMUM_CAPACITY = 1 << 30;
 
@@ -53,6 +53,7 @@ public class ByteHashSet implements Iterable<byte[]> {
         return (table.length - 1) & i;
     }
 
+    @Override
     public boolean contains(byte[] key) {
         int hashCode = getHashCode(key, byteArraySize);
         int index = index(hashCode);
@@ -66,6 +67,7 @@ public class ByteHashSet implements Iterable<byte[]> {
         return false;
     }
 
+    @Override
     public void add(byte[] key) {
         int hashCode = getHashCode(key, byteArraySize);
         int index = index(hashCode);
@@ -83,10 +85,12 @@ public class ByteHashSet implements Iterable<byte[]> {
         }
     }
 
+    @Override
     public int getSize() {
         return size;
     }
 
+    @Override
     public int getByteArraySize() {
         return byteArraySize;
     }
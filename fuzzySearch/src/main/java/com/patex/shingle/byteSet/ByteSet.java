@@ -0,0 +1,12 @@
+package com.patex.shingle.byteSet;
+
+public interface ByteSet extends Iterable<byte[]> {
+
+    void add(byte[] key);
+
+    boolean contains(byte[] key);
+
+    int getSize();
+
+    int getByteArraySize();
+}
@@ -10,4 +10,22 @@ public class ByteSetFactory {
         }
         return new ByteHashSet(size, byteArraySize, NodeVar::new, NodeVarNext::new);
     }
+
+    public static LongHashSet createLongSet(int size, int byteArraySize) {
+        return new LongHashSet(size, byteArraySize);
+    }
+
+    public static boolean isLongSetSupported(int byteArraySize) {
+        return byteArraySize == 8 || byteArraySize == 16;
+    }
+
+    /**
+     * @return {@link LongHashSet} if byte array size allows it, {@link ByteHashSet} otherwise
+     */
+    public static ByteSet createSet(int size, int byteArraySize) {
+        if (isLongSetSupported(byteArraySize)) {
+            return createLongSet(size, byteArraySize);
+        }
+        return createByteSet(size, byteArraySize);
+    }
 }
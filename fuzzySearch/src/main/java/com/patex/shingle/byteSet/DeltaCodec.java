@@ -0,0 +1,179 @@
+package com.patex.shingle.byteSet;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+
+/**
+ * Compact encoding of sorted hashes.
+ * Gaps between first longs of uniformly distributed hashes are geometric, so they are Rice coded:
+ * quotient of gap / 2^k in unary and k low bits, about log2(2^64 / count) + 2 bits per hash instead of 64.
+ * Second longs of 16 byte hashes are random and stored as is after the bit stream.
+ * <p>
+ * Layout: k, first long, Rice coded gaps padded to byte, second longs
+ */
+public final class DeltaCodec {
+
+    private static final int ESCAPE = 64;
+
+    private DeltaCodec() {
+    }
+
+    /**
+     * @param sorted hashes sorted by {@link LongArrays#sort(long[], int)}
+     */
+    public static byte[] encode(long[] sorted, int stride) {
+        int count = sorted.length / stride;
+        ByteArrayOutputStream out = new ByteArrayOutputStream(count * stride * 8 / 2 + 16);
+        if (count == 0) {
+            return out.toByteArray();
+        }
+        int k = riceParameter(sorted[0], sorted[(count - 1) * stride], count);
+        BitWriter writer = new BitWriter(out);
+        writer.write(k, 8);
+        writer.write(sorted[0], 64);
+        for (int i = 1; i < count; i++) {
+            long gap = sorted[i * stride] - sorted[(i - 1) * stride];
+            long quotient = gap >>> k;
+            if (Long.compareUnsigned(quotient, ESCAPE) < 0) {
+                writer.writeUnary((int) quotient);
+                writer.write(gap, k);
+            } else {
+                writer.writeUnary(ESCAPE);
+                writer.write(gap, 64);
+            }
+        }
+        writer.flush();
+        if (stride == 2) {
+            byte[] bytes = new byte[8];
+            for (int i = 0; i < count; i++) {
+                LongArrays.putLong(sorted[i * 2 + 1], bytes, 0);
+                out.write(bytes, 0, 8);
+            }
+        }
+        return out.toByteArray();
+    }
+
+    private static int riceParameter(long first, long last, int count) {
+        if (count < 2) {
+            return 0;
+        }
+        long meanGap = Long.divideUnsigned(last - first, count - 1);
+        return meanGap == 0 ? 0 : 63 - Long.numberOfLeadingZeros(meanGap);
+    }
+
+    public static long[] decode(byte[] bytes, int count, int stride) {
+        return decode(ByteBuffer.wrap(bytes), count, stride);
+    }
+
+    /**
+     * Reads hashes from the buffer position, buffer position is moved to the end of encoded hashes
+     *
+     * @throws IllegalArgumentException if buffer is shorter than count hashes
+     */
+    public static long[] decode(ByteBuffer buffer, int count, int stride) {
+        long[] result = new long[count * stride];
+        if (count == 0) {
+            return result;
+        }
+        try {
+            BitReader reader = new BitReader(buffer);
+            int k = (int) reader.read(8);
+            long previous = reader.read(64);
+            result[0] = previous;
+            for (int i = 1; i < count; i++) {
+                int quotient = reader.readUnary(ESCAPE);
+                long gap = quotient == ESCAPE ? reader.read(64) : (long) quotient << k | reader.read(k);
+                previous += gap;
+                result[i * stride] = previous;
+            }
+            if (stride == 2) {
+                for (int i = 0; i < count; i++) {
+                    result[i * 2 + 1] = buffer.getLong();
+                }
+            }
+        } catch (BufferUnderflowException e) {
+            throw new IllegalArgumentException("Broken encoded hashes", e);
+        }
+        return result;
+    }
+
+    private static class BitWriter {
+        private final ByteArrayOutputStream out;
+        private int current = 0;
+        private int bits = 0;
+
+        BitWriter(ByteArrayOutputStream out) {
+            this.out = out;
+        }
+
+        /**
+         * Writes {@code count} low bits of value, high bit first
+         */
+        void write(long value, int count) {
+            while (count > 0) {
+                int take = Math.min(8 - bits, count);
+                int chunk = (int) (value >>> count - take) & (1 << take) - 1;
+                current = current << take | chunk;
+                bits += take;
+                count -= take;
+                if (bits == 8) {
+                    out.write(current);
+                    current = 0;
+                    bits = 0;
+                }
+            }
+        }
+
+        void writeUnary(int value) {
+            for (int i = 0; i < value; i++) {
+                write(1, 1);
+            }
+            if (value < ESCAPE) {
+                write(0, 1);
+            }
+        }
+
+        void flush() {
+            if (bits > 0) {
+                out.write(current << 8 - bits);
+                current = 0;
+                bits = 0;
+            }
+        }
+    }
+
+    private static class BitReader {
+        private final ByteBuffer buffer;
+        private int current = 0;
+        private int bits = 0;
+
+        BitReader(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        long read(int count) {
+            long result = 0;
+            while (count > 0) {
+                if (bits == 0) {
+                    current = buffer.get() & 0xff;
+                    bits = 8;
+                }
+                int take = Math.min(bits, count);
+                int chunk = current >>> bits - take & (1 << take) - 1;
+                result = result << take | chunk;
+                bits -= take;
+                count -= take;
+            }
+            return result;
+        }
+
+        int readUnary(int max) {
+            int value = 0;
+            while (value < max && read(1) == 1) {
+                value++;
+            }
+            return value;
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package com.patex.shingle.byteSet;
+
+import java.util.Arrays;
+
+/**
+ * Helpers for shingle hashes stored as longs, 8 byte hash is one long, 16 byte hash is two longs in a row.
+ */
+public final class LongArrays {
+
+    private static final int INSERTION_SORT_THRESHOLD = 16;
+
+    private LongArrays() {
+    }
+
+    public static long toLong(byte[] key, int offset) {
+        return ((long) key[offset] << 56) |
+                ((long) (key[offset + 1] & 0xff) << 48) |
+                ((long) (key[offset + 2] & 0xff) << 40) |
+                ((long) (key[offset + 3] & 0xff) << 32) |
+                ((long) (key[offset + 4] & 0xff) << 24) |
+                ((long) (key[offset + 5] & 0xff) << 16) |
+                ((long) (key[offset + 6] & 0xff) << 8) |
+                ((long) key[offset + 7] & 0xff);
+    }
+
+    public static void putLong(long value, byte[] key, int offset) {
+        for (int i = 7; i >= 0; i--) {
+            key[offset + i] = (byte) value;
+            value >>>= 8;
+        }
+    }
+
+    /**
+     * Sorts hashes of {@code stride} longs each, hashes are compared by the first long, then by the second
+     */
+    public static void sort(long[] array, int stride) {
+        if (stride == 1) {
+            Arrays.sort(array);
+        } else {
+            sortPairs(array, 0, array.length / 2 - 1);
+        }
+    }
+
+    private static void sortPairs(long[] a, int low, int high) {
+        while (high - low > INSERTION_SORT_THRESHOLD) {
+            int middle = (low + high) >>> 1;
+            long pivotFirst = a[middle * 2];
+            long pivotSecond = a[middle * 2 + 1];
+            int i = low;
+            int j = high;
+            while (i <= j) {
+                while (compare(a[i * 2], a[i * 2 + 1], pivotFirst, pivotSecond) < 0) {
+                    i++;
+                }
+                while (compare(a[j * 2], a[j * 2 + 1], pivotFirst, pivotSecond) > 0) {
+                    j--;
+                }
+                if (i <= j) {
+                    swapPairs(a, i++, j--);
+                }
+            }
+            if (j - low < high - i) {
+                sortPairs(a, low, j);
+                low = i;
+            } else {
+                sortPairs(a, i, high);
+                high = j;
+            }
+        }
+        for (int i = low + 1; i <= high; i++) {
+            for (int j = i; j > low && compare(a[j * 2 - 2], a[j * 2 - 1], a[j * 2], a[j * 2 + 1]) > 0; j--) {
+                swapPairs(a, j, j - 1);
+            }
+        }
+    }
+
+    private static void swapPairs(long[] a, int i, int j) {
+        long first = a[i * 2];
+        long second = a[i * 2 + 1];
+        a[i * 2] = a[j * 2];
+        a[i * 2 + 1] = a[j * 2 + 1];
+        a[j * 2] = first;
+        a[j * 2 + 1] = second;
+    }
+
+    public static int compare(long first1, long second1, long first2, long second2) {
+        int result = Long.compare(first1, first2);
+        return result != 0 ? result : Long.compare(second1, second2);
+    }
+}
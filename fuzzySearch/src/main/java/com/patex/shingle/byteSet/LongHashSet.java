@@ -0,0 +1,215 @@
+package com.patex.shingle.byteSet;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Open addressing set for 8 and 16 byte shingle hashes.
+ * Every hash is stored as one or two longs in a single flat array, collisions are resolved by linear probing.
+ * Zero key is used to mark empty slots, so it is kept aside in {@link #containsZero}
+ */
+public class LongHashSet implements ByteSet {
+
+    private static final int MAXIMUM_CAPACITY = 1 << 29;
+    private static final int MINIMUM_CAPACITY = 16;
+
+    private final int byteArraySize;
+    private final int stride;
+    private long[] table;
+    private int mask;
+    private int size = 0;
+    private boolean containsZero = false;
+
+    LongHashSet(int initialCapacity, int byteArraySize) {
+        if (initialCapacity < 0)
+            throw new IllegalArgumentException("Illegal initial capacity: " +
+                    initialCapacity);
+        if (byteArraySize != 8 && byteArraySize != 16)
+            throw new IllegalArgumentException("Unsupported byte array size: " + byteArraySize);
+        this.byteArraySize = byteArraySize;
+        this.stride = byteArraySize / 8;
+        allocate(capacityFor(initialCapacity));
+    }
+
+    private static int capacityFor(int expectedSize) {
+        long cap = Math.max(MINIMUM_CAPACITY, (long) expectedSize * 3 / 2);
+        if (cap >= MAXIMUM_CAPACITY) {
+            return MAXIMUM_CAPACITY;
+        }
+        return Integer.highestOneBit((int) cap - 1) << 1;
+    }
+
+    private void allocate(int capacity) {
+        table = new long[capacity * stride];
+        mask = capacity - 1;
+    }
+
+    private int slot(long first, long second) {
+        long h = (first ^ (second * 0xC2B2AE3D27D4EB4FL)) * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32)) & mask;
+    }
+
+    @Override
+    public boolean contains(byte[] key) {
+        return contains(LongArrays.toLong(key, 0), stride == 2 ? LongArrays.toLong(key, 8) : 0);
+    }
+
+    /**
+     * @param second ignored for 8 byte set
+     */
+    public boolean contains(long first, long second) {
+        if (stride == 1) {
+            second = 0;
+        }
+        if (first == 0 && second == 0) {
+            return containsZero;
+        }
+        int slot = slot(first, second);
+        for (int probe = 0; probe <= mask; probe++) {
+            int pos = slot * stride;
+            long f = table[pos];
+            long s = stride == 2 ? table[pos + 1] : 0;
+            if (f == first && s == second) {
+                return true;
+            }
+            if (f == 0 && s == 0) {
+                return false;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return false;
+    }
+
+    @Override
+    public void add(byte[] key) {
+        add(LongArrays.toLong(key, 0), stride == 2 ? LongArrays.toLong(key, 8) : 0);
+    }
+
+    /**
+     * @param second ignored for 8 byte set
+     * @throws IllegalStateException if set of the maximum capacity is full
+     */
+    public void add(long first, long second) {
+        if (stride == 1) {
+            second = 0;
+        }
+        if (first == 0 && second == 0) {
+            if (!containsZero) {
+                containsZero = true;
+                size++;
+            }
+            return;
+        }
+        if (insert(first, second)) {
+            size++;
+            if (size * 3L > (mask + 1) * 2L && mask + 1 < MAXIMUM_CAPACITY) {
+                rehash((mask + 1) << 1);
+            }
+        }
+    }
+
+    private boolean insert(long first, long second) {
+        int slot = slot(first, second);
+        for (int probe = 0; probe <= mask; probe++) {
+            int pos = slot * stride;
+            long f = table[pos];
+            long s = stride == 2 ? table[pos + 1] : 0;
+            if (f == 0 && s == 0) {
+                table[pos] = first;
+                if (stride == 2) {
+                    table[pos + 1] = second;
+                }
+                return true;
+            }
+            if (f == first && s == second) {
+                return false;
+            }
+            slot = (slot + 1) & mask;
+        }
+        throw new IllegalStateException("Set is full, it can't have more than " + MAXIMUM_CAPACITY + " hashes");
+    }
+
+    private void rehash(int newCapacity) {
+        long[] oldTable = table;
+        allocate(newCapacity);
+        for (int pos = 0; pos < oldTable.length; pos += stride) {
+            long f = oldTable[pos];
+            long s = stride == 2 ? oldTable[pos + 1] : 0;
+            if (f != 0 || s != 0) {
+                insert(f, s);
+            }
+        }
+    }
+
+    @Override
+    public int getSize() {
+        return size;
+    }
+
+    @Override
+    public int getByteArraySize() {
+        return byteArraySize;
+    }
+
+    @Override
+    public Iterator<byte[]> iterator() {
+        return new LongIterator();
+    }
+
+    /**
+     * @return all hashes in table order, {@code stride} longs per hash
+     */
+    public long[] toLongArray() {
+        long[] result = new long[size * stride];
+        int position = containsZero ? stride : 0;
+        for (int pos = 0; pos < table.length; pos += stride) {
+            if (table[pos] != 0 || stride == 2 && table[pos + 1] != 0) {
+                result[position++] = table[pos];
+                if (stride == 2) {
+                    result[position++] = table[pos + 1];
+                }
+            }
+        }
+        return result;
+    }
+
+    private class LongIterator implements Iterator<byte[]> {
+        private int position = -stride;
+        private boolean zeroPending = containsZero;
+
+        LongIterator() {
+            nextSlot();
+        }
+
+        private void nextSlot() {
+            for (position += stride; position < table.length; position += stride) {
+                if (table[position] != 0 || stride == 2 && table[position + 1] != 0) {
+                    return;
+                }
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return zeroPending || position < table.length;
+        }
+
+        @Override
+        public byte[] next() {
+            byte[] bytes = new byte[byteArraySize];
+            if (zeroPending) {
+                zeroPending = false;
+                return bytes;
+            }
+            if (position >= table.length) {
+                throw new NoSuchElementException();
+            }
+            LongArrays.putLong(table[position], bytes, 0);
+            if (stride == 2) {
+                LongArrays.putLong(table[position + 1], bytes, 8);
+            }
+            nextSlot();
+            return bytes;
+        }
+    }
+}
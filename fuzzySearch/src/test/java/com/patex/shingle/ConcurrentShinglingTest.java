@@ -0,0 +1,79 @@
+package com.patex.shingle;
+
+import com.patex.shingle.byteSet.ByteSet;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+@RunWith(Parameterized.class)
+public class ConcurrentShinglingTest {
+
+    private static final int THREADS = 8;
+
+    private final TestBooks testBooks = new TestBooks(1);
+
+    @Parameterized.Parameter
+    public String hasher;
+
+    @Parameterized.Parameters(name = "{0}")
+    public static Iterable<String> data() {
+        return Arrays.asList(ShingleHashers.MD5, ShingleHashers.XXHASH64, ShingleHashers.MURMUR3_128,
+                ShingleHashers.ROLLING);
+    }
+
+    @Test
+    public void testSameShinglesFromAllThreads() throws Exception {
+        List<List<String>> corpus = Stream.generate(() -> testBooks.createBook(3000)).
+                limit(20).collect(Collectors.toList());
+        List<Set<String>> expected = new ArrayList<>();
+        LoadedShinglerFactory single = new LoadedShinglerFactory(1, 0, ShingleHashers.forName(hasher));
+        for (List<String> book : corpus) {
+            expected.add(toStrings(single.createShingles(TestBooks.toShingleable(book))));
+        }
+
+        LoadedShinglerFactory shared = new LoadedShinglerFactory(1, 0, ShingleHashers.forName(hasher));
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<List<Set<String>>>> futures = new ArrayList<>();
+            for (int thread = 0; thread < THREADS; thread++) {
+                futures.add(executor.submit((Callable<List<Set<String>>>) () -> {
+                    start.await();
+                    List<Set<String>> result = new ArrayList<>();
+                    for (List<String> book : corpus) {
+                        result.add(toStrings(shared.createShingles(TestBooks.toShingleable(book))));
+                    }
+                    return result;
+                }));
+            }
+            start.countDown();
+            for (Future<List<Set<String>>> future : futures) {
+                Assert.assertEquals(expected, future.get());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static Set<String> toStrings(ByteSet byteSet) {
+        Set<String> result = new HashSet<>();
+        for (byte[] bytes : byteSet) {
+            result.add(Arrays.toString(bytes));
+        }
+        return result;
+    }
+}
@@ -0,0 +1,107 @@
+package com.patex.shingle;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+public class MinHashIndexTest {
+
+    private final Map<String, List<String>> books = new HashMap<>();
+    private final TestBooks testBooks = new TestBooks(2);
+
+    @Test
+    public void testFindSimilar() {
+        ShingleSearch<List<String>, String> search = createSearch();
+        List<String> content = testBooks.createBook(300);
+        List<String> similar = new ArrayList<>(content);
+        similar.add(content.size() / 2, testBooks.randomWord());
+        register(similar);
+        search.addToIndex(similar);
+        Assert.assertEquals(Optional.of(similar), search.findSimilar(register(content)));
+    }
+
+    @Test
+    public void testNonSimilar() {
+        ShingleSearch<List<String>, String> search = createSearch();
+        for (int i = 0; i < 20; i++) {
+            search.addToIndex(register(testBooks.createBook(300)));
+        }
+        Assert.assertFalse(search.findSimilar(register(testBooks.createBook(300))).isPresent());
+    }
+
+    @Test
+    public void testSearchedAddedToIndex() {
+        ShingleSearch<List<String>, String> search = createSearch();
+        List<String> content = register(testBooks.createBook(300));
+        Assert.assertFalse(search.findSimilar(content).isPresent());
+        Assert.assertTrue(search.findSimilar(register(new ArrayList<>(content))).isPresent());
+    }
+
+    @Test
+    public void testInvalidate() {
+        ShingleSearch<List<String>, String> search = createSearch();
+        List<String> content = register(testBooks.createBook(300));
+        search.addToIndex(content);
+        search.invalidate(content);
+        Assert.assertTrue(search.isIndexEmpty());
+        Assert.assertFalse(search.findSimilar(register(new ArrayList<>(content))).isPresent());
+    }
+
+    @Test
+    public void testSaveLoad() throws Exception {
+        MemoryStorage storage = new MemoryStorage();
+        ShingleSearch<List<String>, String> search = createSearch();
+        search.setStorage(storage);
+        List<String> content = register(testBooks.createBook(300));
+        search.addToIndex(content);
+        search.saveIndex();
+
+        ShingleSearch<List<String>, String> loaded = createSearch();
+        loaded.setStorage(storage);
+        Assert.assertFalse(loaded.isIndexEmpty());
+        Assert.assertEquals(Optional.of(content), loaded.findSimilar(register(new ArrayList<>(content))));
+    }
+
+    private ShingleSearch<List<String>, String> createSearch() {
+        return new ShingleSearch<>(new MinHashIndex<>(books::get), TestBooks::toShingleable, this::id, 1, 0);
+    }
+
+    private List<String> register(List<String> book) {
+        books.put(id(book), book);
+        return book;
+    }
+
+    private String id(List<String> book) {
+        return System.identityHashCode(book) + "";
+    }
+
+    private static class MemoryStorage implements ShingleCacheStorage<List<String>> {
+        private byte[] index;
+
+        @Override
+        public InputStream load(List<String> strings) {
+            return null;
+        }
+
+        @Override
+        public void save(byte[] bytes, List<String> strings) {
+        }
+
+        @Override
+        public InputStream loadSearchIndex() {
+            return index == null ? null : new ByteArrayInputStream(index);
+        }
+
+        @Override
+        public void saveSearchIndex(byte[] bytes) {
+            index = bytes;
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package com.patex.shingle;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+public class ParallelCandidateMatcherTest {
+
+    private final ExecutorService executor = Executors.newFixedThreadPool(8);
+    private final TestBooks testBooks = new TestBooks(7);
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void testParallelismLimit() {
+        ParallelCandidateMatcher<Integer> matcher = new ParallelCandidateMatcher<>(executor, 2);
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        List<Integer> found = matcher.findAll(range(100), i -> {
+            maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+            sleep();
+            running.decrementAndGet();
+            return i % 10 == 0;
+        });
+        Assert.assertEquals(Arrays.asList(0, 10, 20, 30, 40, 50, 60, 70, 80, 90), found);
+        Assert.assertTrue(maxRunning.get() <= 2);
+    }
+
+    @Test
+    public void testStopOnFirstHit() {
+        ParallelCandidateMatcher<Integer> matcher = new ParallelCandidateMatcher<>(executor, 4);
+        AtomicInteger checked = new AtomicInteger();
+        Optional<Integer> found = matcher.findAny(range(1000), i -> {
+            checked.incrementAndGet();
+            sleep();
+            return i == 5;
+        });
+        Assert.assertEquals(Optional.of(5), found);
+        Assert.assertTrue(checked.get() < 20);
+    }
+
+    @Test
+    public void testNotFound() {
+        ParallelCandidateMatcher<Integer> matcher = new ParallelCandidateMatcher<>(executor, 4);
+        Assert.assertFalse(matcher.findAny(range(100), i -> false).isPresent());
+    }
+
+    @Test(expected = RuntimeException.class)
+    public void testException() {
+        ParallelCandidateMatcher<Integer> matcher = new ParallelCandidateMatcher<>(executor, 4);
+        matcher.findAny(range(100), i -> {
+            throw new IllegalStateException();
+        });
+    }
+
+    @Test
+    public void testParallelSearch() {
+        List<List<String>> books = Stream.generate(() -> testBooks.createBook(300)).limit(20).collect(Collectors.toList());
+        List<String> content = books.get(13);
+        List<String> similar = new ArrayList<>(content);
+        similar.set(content.size() / 2, testBooks.randomWord());
+        ShingleSearch<List<String>, List<String>> search = new ShingleSearch<>(book -> books,
+                TestBooks::toShingleable, book -> book,
+                new ShingleSearchConfig().setExecutor(executor).setParallelism(4));
+        Assert.assertEquals(Optional.of(content), search.findSimilar(similar));
+        Assert.assertEquals(Arrays.asList(content), search.findSimilarStream(similar).collect(Collectors.toList()));
+        Assert.assertFalse(search.findSimilar(testBooks.createBook(300)).isPresent());
+    }
+
+    private List<Integer> range(int size) {
+        return IntStream.range(0, size).boxed().collect(Collectors.toList());
+    }
+
+    private void sleep() {
+        try {
+            Thread.sleep(5);
+        } catch (InterruptedException e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package com.patex.shingle;
+
+import com.patex.shingle.byteSet.ByteSet;
+import com.patex.shingle.byteSet.ByteSetFactory;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+public class RollingShingleEngineTest {
+
+    private final RollingShingleEngine engine =
+            new RollingShingleEngine(1, 3, " .,", Collections.singletonList("skip"));
+
+    @Test
+    public void testShingleCount() {
+        Assert.assertEquals(0, shingles("one two").size());
+        Assert.assertEquals(1, shingles("one two three").size());
+        Assert.assertEquals(3, shingles("one two three four five").size());
+    }
+
+    @Test
+    public void testSameWindowSameHash() {
+        Set<String> first = shingles("one two three four");
+        Set<String> second = shingles("five one two three");
+        first.retainAll(second);
+        Assert.assertEquals(1, first.size());
+    }
+
+    @Test
+    public void testIgnoreCaseDelimitersSkipWordsAndParagraphs() {
+        Assert.assertEquals(shingles("one two three four five"),
+                shingles("One, two.", "", "  THREE skip four  ", "skip five."));
+    }
+
+    @Test
+    public void testWordOrder() {
+        Assert.assertNotEquals(shingles("one two three"), shingles("three two one"));
+    }
+
+    @Test
+    public void testNoCollisions() {
+        List<String> words = new TestBooks(4).createBook(10000);
+        Set<String> windows = new HashSet<>();
+        for (int i = 0; i + 3 <= words.size(); i++) {
+            windows.add(String.join(" ", words.subList(i, i + 3)).toLowerCase());
+        }
+        Assert.assertEquals(windows.size(), shingles(String.join(" ", words)).size());
+    }
+
+    private Set<String> shingles(String... paragraphs) {
+        ByteSet byteSet = ByteSetFactory.createSet(16, 16);
+        engine.fill(TestBooks.toShingleable(Arrays.asList(paragraphs)), byteSet);
+        Set<String> result = new HashSet<>();
+        for (byte[] bytes : byteSet) {
+            result.add(Arrays.toString(bytes));
+        }
+        return result;
+    }
+}
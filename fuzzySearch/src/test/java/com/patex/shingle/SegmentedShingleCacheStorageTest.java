@@ -0,0 +1,315 @@
+package com.patex.shingle;
+
+import org.apache.commons.lang3.RandomUtils;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.stream.Stream;
+
+public class SegmentedShingleCacheStorageTest {
+
+    private Path folder;
+    private SegmentedShingleCacheStorage<Long> storage;
+
+    @Before
+    public void setUp() throws IOException {
+        folder = Files.createTempDirectory("shingleSegments");
+        storage = open();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        storage.close();
+        try (Stream<Path> files = Files.walk(folder)) {
+            files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    private SegmentedShingleCacheStorage<Long> open() throws IOException {
+        return new SegmentedShingleCacheStorage<>(folder, id -> id, null, 4096);
+    }
+
+    private SegmentedShingleCacheStorage<Long> reopen() throws IOException {
+        storage.close();
+        storage = open();
+        return storage;
+    }
+
+    @Test
+    public void testSaveLoad() throws IOException {
+        Map<Long, byte[]> records = saveRecords(100);
+        assertRecords(records);
+        Assert.assertTrue(storage.getSegmentCount() > 1);
+        Assert.assertNull(storage.map(1000L));
+        Assert.assertNull(storage.load(1000L));
+    }
+
+    @Test
+    public void testMapAppended() throws IOException {
+        storage.save(new byte[]{1, 2}, 1L);
+        Assert.assertArrayEquals(new byte[]{1, 2}, bytes(storage.map(1L)));
+        storage.save(new byte[]{3}, 2L);
+        Assert.assertArrayEquals(new byte[]{3}, bytes(storage.map(2L)));
+        Assert.assertArrayEquals(new byte[]{1, 2}, bytes(storage.map(1L)));
+        Assert.assertEquals(1, storage.getSegmentCount());
+    }
+
+    @Test
+    public void testOverwriteAndRemove() throws IOException {
+        Map<Long, byte[]> records = saveRecords(10);
+        byte[] bytes = RandomUtils.nextBytes(50);
+        storage.save(bytes, 3L);
+        records.put(3L, bytes);
+        storage.remove(5L);
+        records.remove(5L);
+        assertRecords(records);
+        Assert.assertNull(storage.map(5L));
+        reopen();
+        assertRecords(records);
+        Assert.assertNull(storage.map(5L));
+    }
+
+    @Test
+    public void testRecoverWithoutIndex() throws IOException {
+        Map<Long, byte[]> records = saveRecords(50);
+        storage.flush();
+        Map<Long, byte[]> notIndexed = saveRecords(50, 100);
+        storage.remove(7L);
+        records.remove(7L);
+        records.putAll(notIndexed);
+        simulateCrash();
+        assertRecords(records);
+
+        Files.write(folder.resolve("segments.index"), new byte[]{1, 2, 3, 4, 5});
+        simulateCrash();
+        assertRecords(records);
+        Assert.assertNull(storage.map(7L));
+    }
+
+    @Test
+    public void testTornWrite() throws IOException {
+        Map<Long, byte[]> records = saveRecords(3);
+        storage.flush();
+        storage.save(RandomUtils.nextBytes(100), 10L);
+        Path last;
+        try (Stream<Path> files = Files.list(folder)) {
+            last = files.filter(path -> path.getFileName().toString().startsWith("segment-")).
+                    max(Comparator.naturalOrder()).get();
+        }
+        try (FileChannel channel = FileChannel.open(last, StandardOpenOption.WRITE)) {
+            channel.truncate(channel.size() - 10);
+        }
+        simulateCrash();
+        assertRecords(records);
+        Assert.assertNull(storage.map(10L));
+        storage.save(new byte[]{42}, 11L);
+        reopen();
+        assertRecords(records);
+        Assert.assertArrayEquals(new byte[]{42}, bytes(storage.map(11L)));
+    }
+
+    @Test
+    public void testCompaction() throws IOException {
+        Map<Long, byte[]> records = saveRecords(100);
+        int segments = storage.getSegmentCount();
+        for (long id = 0; id < 80; id++) {
+            storage.remove(id);
+            records.remove(id);
+        }
+        storage.flush();
+        Assert.assertTrue(storage.getSegmentCount() < segments);
+        assertRecords(records);
+        reopen();
+        assertRecords(records);
+        Assert.assertEquals(20, storage.size());
+    }
+
+    @Test
+    public void testCompactionKeepsTombstones() throws IOException {
+        Map<Long, byte[]> records = saveSparseSegment();
+        storage.flush();
+        Assert.assertFalse(Files.exists(segmentFile(1)));
+        Files.delete(folder.resolve("segments.index"));
+        simulateCrash();
+        assertRecords(records);
+        for (long id = 0; id < 7; id++) {
+            Assert.assertEquals(records.containsKey(id), storage.map(id) != null);
+        }
+    }
+
+    @Test
+    public void testInterruptedCompaction() throws IOException {
+        Map<Long, byte[]> records = saveSparseSegment();
+        byte[] compacted = Files.readAllBytes(segmentFile(1));
+        storage.flush();
+        Files.write(segmentFile(1), compacted);
+        simulateCrash();
+        Assert.assertFalse(Files.exists(segmentFile(1)));
+        assertRecords(records);
+        for (long id = 0; id < 7; id++) {
+            Assert.assertEquals(records.containsKey(id), storage.map(id) != null);
+        }
+    }
+
+    @Test
+    public void testCutSegment() throws IOException {
+        Map<Long, byte[]> records = saveSparseSegment();
+        try (FileChannel channel = FileChannel.open(segmentFile(2), StandardOpenOption.WRITE)) {
+            channel.truncate(0);
+        }
+        Assert.assertNull(storage.map(6L));
+        records.remove(6L);
+        assertRecords(records);
+    }
+
+    @Test
+    public void testLegacySearchIndex() throws IOException {
+        byte[][] legacyIndex = {{1, 2, 3}};
+        ShingleCacheStorage<Long> legacy = new ShingleCacheStorage<Long>() {
+            @Override
+            public InputStream load(Long id) {
+                return null;
+            }
+
+            @Override
+            public void save(byte[] bytes, Long id) {
+            }
+
+            @Override
+            public InputStream loadSearchIndex() {
+                return legacyIndex[0] == null ? null : new ByteArrayInputStream(legacyIndex[0]);
+            }
+
+            @Override
+            public void removeSearchIndex() {
+                legacyIndex[0] = null;
+            }
+        };
+        storage.close();
+        storage = new SegmentedShingleCacheStorage<>(folder, id -> id, legacy, 4096);
+        try (InputStream is = storage.loadSearchIndex()) {
+            Assert.assertArrayEquals(new byte[]{1, 2, 3}, is.readAllBytes());
+        }
+        Assert.assertNull(legacyIndex[0]);
+        try (InputStream is = storage.loadSearchIndex()) {
+            Assert.assertArrayEquals(new byte[]{1, 2, 3}, is.readAllBytes());
+        }
+    }
+
+    @Test
+    public void testLegacyImport() throws IOException {
+        Map<Long, byte[]> legacyRecords = new HashMap<>();
+        legacyRecords.put(1L, new byte[]{1, 2, 3});
+        ShingleCacheStorage<Long> legacy = new ShingleCacheStorage<Long>() {
+            @Override
+            public InputStream load(Long id) {
+                byte[] bytes = legacyRecords.get(id);
+                return bytes == null ? null : new ByteArrayInputStream(bytes);
+            }
+
+            @Override
+            public void save(byte[] bytes, Long id) {
+                legacyRecords.put(id, bytes);
+            }
+
+            @Override
+            public void remove(Long id) {
+                legacyRecords.remove(id);
+            }
+        };
+        storage.close();
+        storage = new SegmentedShingleCacheStorage<>(folder, id -> id, legacy, 4096);
+        Assert.assertArrayEquals(new byte[]{1, 2, 3}, bytes(storage.map(1L)));
+        Assert.assertTrue(legacyRecords.isEmpty());
+        Assert.assertArrayEquals(new byte[]{1, 2, 3}, bytes(storage.map(1L)));
+    }
+
+    @Test
+    public void testShingleCache() throws IOException {
+        Shingler shingler = SortedShingler.of(LoadedShingler.of(
+                new LoadedShinglerFactory(1, 8, ShingleHashers.forName(ShingleHashers.XXHASH64)).
+                        createShingles(TestBooks.toShingleable(new TestBooks(1).createBook(3000)))));
+        ShingleCache<Long> xxCache = new ShingleCache<>(ShingleHashers.XXHASH64_ID);
+        xxCache.setStorage(storage);
+        xxCache.saveToCache(shingler, 1L);
+        reopen();
+        xxCache.setStorage(storage);
+        Assert.assertEquals(shingler.size(), xxCache.getFromCache(1L).get().size());
+        ShingleCache<Long> md5Cache = new ShingleCache<>();
+        md5Cache.setStorage(storage);
+        Assert.assertFalse(md5Cache.getFromCache(1L).isPresent());
+    }
+
+    /**
+     * Three records fill a segment. Segment 0 keeps records 1 and 2, segment 1 has nothing live
+     * but tombstone of record 0, segment 2 has record 6 and tombstones of 3-5
+     */
+    private Map<Long, byte[]> saveSparseSegment() {
+        Map<Long, byte[]> records = new HashMap<>();
+        for (long id = 0; id < 4; id++) {
+            records.put(id, RandomUtils.nextBytes(1020));
+            storage.save(records.get(id), id);
+        }
+        storage.remove(0L);
+        records.remove(0L);
+        for (long id = 4; id < 7; id++) {
+            records.put(id, RandomUtils.nextBytes(1020));
+            storage.save(records.get(id), id);
+        }
+        for (long id = 3; id < 6; id++) {
+            storage.remove(id);
+            records.remove(id);
+        }
+        return records;
+    }
+
+    private Path segmentFile(int number) {
+        return folder.resolve(String.format("segment-%05d.dat", number));
+    }
+
+    private void simulateCrash() throws IOException {
+        storage = open();
+    }
+
+    private Map<Long, byte[]> saveRecords(int count) {
+        return saveRecords(0, count);
+    }
+
+    private Map<Long, byte[]> saveRecords(long from, long to) {
+        Map<Long, byte[]> records = new HashMap<>();
+        for (long id = from; id < to; id++) {
+            byte[] bytes = RandomUtils.nextBytes(RandomUtils.nextInt(1, 500));
+            storage.save(bytes, id);
+            records.put(id, bytes);
+        }
+        return records;
+    }
+
+    private void assertRecords(Map<Long, byte[]> records) throws IOException {
+        for (Map.Entry<Long, byte[]> entry : records.entrySet()) {
+            ByteBuffer buffer = storage.map(entry.getKey());
+            Assert.assertNotNull("record " + entry.getKey(), buffer);
+            Assert.assertTrue(buffer.isDirect());
+            Assert.assertArrayEquals(entry.getValue(), bytes(buffer));
+        }
+    }
+
+    private static byte[] bytes(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.duplicate().get(bytes);
+        return bytes;
+    }
+}
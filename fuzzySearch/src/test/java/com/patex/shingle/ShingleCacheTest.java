@@ -0,0 +1,325 @@
+package com.patex.shingle;
+
+import com.patex.shingle.byteSet.ByteSet;
+import com.patex.shingle.byteSet.ByteSetFactory;
+import org.apache.commons.lang3.RandomUtils;
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Optional;
+import java.util.Set;
+
+@RunWith(Parameterized.class)
+public class ShingleCacheTest {
+
+    @Parameterized.Parameter
+    public Integer byteArraySize;
+
+    @Parameterized.Parameters
+    public static Iterable<Integer> data() {
+        return Arrays.asList(8, 16, 24);
+    }
+
+    @Test
+    public void testSaveLoad() throws IOException {
+        ShingleCache<String> cache = new ShingleCache<>();
+        MemoryStorage storage = new MemoryStorage(false);
+        cache.setStorage(storage);
+        Shingler shingler = createShingler();
+        cache.saveToCache(shingler, "book");
+        assertSame(shingler, cache.getFromCache("book"));
+    }
+
+    @Test
+    public void testMapped() throws IOException {
+        ShingleCache<String> cache = new ShingleCache<>();
+        MemoryStorage storage = new MemoryStorage(true);
+        cache.setStorage(storage);
+        Shingler shingler = createShingler();
+        cache.saveToCache(shingler, "book");
+        assertSame(shingler, cache.getFromCache("book"));
+    }
+
+    @Test
+    public void testOldFormat() throws IOException {
+        ShingleCache<String> cache = new ShingleCache<>();
+        MemoryStorage storage = new MemoryStorage(true);
+        cache.setStorage(storage);
+        Shingler shingler = createShingler();
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        baos.write(ByteBuffer.allocate(8).putInt(shingler.size()).putInt(byteArraySize).array());
+        for (byte[] bytes : shingler) {
+            baos.write(bytes);
+        }
+        storage.save(baos.toByteArray(), "book");
+        assertSame(shingler, cache.getFromCache("book"));
+    }
+
+    @Test
+    public void testBroken() throws IOException {
+        ShingleCache<String> cache = new ShingleCache<>();
+        MemoryStorage storage = new MemoryStorage(true);
+        cache.setStorage(storage);
+        cache.saveToCache(createShingler(), "book");
+        storage.bytes = Arrays.copyOf(storage.bytes, storage.bytes.length - 1);
+        Assert.assertFalse(cache.getFromCache("book").isPresent());
+    }
+
+    @Test
+    public void testOtherVersion() throws IOException {
+        Assume.assumeTrue("only sorted format has versions", byteArraySize != 24);
+        ShingleCache<String> cache = new ShingleCache<>();
+        MemoryStorage storage = new MemoryStorage(true);
+        cache.setStorage(storage);
+        cache.saveToCache(createShingler(), "book");
+        Assert.assertEquals(1, ByteBuffer.wrap(storage.bytes).getInt(4));
+        ByteBuffer.wrap(storage.bytes).putInt(4, 2);
+        Assert.assertFalse(cache.getFromCache("book").isPresent());
+    }
+
+    @Test
+    public void testCompressed() throws IOException {
+        Assume.assumeTrue("only sorted format is compressed", byteArraySize != 24);
+        ShingleCache<String> cache = new ShingleCache<>();
+        MemoryStorage storage = new MemoryStorage(false);
+        cache.setStorage(storage);
+        Shingler shingler = createShingler();
+        cache.saveToCache(shingler, "book");
+        Assert.assertTrue(storage.bytes.length < shingler.size() * byteArraySize);
+    }
+
+    @Test
+    public void testRaw() throws IOException {
+        Assume.assumeTrue("only sorted format is compressed", byteArraySize != 24);
+        MemoryStorage storage = new MemoryStorage(true);
+        ShingleCache<String> cache = new ShingleCache<>();
+        cache.setStorage(storage);
+        Shingler shingler = createShingler();
+        cache.saveToCache(shingler, "book");
+        int compressedLength = storage.bytes.length;
+
+        ShingleCache<String> rawCache = new ShingleCache<>(ShingleHashers.MD5_ID, 0, 0, 0, false);
+        rawCache.setStorage(storage);
+        assertSame(shingler, rawCache.getFromCache("book"));
+        Assert.assertEquals(52 + shingler.size() * byteArraySize, storage.bytes.length);
+        assertSame(shingler, rawCache.getFromCache("book"));
+        assertSame(shingler, cache.getFromCache("book"));
+        Assert.assertEquals(compressedLength, storage.bytes.length);
+    }
+
+    @Test
+    public void testChecksum() throws IOException {
+        Assume.assumeTrue("old format doesn't have checksum", byteArraySize != 24);
+        ShingleCache<String> cache = new ShingleCache<>();
+        MemoryStorage storage = new MemoryStorage(false);
+        cache.setStorage(storage);
+        cache.saveToCache(createShingler(), "book");
+        storage.bytes[storage.bytes.length / 2] ^= 1;
+        Assert.assertFalse(cache.getFromCache("book").isPresent());
+    }
+
+    @Test
+    public void testTruncate() throws IOException {
+        Assume.assumeTrue("only 16 byte hashes are truncated", byteArraySize == 16);
+        MemoryStorage storage = new MemoryStorage(false);
+        ShingleCache<String> cache = new ShingleCache<>();
+        cache.setStorage(storage);
+        Shingler shingler = createShingler();
+        cache.saveToCache(shingler, "book");
+        ShingleCache<String> truncatingCache = new ShingleCache<>(ShingleHashers.MD5_ID, 8);
+        truncatingCache.setStorage(storage);
+        Shingler truncated = truncatingCache.getFromCache("book").get();
+        Assert.assertEquals(8, truncated.getByteArraySize());
+        Assert.assertEquals(shingler.size(), truncated.size());
+        for (byte[] bytes : shingler) {
+            Assert.assertTrue(truncated.contains(Arrays.copyOf(bytes, 8)));
+        }
+        Assert.assertEquals(8, ByteBuffer.wrap(storage.bytes).getInt(12));
+        Assert.assertFalse(cache.getFromCache("book").isPresent() &&
+                new ShingleCache<String>(ShingleHashers.MD5_ID, 16).getFromCache("book").isPresent());
+    }
+
+    @Test
+    public void testBloomFilter() throws IOException {
+        Assume.assumeTrue("only sorted format has filter", byteArraySize != 24);
+        MemoryStorage storage = new MemoryStorage(true);
+        ShingleCache<String> cache = new ShingleCache<>();
+        cache.setStorage(storage);
+        Shingler shingler = createShingler();
+        cache.saveToCache(shingler, "book");
+        Assert.assertEquals(0, ByteBuffer.wrap(storage.bytes).getInt(20));
+
+        ShingleCache<String> filterCache = new ShingleCache<>(ShingleHashers.MD5_ID, 0, 10);
+        filterCache.setStorage(storage);
+        Optional<Shingler> rewritten = filterCache.getFromCache("book");
+        assertSame(shingler, rewritten);
+        long[] filterBits = ((SortedShingler) rewritten.get()).getFilter().getBits();
+        Assert.assertEquals(filterBits.length, ByteBuffer.wrap(storage.bytes).getInt(20));
+
+        Optional<Shingler> loaded = cache.getFromCache("book");
+        assertSame(shingler, loaded);
+        Assert.assertArrayEquals(filterBits, ((SortedShingler) loaded.get()).getFilter().getBits());
+    }
+
+    @Test
+    public void testSimHash() throws IOException {
+        Assume.assumeTrue("only sorted format has fingerprint", byteArraySize != 24);
+        MemoryStorage storage = new MemoryStorage(true);
+        ShingleCache<String> cache = new ShingleCache<>();
+        cache.setStorage(storage);
+        Shingler shingler = createShingler();
+        cache.saveToCache(shingler, "book");
+        Assert.assertEquals(shingler.getSimHash(), ByteBuffer.wrap(storage.bytes).getLong(28));
+        Assert.assertEquals(shingler.getSimHash(), cache.getFromCache("book").get().getSimHash());
+    }
+
+    @Test
+    public void testSketch() throws IOException {
+        Assume.assumeTrue("only sorted format has sketches", byteArraySize != 24);
+        MemoryStorage storage = new MemoryStorage(true);
+        ShingleCache<String> cache = new ShingleCache<>();
+        cache.setStorage(storage);
+        Shingler shingler = createShingler();
+        cache.saveToCache(shingler, "book");
+
+        ShingleCache<String> sketchCache = new ShingleCache<>(ShingleHashers.MD5_ID, 0, 0, 100);
+        sketchCache.setStorage(storage);
+        Shingler sketch = sketchCache.getFromCache("book").get();
+        Assert.assertEquals(100, sketch.size());
+        Assert.assertArrayEquals(Arrays.copyOf(SortedShingler.of(shingler).toLongArray(), 100 * byteArraySize / 8),
+                SortedShingler.of(sketch).toLongArray());
+        Assert.assertEquals(100, ByteBuffer.wrap(storage.bytes).getInt(36));
+        Assert.assertEquals(100, sketchCache.getFromCache("book").get().size());
+        Assert.assertFalse(cache.getFromCache("book").isPresent());
+        ShingleCache<String> biggerSketchCache = new ShingleCache<>(ShingleHashers.MD5_ID, 0, 0, 200);
+        biggerSketchCache.setStorage(storage);
+        Assert.assertFalse(biggerSketchCache.getFromCache("book").isPresent());
+    }
+
+    @Test
+    public void testSampledIsNotCut() throws IOException {
+        Assume.assumeTrue("only sorted format has sketches", byteArraySize != 24);
+        MemoryStorage storage = new MemoryStorage(true);
+        ShingleCache<String> cache = new ShingleCache<>(ShingleHashers.MD5_ID, 0, 0, 0, true, 4);
+        cache.setStorage(storage);
+        Shingler shingler = createShingler();
+        cache.saveToCache(shingler, "book");
+        Assert.assertEquals(4, ByteBuffer.wrap(storage.bytes).getInt(44));
+
+        ShingleCache<String> sketchCache = new ShingleCache<>(ShingleHashers.MD5_ID, 0, 0, 100, true, 4);
+        sketchCache.setStorage(storage);
+        Assert.assertFalse(sketchCache.getFromCache("book").isPresent());
+        ShingleCache<String> otherCoefCache = new ShingleCache<>(ShingleHashers.MD5_ID, 0, 0, 0, true, 2);
+        otherCoefCache.setStorage(storage);
+        Assert.assertFalse(otherCoefCache.getFromCache("book").isPresent());
+        assertSame(shingler, cache.getFromCache("book"));
+    }
+
+    @Test
+    public void testOtherHasher() throws IOException {
+        MemoryStorage storage = new MemoryStorage(true);
+        ShingleCache<String> cache = new ShingleCache<>();
+        cache.setStorage(storage);
+        cache.saveToCache(createShingler(), "book");
+        ShingleCache<String> otherCache = new ShingleCache<>(ShingleHashers.XXHASH64_ID);
+        otherCache.setStorage(storage);
+        Assert.assertFalse(otherCache.getFromCache("book").isPresent());
+    }
+
+    @Test
+    public void testMemoryMappedFile() throws IOException {
+        Assume.assumeTrue("only sorted format is mapped", byteArraySize != 24);
+        File file = File.createTempFile("shingleCache", null);
+        file.deleteOnExit();
+        ShingleCache<String> cache = new ShingleCache<>();
+        cache.setStorage(new ShingleCacheStorage<String>() {
+            @Override
+            public InputStream load(String s) {
+                throw new AssertionError("cache should be mapped");
+            }
+
+            @Override
+            public ByteBuffer map(String s) throws IOException {
+                try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+                    return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                }
+            }
+
+            @Override
+            public void save(byte[] bytes, String s) {
+                try {
+                    Files.write(file.toPath(), bytes);
+                } catch (IOException e) {
+                    throw new RuntimeException(e);
+                }
+            }
+        });
+        Shingler shingler = createShingler();
+        cache.saveToCache(shingler, "book");
+        assertSame(shingler, cache.getFromCache("book"));
+    }
+
+    private void assertSame(Shingler expected, Optional<Shingler> actualOptional) {
+        Assert.assertTrue(actualOptional.isPresent());
+        Shingler actual = actualOptional.get();
+        Assert.assertEquals(expected.size(), actual.size());
+        Assert.assertEquals(expected.getByteArraySize(), actual.getByteArraySize());
+        Set<String> expectedSet = new HashSet<>();
+        for (byte[] bytes : expected) {
+            Assert.assertTrue(actual.contains(bytes));
+            expectedSet.add(Arrays.toString(bytes));
+        }
+        Set<String> actualSet = new HashSet<>();
+        for (byte[] bytes : actual) {
+            actualSet.add(Arrays.toString(bytes));
+        }
+        Assert.assertEquals(expectedSet, actualSet);
+        Assert.assertFalse(actual.contains(RandomUtils.nextBytes(byteArraySize)));
+    }
+
+    private Shingler createShingler() {
+        ByteSet set = ByteSetFactory.createSet(1000, byteArraySize);
+        for (int i = 0; i < 1000; i++) {
+            set.add(RandomUtils.nextBytes(byteArraySize));
+        }
+        return LoadedShingler.of(set);
+    }
+
+    private static class MemoryStorage implements ShingleCacheStorage<String> {
+        private final boolean mapped;
+        private byte[] bytes;
+
+        MemoryStorage(boolean mapped) {
+            this.mapped = mapped;
+        }
+
+        @Override
+        public InputStream load(String s) {
+            return bytes == null ? null : new ByteArrayInputStream(bytes);
+        }
+
+        @Override
+        public ByteBuffer map(String s) {
+            return mapped && bytes != null ? ByteBuffer.wrap(bytes).asReadOnlyBuffer() : null;
+        }
+
+        @Override
+        public void save(byte[] bytes, String s) {
+            this.bytes = bytes;
+        }
+    }
+}
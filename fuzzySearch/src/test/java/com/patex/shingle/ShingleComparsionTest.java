@@ -23,9 +23,18 @@ public class ShingleComparsionTest {
     @Parameterized.Parameter
     public Integer byteArraySize;
 
-    @Parameterized.Parameters
-    public static Iterable<Integer> data() {
-        return Arrays.asList(8,16);//TODO other size
+    @Parameterized.Parameter(1)
+    public String hasher;
+
+    @Parameterized.Parameters(name = "{0} {1}")
+    public static Iterable<Object[]> data() {
+        return Arrays.asList(new Object[][]{//TODO other size
+                {8, ShingleHashers.MD5},
+                {16, ShingleHashers.MD5},
+                {8, ShingleHashers.XXHASH64},
+                {16, ShingleHashers.MURMUR3_128},
+                {8, ShingleHashers.ROLLING},
+                {16, ShingleHashers.ROLLING}});
     }
 
     @Test
@@ -50,7 +59,7 @@ public class ShingleComparsionTest {
 
     private void checkSimilarity(List<String> content, List<String> similarContents) {
         ShingleMatcher<List<String>, List<String>> shingleMatcher =
-                new ShingleMatcher<>(this::toShingleable, o -> o, 1, 0, byteArraySize);
+                new ShingleMatcher<>(this::toShingleable, o -> o, createConfig());
         Assert.assertTrue(shingleMatcher.isSimilar(content, similarContents));
     }
 
@@ -84,11 +93,15 @@ public class ShingleComparsionTest {
         List<String> other = Stream.generate(() -> RandomStringUtils.randomAlphabetic(1 + random.nextInt(8))).
                 limit(100).collect(Collectors.toList());
         ShingleMatcher<List<String>, List<String>> shingleMatcher = new ShingleMatcher<>(this::toShingleable, o -> o,
-                1, 0, byteArraySize);
+                createConfig());
         Assert.assertFalse(shingleMatcher.isSimilar(content, other));
     }
 
 
+    private ShingleSearchConfig createConfig() {
+        return new ShingleSearchConfig().setCoef(1).setCacheSize(0).setByteArraySize(byteArraySize).setHasher(hasher);
+    }
+
     private Shingleable toShingleable(List<String> list) {
         Iterator<String> iterator = list.iterator();
         return new Shingleable() {
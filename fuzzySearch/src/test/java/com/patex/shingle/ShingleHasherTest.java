@@ -0,0 +1,49 @@
+package com.patex.shingle;
+
+import com.google.common.hash.Hashing;
+import com.patex.shingle.byteSet.LongArrays;
+import org.apache.commons.lang3.RandomUtils;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+
+public class ShingleHasherTest {
+
+    @Test
+    public void testXxHash64() {
+        Assert.assertEquals(0xEF46DB3751D8E999L, xxHash64(""));
+        Assert.assertEquals(0xD24EC4F1A98C6E5BL, xxHash64("a"));
+        Assert.assertEquals(0x44BC2CF5AD770999L, xxHash64("abc"));
+        Assert.assertEquals(0xFBCEA83C8A378BF1L, xxHash64("Nobody inspects the spammish repetition"));
+    }
+
+    private long xxHash64(String s) {
+        byte[] hash = ShingleHashers.forName(ShingleHashers.XXHASH64).get().hash(s.getBytes(StandardCharsets.UTF_8));
+        Assert.assertEquals(8, hash.length);
+        return LongArrays.toLong(hash, 0);
+    }
+
+    @Test
+    public void testMurmur3() {
+        ShingleHasher hasher = ShingleHashers.forName(ShingleHashers.MURMUR3_128).get();
+        for (int length = 0; length < 100; length++) {
+            byte[] bytes = RandomUtils.nextBytes(length);
+            byte[] hash = hasher.hash(bytes);
+            long[] expected = Murmur3ShingleHasher.hash128(bytes, 0, bytes.length, 0);
+            Assert.assertEquals(Hashing.murmur3_128().hashBytes(bytes).asLong(), expected[0]);
+            Assert.assertEquals(expected[0], LongArrays.toLong(hash, 0));
+            Assert.assertEquals(expected[1], LongArrays.toLong(hash, 8));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnknownHasher() {
+        ShingleHashers.forName("sha");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testTooShortHash() {
+        new LoadedShinglerFactory(1, 16, ShingleHashers.forName(ShingleHashers.XXHASH64));
+    }
+}
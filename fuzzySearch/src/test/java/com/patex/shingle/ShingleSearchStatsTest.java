@@ -0,0 +1,38 @@
+package com.patex.shingle;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class ShingleSearchStatsTest {
+
+    private final TestBooks testBooks = new TestBooks(7);
+
+    @Test
+    public void testCounters() {
+        List<String> book = testBooks.createBook(3000);
+        List<String> copy = new ArrayList<>(book);
+        List<String> other = testBooks.createBook(3000);
+        ShingleSearch<List<String>, Integer> search = new ShingleSearch<>(b -> Arrays.asList(other, copy),
+                TestBooks::toShingleable, System::identityHashCode,
+                new ShingleSearchConfig().setByteArraySize(8).setSimHashCheck(false));
+
+        Assert.assertEquals(copy, search.findSimilarStream(book).findFirst().orElse(null));
+        Assert.assertEquals(copy, search.findSimilarStream(book).findFirst().orElse(null));
+
+        ShingleSearchStats stats = search.getSearchStats();
+        Assert.assertEquals(2, stats.getSearchCount());
+        Assert.assertEquals(4, stats.getCandidateCount());
+        Assert.assertEquals(2, stats.getCandidatesPerSearch(), 0.0001);
+        Assert.assertEquals(3, stats.getPhase(ShinglePhase.LOAD).getCount());
+        Assert.assertEquals(3, stats.getPhase(ShinglePhase.SHINGLE).getCount());
+        Assert.assertEquals(3, stats.getPhase(ShinglePhase.CACHE_READ).getCount());
+        Assert.assertEquals(3, stats.getPhase(ShinglePhase.CACHE_WRITE).getCount());
+        Assert.assertEquals(4, stats.getPhase(ShinglePhase.COMPARE).getCount());
+        Assert.assertEquals(3, stats.getCacheStats().getHotMissCount());
+        Assert.assertTrue(stats.getCacheStats().getHotHitRate() > 0);
+    }
+}
@@ -0,0 +1,142 @@
+package com.patex.shingle;
+
+import com.patex.shingle.byteSet.ByteSet;
+import com.patex.shingle.byteSet.ByteSetFactory;
+import org.apache.commons.lang3.RandomUtils;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+@RunWith(Parameterized.class)
+public class ShingleSimilarityTest {
+
+    @Parameterized.Parameter
+    public Integer byteArraySize;
+
+    @Parameterized.Parameters
+    public static Iterable<Integer> data() {
+        return Arrays.asList(8, 16);
+    }
+
+    @Test
+    public void testScore() {
+        List<byte[]> common = randomHashes(600);
+        SortedShingler first = sorted(common, randomHashes(200));
+        SortedShingler second = sorted(common, randomHashes(400));
+        ShingleSimilarity similarity = ShingleSimilarity.of(first, second);
+        Assert.assertEquals(600, similarity.getMatched());
+        Assert.assertEquals(0.75f, similarity.getContainment(), 0.0001f);
+        Assert.assertEquals(0.5f, similarity.getJaccard(), 0.0001f);
+        Assert.assertFalse(similarity.isSimilar());
+        Assert.assertFalse(ShingleSimilarity.isSimilar(first, second));
+    }
+
+    @Test
+    public void testEarlyExitMatchesFullScore() {
+        for (int extra = 0; extra < 400; extra += 10) {
+            List<byte[]> common = randomHashes(1000);
+            SortedShingler first = sorted(common, randomHashes(extra));
+            SortedShingler second = sorted(common, randomHashes(400 - extra));
+            Assert.assertEquals(ShingleSimilarity.of(first, second).isSimilar(),
+                    ShingleSimilarity.isSimilar(first, second));
+            Assert.assertEquals(probe(first, second), ShingleSimilarity.isSimilar(first, second));
+        }
+    }
+
+    @Test
+    public void testFilter() {
+        for (int extra = 0; extra < 1000; extra += 50) {
+            List<byte[]> common = randomHashes(1000 - extra);
+            SortedShingler first = sorted(common, randomHashes(extra));
+            SortedShingler second = sorted(common, randomHashes(extra));
+            Assert.assertEquals(ShingleSimilarity.isSimilar(first, second),
+                    ShingleSimilarity.isSimilar(first.withFilter(10), second.withFilter(10)));
+        }
+        SortedShingler first = sorted(randomHashes(1000), randomHashes(0)).withFilter(10);
+        for (byte[] hash : first) {
+            Assert.assertTrue(first.contains(hash));
+        }
+    }
+
+    @Test
+    public void testBorder() {
+        List<byte[]> common = randomHashes(800);
+        SortedShingler first = sorted(common, randomHashes(200));
+        Assert.assertTrue(ShingleSimilarity.isSimilar(first, sorted(common, randomHashes(200))));
+        Assert.assertFalse(ShingleSimilarity.isSimilar(first, sorted(common.subList(1, 800), randomHashes(201))));
+    }
+
+    @Test
+    public void testSketchEstimate() {
+        List<byte[]> common = randomHashes(20_000);
+        SortedShingler first = sorted(common, randomHashes(10_000)).prefix(1024);
+        SortedShingler second = sorted(common, randomHashes(10_000)).prefix(1024);
+        ShingleSimilarity similarity = ShingleSimilarity.ofSketches(first, second, 1024);
+        Assert.assertEquals(0.5f, similarity.getJaccard(), 0.1f);
+        Assert.assertEquals(0.66f, similarity.getContainment(), 0.1f);
+        Assert.assertFalse(similarity.isSimilar());
+
+        SortedShingler small = sorted(common.subList(0, 100), randomHashes(0));
+        ShingleSimilarity exact = ShingleSimilarity.ofSketches(small, sorted(common.subList(0, 90), randomHashes(5)), 1024);
+        Assert.assertEquals(90, exact.getMatched());
+        Assert.assertEquals(90f / 105, exact.getJaccard(), 0.0001f);
+    }
+
+    @Test
+    public void testMinJaccard() {
+        List<byte[]> common = randomHashes(600);
+        SortedShingler first = sorted(common, randomHashes(200));
+        SortedShingler second = sorted(common, randomHashes(400));
+        ShingleSimilarity similarity = ShingleSimilarity.of(first, second, 0.5f);
+        Assert.assertNotNull(similarity);
+        Assert.assertEquals(600, similarity.getMatched());
+        Assert.assertNull(ShingleSimilarity.of(first, second, 0.51f));
+        Assert.assertNull(ShingleSimilarity.of(first, sorted(common, randomHashes(2000)), 0.3f));
+        Assert.assertEquals(0.8f / 1.2f, ShingleSimilarity.maxJaccard(800, 1200), 0.0001f);
+    }
+
+    @Test
+    public void testEmpty() {
+        SortedShingler empty = sorted(new ArrayList<>(), new ArrayList<>());
+        Assert.assertTrue(ShingleSimilarity.isSimilar(empty, empty));
+        Assert.assertFalse(ShingleSimilarity.isSimilar(empty, sorted(randomHashes(10), new ArrayList<>())));
+    }
+
+    /**
+     * Old comparison by hash set lookups
+     */
+    private boolean probe(SortedShingler first, SortedShingler second) {
+        Shingler smaller = first.size() > second.size() ? second : first;
+        Shingler bigger = smaller == first ? second : first;
+        if ((float) smaller.size() / (float) bigger.size() < 0.7f) {
+            return false;
+        }
+        int notmatch = smaller.size() / 5;
+        for (byte[] shingleHash : smaller) {
+            if (!bigger.contains(shingleHash) && --notmatch < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private SortedShingler sorted(List<byte[]> common, List<byte[]> own) {
+        ByteSet set = ByteSetFactory.createSet(common.size() + own.size(), byteArraySize);
+        common.forEach(set::add);
+        own.forEach(set::add);
+        return SortedShingler.of(LoadedShingler.of(set));
+    }
+
+    private List<byte[]> randomHashes(int count) {
+        List<byte[]> result = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            result.add(RandomUtils.nextBytes(byteArraySize));
+        }
+        return result;
+    }
+}
@@ -0,0 +1,115 @@
+package com.patex.shingle;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+
+public class SimHashTest {
+
+    private final TestBooks testBooks = new TestBooks(42);
+    private final Random random = new Random(42);
+
+    @Test
+    public void testStreamingMatchesSet() {
+        List<String> paragraph = testBooks.createBook(300);
+        List<String> book = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            book.addAll(paragraph);
+            book.addAll(testBooks.createBook(100));
+        }
+        for (String hasher : new String[]{ShingleHashers.MD5, ShingleHashers.ROLLING}) {
+            LoadedShinglerFactory factory = new LoadedShinglerFactory(1, 8, ShingleHashers.forName(hasher));
+            LoadedShingler shingler = factory.createShingler(TestBooks.toShingleable(book));
+            SortedShingler sorted = SortedShingler.of(LoadedShingler.of(
+                    factory.createShingles(TestBooks.toShingleable(book))));
+            Assert.assertEquals(shingler.getSimHash(), SimHash.of(sorted));
+            Assert.assertEquals(shingler.getSimHash(), sorted.getSimHash());
+            Assert.assertEquals(shingler.getSimHash(), SortedShingler.of(shingler).getSimHash());
+        }
+    }
+
+    @Test
+    public void testDistance() {
+        LoadedShinglerFactory factory = new LoadedShinglerFactory(1, 8, ShingleHashers.forName(ShingleHashers.ROLLING));
+        List<String> book = testBooks.createBook(30_000);
+        List<String> edited = new ArrayList<>(book);
+        edited.add(book.size() / 2, "inserted");
+        long fingerprint = simHash(factory, book);
+        Assert.assertEquals(fingerprint, simHash(factory, new ArrayList<>(book)));
+        Assert.assertTrue(SimHash.distance(fingerprint, simHash(factory, edited)) <= SimHash.ACCEPT_DISTANCE);
+        int unrelated = SimHash.distance(fingerprint, simHash(factory, testBooks.createBook(30_000)));
+        Assert.assertTrue("distance " + unrelated, unrelated > 16 && unrelated < 48);
+    }
+
+    @Test
+    public void testIndex() throws Exception {
+        SimHashIndex<Integer> index = new SimHashIndex<>(ShingleHashers.MD5_ID, 1, 8, 0);
+        long fingerprint = random.nextLong();
+        index.add(0, fingerprint);
+        index.add(1, fingerprint ^ 1L);
+        index.add(2, fingerprint ^ 1L << 20 ^ 1L << 40 ^ 1L << 60);
+        index.add(3, fingerprint ^ 1L << 5 ^ 1L << 20 ^ 1L << 40 ^ 1L << 60);
+        index.add(4, fingerprint ^ 0xFL);
+        for (int i = 5; i < 1000; i++) {
+            index.add(i, random.nextLong());
+        }
+        Assert.assertEquals(new HashSet<>(Arrays.asList(1, 2)), index.findNear(0, fingerprint));
+
+        SimHashIndex<Integer> loaded = new SimHashIndex<>(ShingleHashers.MD5_ID, 1, 8, 0);
+        Assert.assertTrue(loaded.load(new ByteArrayInputStream(index.toBytes())));
+        Assert.assertEquals(1000, loaded.size());
+        loaded.remove(1);
+        Assert.assertEquals(Collections.singleton(2), loaded.findNear(0, fingerprint));
+    }
+
+    @Test
+    public void testIndexOfOtherSettings() throws Exception {
+        SimHashIndex<Integer> index = new SimHashIndex<>(ShingleHashers.MD5_ID, 1, 8, 0);
+        index.add(0, random.nextLong());
+        byte[] bytes = index.toBytes();
+        Assert.assertFalse(new SimHashIndex<Integer>(ShingleHashers.XXHASH64_ID, 1, 8, 0).
+                load(new ByteArrayInputStream(bytes)));
+        Assert.assertFalse(new SimHashIndex<Integer>(ShingleHashers.MD5_ID, 2, 8, 0).
+                load(new ByteArrayInputStream(bytes)));
+        Assert.assertFalse(new SimHashIndex<Integer>(ShingleHashers.MD5_ID, 1, 16, 0).
+                load(new ByteArrayInputStream(bytes)));
+        Assert.assertFalse(new SimHashIndex<Integer>(ShingleHashers.MD5_ID, 1, 8, 100).
+                load(new ByteArrayInputStream(bytes)));
+    }
+
+    @Test
+    public void testCloseFingerprintIsConfirmed() {
+        List<String> book = testBooks.createBook(3000);
+        List<String> other = testBooks.createBook(3000);
+        ShingleMatcher<List<String>, Integer> matcher = new ShingleMatcher<>(TestBooks::toShingleable,
+                System::identityHashCode, new ShingleSearchConfig().setHasher(ShingleHashers.ROLLING).
+                setByteArraySize(8).setSimHashCheck(true));
+        long fingerprint = random.nextLong();
+        matcher.getSimHashIndex().add(System.identityHashCode(book), fingerprint);
+        matcher.getSimHashIndex().add(System.identityHashCode(other), fingerprint ^ 1L);
+        Assert.assertFalse(matcher.isSimilar(book, other));
+    }
+
+    @Test
+    public void testSearch() {
+        List<String> book = testBooks.createBook(3000);
+        List<String> copy = new ArrayList<>(book);
+        List<String> other = testBooks.createBook(3000);
+        ShingleSearch<List<String>, Integer> search = new ShingleSearch<>(b -> Arrays.asList(other, copy),
+                TestBooks::toShingleable, System::identityHashCode,
+                new ShingleSearchConfig().setHasher(ShingleHashers.ROLLING).setByteArraySize(8).setSimHashCheck(true));
+        Assert.assertEquals(Optional.of(copy), search.findSimilar(book));
+    }
+
+    private long simHash(LoadedShinglerFactory factory, List<String> book) {
+        return factory.createShingler(TestBooks.toShingleable(book)).getSimHash();
+    }
+}
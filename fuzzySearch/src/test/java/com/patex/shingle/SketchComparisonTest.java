@@ -0,0 +1,71 @@
+package com.patex.shingle;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Compares coef sampled sets and bottom-k sketches on labeled pairs: light edits are duplicates,
+ * heavy edits, unrelated books and a book inside a series omnibus aren't
+ */
+public class SketchComparisonTest {
+
+    private final TestBooks testBooks = new TestBooks(11);
+
+    @Test
+    public void testLabeledCorpus() {
+        List<List<String>> firsts = new ArrayList<>();
+        List<List<String>> seconds = new ArrayList<>();
+        List<Boolean> labels = new ArrayList<>();
+        for (int words : new int[]{150, 400, 3000, 20_000, 60_000}) {
+            List<String> book = testBooks.createBook(words);
+            addPair(firsts, seconds, labels, book, testBooks.edit(book, 0.002), true);
+            addPair(firsts, seconds, labels, book, testBooks.edit(book, 0.08), false);
+            addPair(firsts, seconds, labels, book, testBooks.createBook(words), false);
+            List<String> omnibus = new ArrayList<>(book);
+            omnibus.addAll(testBooks.createBook(words * 2));
+            addPair(firsts, seconds, labels, book, omnibus, false);
+        }
+        ShingleSearchConfig full = new ShingleSearchConfig().setHasher(ShingleHashers.ROLLING).setByteArraySize(8);
+        int fullErrors = errors(full, firsts, seconds, labels);
+        int sampledErrors = errors(new ShingleSearchConfig().setHasher(ShingleHashers.ROLLING).setByteArraySize(8).
+                setCoef(16), firsts, seconds, labels);
+        int sketchErrors = errors(new ShingleSearchConfig().setHasher(ShingleHashers.ROLLING).setByteArraySize(8).
+                setSketchSize(256), firsts, seconds, labels);
+        Assert.assertEquals(0, fullErrors);
+        Assert.assertEquals(0, sampledErrors);
+        Assert.assertEquals(0, sketchErrors);
+    }
+
+    @Test
+    public void testConstantSize() {
+        ShingleMatcher<List<String>, Integer> matcher = new ShingleMatcher<>(TestBooks::toShingleable,
+                System::identityHashCode, new ShingleSearchConfig().setHasher(ShingleHashers.ROLLING).
+                setByteArraySize(8).setSketchSize(256));
+        Assert.assertEquals(256, matcher.getShingler(testBooks.createBook(60_000)).size());
+        Assert.assertEquals(256, matcher.getShingler(testBooks.createBook(3000)).size());
+        Assert.assertEquals(91, matcher.getShingler(testBooks.createBook(100)).size());
+    }
+
+    private int errors(ShingleSearchConfig config, List<List<String>> firsts, List<List<String>> seconds,
+                       List<Boolean> labels) {
+        ShingleMatcher<List<String>, Integer> matcher = new ShingleMatcher<>(TestBooks::toShingleable,
+                System::identityHashCode, config);
+        int errors = 0;
+        for (int i = 0; i < labels.size(); i++) {
+            if (matcher.isSimilar(firsts.get(i), seconds.get(i)) != labels.get(i)) {
+                errors++;
+            }
+        }
+        return errors;
+    }
+
+    private void addPair(List<List<String>> firsts, List<List<String>> seconds, List<Boolean> labels,
+                         List<String> first, List<String> second, boolean label) {
+        firsts.add(first);
+        seconds.add(second);
+        labels.add(label);
+    }
+}
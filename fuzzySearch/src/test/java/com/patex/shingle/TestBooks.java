@@ -0,0 +1,70 @@
+package com.patex.shingle;
+
+import org.apache.commons.lang3.RandomStringUtils;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Books of random words for shingle tests, books of one instance are the same for the same seed
+ */
+class TestBooks {
+
+    private final Random random;
+
+    TestBooks(long seed) {
+        random = new Random(seed);
+    }
+
+    List<String> createBook(int words) {
+        List<String> book = new ArrayList<>(words);
+        for (int i = 0; i < words; i++) {
+            book.add(randomWord());
+        }
+        return book;
+    }
+
+    /**
+     * @param rate share of words replaced by random ones
+     */
+    List<String> edit(List<String> book, double rate) {
+        List<String> result = new ArrayList<>(book);
+        for (int i = 0; i < result.size(); i++) {
+            if (random.nextDouble() < rate) {
+                result.set(i, randomWord());
+            }
+        }
+        return result;
+    }
+
+    String randomWord() {
+        return RandomStringUtils.random(2 + random.nextInt(7), 0, 0, true, false, null, random);
+    }
+
+    static Shingleable toShingleable(List<String> book) {
+        Iterator<String> iterator = book.iterator();
+        return new Shingleable() {
+            @Override
+            public int size() {
+                return book.size() * 6;
+            }
+
+            @Override
+            public boolean hasNext() {
+                return iterator.hasNext();
+            }
+
+            @Override
+            public String next() {
+                return iterator.next();
+            }
+
+            @Override
+            public void close() {
+
+            }
+        };
+    }
+}
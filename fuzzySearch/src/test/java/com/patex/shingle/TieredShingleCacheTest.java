@@ -0,0 +1,69 @@
+package com.patex.shingle;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+public class TieredShingleCacheTest {
+
+    private static final int BOOKS = 40;
+
+    private final AtomicInteger shingled = new AtomicInteger();
+    private final TestBooks testBooks = new TestBooks(3);
+
+    @Test
+    public void testDemoteAndPromote() {
+        ShingleMatcher<List<String>, List<String>> matcher = createMatcher(1, 16);
+        List<List<String>> books = createBooks();
+        books.forEach(matcher::getShingler);
+        Assert.assertEquals(BOOKS, shingled.get());
+        ShingleCacheStats stats = matcher.getCacheStats();
+        Assert.assertTrue(stats.getHotEvictionCount() > 0);
+        Assert.assertTrue(stats.getHotWeight() <= 1024 * 1024);
+        Assert.assertTrue(stats.getCompactWeight() > 0);
+
+        for (List<String> book : books) {
+            Assert.assertTrue(matcher.isSimilar(book, book));
+        }
+        Assert.assertEquals(BOOKS, shingled.get());
+        Assert.assertTrue(matcher.getCacheStats().getCompactHitCount() > 0);
+    }
+
+    @Test
+    public void testWithoutCompactTier() {
+        ShingleMatcher<List<String>, List<String>> matcher = createMatcher(1, 0);
+        List<List<String>> books = createBooks();
+        books.forEach(matcher::getShingler);
+        books.forEach(matcher::getShingler);
+        Assert.assertTrue(shingled.get() > BOOKS);
+        Assert.assertEquals(0, matcher.getCacheStats().getCompactWeight());
+    }
+
+    @Test
+    public void testInvalidate() {
+        ShingleMatcher<List<String>, List<String>> matcher = createMatcher(0, 16);
+        List<String> book = testBooks.createBook(100);
+        matcher.getShingler(book);
+        matcher.invalidate(book);
+        matcher.getShingler(book);
+        Assert.assertEquals(2, shingled.get());
+        Assert.assertEquals(0, matcher.getCacheStats().getCompactWeight());
+    }
+
+    private List<List<String>> createBooks() {
+        return Stream.generate(() -> testBooks.createBook(5000)).
+                limit(BOOKS).collect(Collectors.toList());
+    }
+
+    private ShingleMatcher<List<String>, List<String>> createMatcher(int memoryMb, int compactMemoryMb) {
+        return new ShingleMatcher<>(book -> {
+            shingled.incrementAndGet();
+            return TestBooks.toShingleable(book);
+        }, book -> book, new ShingleSearchConfig().
+                setCacheMemoryMb(memoryMb).setCompactCacheMemoryMb(compactMemoryMb));
+    }
+}
@@ -0,0 +1,94 @@
+package com.patex.shingle;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class TopSimilarTest {
+
+    private final TestBooks testBooks = new TestBooks(5);
+
+    @Test
+    public void testOrderedByScore() {
+        List<String> book = testBooks.createBook(3000);
+        List<String> copy = new ArrayList<>(book);
+        List<String> edited = testBooks.edit(book, 0.01);
+        List<String> moreEdited = testBooks.edit(book, 0.03);
+        List<String> other = testBooks.createBook(3000);
+        ShingleSearch<List<String>, Integer> search = createSearch(Arrays.asList(other, moreEdited, edited, copy));
+
+        List<ShingleMatch<List<String>>> top = search.findTopSimilar(book, 2, 0.1f);
+        Assert.assertEquals(2, top.size());
+        Assert.assertSame(copy, top.get(0).getCandidate());
+        Assert.assertEquals(1f, top.get(0).getScore(), 0.0001f);
+        Assert.assertEquals(1f, top.get(0).getContainment(), 0.0001f);
+        Assert.assertSame(edited, top.get(1).getCandidate());
+        Assert.assertTrue(top.get(1).getJaccard() < 1f);
+
+        List<ShingleMatch<List<String>>> all = search.findTopSimilar(book, 10, 0.1f);
+        Assert.assertEquals(3, all.size());
+        Assert.assertSame(moreEdited, all.get(2).getCandidate());
+        Assert.assertTrue(all.get(1).getScore() >= all.get(2).getScore());
+    }
+
+    @Test
+    public void testMinScore() {
+        List<String> book = testBooks.createBook(3000);
+        List<String> edited = testBooks.edit(book, 0.03);
+        ShingleSearch<List<String>, Integer> search = createSearch(Arrays.asList(edited, testBooks.createBook(3000)));
+        float score = search.findTopSimilar(book, 1, 0f).get(0).getScore();
+        Assert.assertTrue(search.findTopSimilar(book, 1, score + 0.01f).isEmpty());
+        Assert.assertEquals(1, search.findTopSimilar(book, 1, score - 0.01f).size());
+    }
+
+    @Test
+    public void testBoundFromCacheHeader() {
+        List<String> book = testBooks.createBook(3000);
+        List<String> copy = new ArrayList<>(book);
+        List<String> small = testBooks.createBook(300);
+        List<List<String>> candidates = Arrays.asList(small, copy);
+        Map<Integer, byte[]> records = new HashMap<>();
+        ShingleCacheStorage<List<String>> storage = new ShingleCacheStorage<List<String>>() {
+            @Override
+            public InputStream load(List<String> book) {
+                byte[] bytes = records.get(System.identityHashCode(book));
+                return bytes == null ? null : new ByteArrayInputStream(bytes);
+            }
+
+            @Override
+            public ByteBuffer map(List<String> book) {
+                byte[] bytes = records.get(System.identityHashCode(book));
+                return bytes == null ? null : ByteBuffer.wrap(bytes).asReadOnlyBuffer();
+            }
+
+            @Override
+            public void save(byte[] bytes, List<String> book) {
+                records.put(System.identityHashCode(book), bytes);
+            }
+        };
+        ShingleSearch<List<String>, Integer> search = createSearch(candidates);
+        search.setStorage(storage);
+        search.findTopSimilar(book, 1, 0.5f);
+        Assert.assertEquals(3, records.size());
+
+        search = createSearch(candidates);
+        search.setStorage(storage);
+        List<ShingleMatch<List<String>>> top = search.findTopSimilar(book, 1, 0.5f);
+        Assert.assertSame(copy, top.get(0).getCandidate());
+        Assert.assertEquals("small candidate is bounded by size from header, it isn't loaded",
+                2, search.getCacheStats().getHotMissCount());
+    }
+
+    private ShingleSearch<List<String>, Integer> createSearch(List<List<String>> candidates) {
+        return new ShingleSearch<>(b -> candidates, TestBooks::toShingleable, System::identityHashCode,
+                new ShingleSearchConfig().setHasher(ShingleHashers.ROLLING).setByteArraySize(8));
+    }
+}
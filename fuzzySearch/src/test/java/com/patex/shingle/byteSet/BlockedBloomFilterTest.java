@@ -0,0 +1,66 @@
+package com.patex.shingle.byteSet;
+
+import org.apache.commons.lang3.RandomUtils;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Random;
+
+public class BlockedBloomFilterTest {
+
+    @Test
+    public void testNoFalseNegatives() {
+        Random random = new Random(1);
+        long[] keys = random.longs(10_000).toArray();
+        BlockedBloomFilter filter = BlockedBloomFilter.create(keys.length, 10);
+        for (long key : keys) {
+            filter.add(key);
+        }
+        for (long key : keys) {
+            Assert.assertTrue(filter.mightContain(key));
+        }
+    }
+
+    @Test
+    public void testFalsePositiveRate() {
+        Random random = new Random(2);
+        BlockedBloomFilter filter = BlockedBloomFilter.create(100_000, 10);
+        for (int i = 0; i < 100_000; i++) {
+            filter.add(BlockedBloomFilter.key(random.nextLong(), 0));
+        }
+        int falsePositives = 0;
+        for (int i = 0; i < 100_000; i++) {
+            if (filter.mightContain(BlockedBloomFilter.key(random.nextLong(), 0))) {
+                falsePositives++;
+            }
+        }
+        Assert.assertTrue("false positives " + falsePositives, falsePositives < 2_000);
+    }
+
+    @Test
+    public void testByteKey() {
+        byte[] hash = RandomUtils.nextBytes(16);
+        Assert.assertEquals(BlockedBloomFilter.key(LongArrays.toLong(hash, 0), LongArrays.toLong(hash, 8)),
+                BlockedBloomFilter.key(hash));
+        byte[] shortHash = RandomUtils.nextBytes(8);
+        Assert.assertEquals(BlockedBloomFilter.key(LongArrays.toLong(shortHash, 0), 0),
+                BlockedBloomFilter.key(shortHash));
+    }
+
+    @Test
+    public void testRestore() {
+        BlockedBloomFilter filter = BlockedBloomFilter.create(1000, 8);
+        for (long i = 0; i < 1000; i++) {
+            filter.add(BlockedBloomFilter.key(i, 0));
+        }
+        BlockedBloomFilter restored = BlockedBloomFilter.of(filter.getBits().clone(), filter.getHashCount());
+        for (long i = 0; i < 1000; i++) {
+            Assert.assertTrue(restored.mightContain(BlockedBloomFilter.key(i, 0)));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testBrokenSize() {
+        BlockedBloomFilter.of(new long[7], 3);
+    }
+}
@@ -0,0 +1,63 @@
+package com.patex.shingle.byteSet;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+import java.util.Arrays;
+import java.util.Random;
+
+@RunWith(Parameterized.class)
+public class BottomKSketchTest {
+
+    @Parameterized.Parameter
+    public Integer byteArraySize;
+
+    @Parameterized.Parameters
+    public static Iterable<Integer> data() {
+        return Arrays.asList(8, 16);
+    }
+
+    @Test
+    public void testSmallestDistinct() {
+        int stride = byteArraySize / 8;
+        Random random = new Random(7);
+        long[] hashes = new long[10_000 * stride];
+        for (int i = 0; i < hashes.length; i++) {
+            hashes[i] = random.nextInt(5000);
+        }
+        BottomKSketch sketch = new BottomKSketch(100, byteArraySize);
+        for (int i = 0; i < hashes.length; i += stride) {
+            sketch.add(hashes[i], stride == 2 ? hashes[i + 1] : 0);
+        }
+        long[] expected = hashes.clone();
+        LongArrays.sort(expected, stride);
+        long[] distinct = new long[100 * stride];
+        int count = 0;
+        for (int i = 0; i < expected.length && count < 100; i += stride) {
+            if (count > 0 && LongArrays.compare(expected[i], expected[i + stride - 1],
+                    distinct[(count - 1) * stride], distinct[count * stride - 1]) == 0) {
+                continue;
+            }
+            System.arraycopy(expected, i, distinct, count * stride, stride);
+            count++;
+        }
+        Assert.assertArrayEquals(distinct, sketch.toLongArray());
+    }
+
+    @Test
+    public void testLessThanK() {
+        BottomKSketch sketch = new BottomKSketch(100, byteArraySize);
+        sketch.add(3, 1);
+        sketch.add(1, 1);
+        sketch.add(3, 1);
+        long[] expected = byteArraySize == 8 ? new long[]{1, 3} : new long[]{1, 1, 3, 1};
+        Assert.assertArrayEquals(expected, sketch.toLongArray());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testVarSize() {
+        new BottomKSketch(100, 24);
+    }
+}
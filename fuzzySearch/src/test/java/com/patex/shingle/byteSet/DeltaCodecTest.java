@@ -0,0 +1,71 @@
+package com.patex.shingle.byteSet;
+
+import org.apache.commons.lang3.RandomUtils;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+import java.util.Arrays;
+
+@RunWith(Parameterized.class)
+public class DeltaCodecTest {
+
+    @Parameterized.Parameter
+    public Integer stride;
+
+    @Parameterized.Parameters
+    public static Iterable<Integer> data() {
+        return Arrays.asList(1, 2);
+    }
+
+    @Test
+    public void testRandomHashes() {
+        long[] hashes = randomSorted(100_000);
+        byte[] encoded = DeltaCodec.encode(hashes, stride);
+        Assert.assertArrayEquals(hashes, DeltaCodec.decode(encoded, 100_000, stride));
+        int firstBits = (encoded.length - 100_000 * (stride - 1) * 8) * 8 / 100_000;
+        Assert.assertTrue("bits per hash " + firstBits, firstBits <= 50);
+    }
+
+    @Test
+    public void testExtremeValues() {
+        long[] hashes = randomSorted(10);
+        hashes[0] = Long.MIN_VALUE;
+        hashes[hashes.length - stride] = Long.MAX_VALUE;
+        hashes[stride] = hashes[0];
+        Assert.assertArrayEquals(hashes, DeltaCodec.decode(DeltaCodec.encode(hashes, stride), 10, stride));
+    }
+
+    @Test
+    public void testSkewedGaps() {
+        long[] hashes = new long[1000 * stride];
+        for (int i = 0; i < 1000; i++) {
+            hashes[i * stride] = i < 990 ? i : Long.MAX_VALUE - 1000 + i;
+        }
+        Assert.assertArrayEquals(hashes, DeltaCodec.decode(DeltaCodec.encode(hashes, stride), 1000, stride));
+    }
+
+    @Test
+    public void testSmall() {
+        for (int size = 0; size < 3; size++) {
+            long[] hashes = randomSorted(size);
+            Assert.assertArrayEquals(hashes, DeltaCodec.decode(DeltaCodec.encode(hashes, stride), size, stride));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testBroken() {
+        byte[] encoded = DeltaCodec.encode(randomSorted(100), stride);
+        DeltaCodec.decode(Arrays.copyOf(encoded, encoded.length / 2), 100, stride);
+    }
+
+    private long[] randomSorted(int count) {
+        long[] hashes = new long[count * stride];
+        for (int i = 0; i < hashes.length; i++) {
+            hashes[i] = RandomUtils.nextLong() * (RandomUtils.nextBoolean() ? 1 : -1);
+        }
+        LongArrays.sort(hashes, stride);
+        return hashes;
+    }
+}
@@ -0,0 +1,82 @@
+package com.patex.shingle.byteSet;
+
+import org.apache.commons.lang3.RandomUtils;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+@RunWith(Parameterized.class)
+public class LongHashSetTest {
+
+    @Parameterized.Parameter
+    public Integer byteArraySize;
+
+    @Parameterized.Parameters
+    public static Iterable<Integer> data() {
+        return Arrays.asList(8, 16);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNegativeSize() {
+        ByteSetFactory.createLongSet(-64, byteArraySize);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnsupportedByteArraySize() {
+        ByteSetFactory.createLongSet(64, byteArraySize + 1);
+    }
+
+    @Test
+    public void testExists() {
+        LongHashSet set = ByteSetFactory.createLongSet(64, byteArraySize);
+        byte[] key = RandomUtils.nextBytes(byteArraySize);
+        set.add(key);
+        Assert.assertTrue(set.contains(key));
+        Assert.assertTrue(set.contains(LongArrays.toLong(key, 0),
+                byteArraySize == 16 ? LongArrays.toLong(key, 8) : 0));
+    }
+
+    @Test
+    public void testNotExists() {
+        LongHashSet set = ByteSetFactory.createLongSet(64, byteArraySize);
+        byte[] key = RandomUtils.nextBytes(byteArraySize);
+        set.add(key);
+        key[byteArraySize - 1] += 1;
+        Assert.assertFalse(set.contains(key));
+    }
+
+    @Test
+    public void testZeroKey() {
+        LongHashSet set = ByteSetFactory.createLongSet(64, byteArraySize);
+        byte[] zero = new byte[byteArraySize];
+        Assert.assertFalse(set.contains(zero));
+        set.add(zero);
+        set.add(zero);
+        Assert.assertTrue(set.contains(zero));
+        Assert.assertEquals(1, set.getSize());
+        Assert.assertArrayEquals(zero, set.iterator().next());
+    }
+
+    @Test
+    public void testGrowAndIterate() {
+        LongHashSet set = ByteSetFactory.createLongSet(0, byteArraySize);
+        Set<String> expected = new HashSet<>();
+        for (int i = 0; i < 10000; i++) {
+            byte[] key = RandomUtils.nextBytes(byteArraySize);
+            set.add(key);
+            expected.add(Arrays.toString(key));
+        }
+        Assert.assertEquals(expected.size(), set.getSize());
+        Set<String> actual = new HashSet<>();
+        for (byte[] key : set) {
+            Assert.assertTrue(set.contains(key));
+            actual.add(Arrays.toString(key));
+        }
+        Assert.assertEquals(expected, actual);
+    }
+}